@@ -0,0 +1,189 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class extends DijkstraGraph with goal-directed A* searches for graphs
+ * whose nodes are places on the earth, such as airports, and whose edge
+ * weights are distances in miles. The great-circle distance from a node to
+ * the end node is a lower bound on the miles of any route between them, so
+ * searches can settle nodes in order of their cost plus that distance, and
+ * explore mostly towards the end node. Edges shorter than the great-circle
+ * distance between their nodes, such as short flights rounded down to whole
+ * miles, scale every estimate down far enough to stay consistent.
+ *
+ * Coordinates are optional. Until every node in the graph has coordinates,
+ * searches fall back to plain Dijkstra's algorithm, since a node without
+ * coordinates could make the estimates inconsistent.
+ *
+ * Since estimates are not whole numbers, a RadixHeap cannot be used as the
+ * priority queue of this graph.
+ */
+public class AStarGraph<NodeType, EdgeType extends Number>
+        extends DijkstraGraph<NodeType, EdgeType> {
+
+    // Mean radius of the earth in miles
+    public static final double EARTH_RADIUS_MILES = 3958.8;
+    // Estimates are scaled down slightly, so that edge weights computed with a
+    // slightly different earth model still keep them consistent
+    protected static final double ESTIMATE_SCALE = 0.99;
+
+    // Latitude and longitude of each node in radians, indexed by node id, or
+    // NaN for nodes without coordinates
+    protected double[] latitudes = new double[0];
+    protected double[] longitudes = new double[0];
+    // The number of nodes currently in the graph that have coordinates
+    protected int coordinateCount = 0;
+    // The factor that great-circle distances are scaled by in estimates:
+    // ESTIMATE_SCALE, times the smallest ratio of an edge's weight to the
+    // great-circle distance between its nodes when that is below 1, such as
+    // for short edges rounded down to whole miles. It is lowered as such
+    // edges are added, and never raised again.
+    protected double estimateScale = ESTIMATE_SCALE;
+
+    /**
+     * Constructor that sets the map that the graph uses.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     */
+    public AStarGraph(MapADT<NodeType, Node> map) {
+        super(map);
+    }
+
+    /**
+     * Constructor that sets the map that the graph uses, and whether the
+     * graph is undirected.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     * @param undirected true to store each edge once and let searches follow
+     *        it both ways
+     */
+    public AStarGraph(MapADT<NodeType, Node> map, boolean undirected) {
+        super(map, DaryHeap::new, undirected);
+    }
+
+    /**
+     * Sets the location of a node, in degrees.
+     *
+     * @param data      the data item in the node
+     * @param latitude  the latitude of the node in degrees
+     * @param longitude the longitude of the node in degrees
+     * @throws NoSuchElementException if there is no such node
+     * @throws IllegalArgumentException if the coordinates are out of range
+     */
+    public void setCoordinates(NodeType data, double latitude, double longitude) {
+        if (!containsNode(data))
+            throw new NoSuchElementException("node " + data + " not in graph");
+        if (!(Math.abs(latitude) <= 90) || !(Math.abs(longitude) <= 180))
+            throw new IllegalArgumentException("invalid coordinates " + latitude + ", " + longitude);
+        int id = nodes.get(data).id;
+        if (latitudes.length <= id) {
+            int length = Math.max(nextNodeId, latitudes.length * 2);
+            int oldLength = latitudes.length;
+            latitudes = Arrays.copyOf(latitudes, length);
+            longitudes = Arrays.copyOf(longitudes, length);
+            Arrays.fill(latitudes, oldLength, length, Double.NaN);
+            Arrays.fill(longitudes, oldLength, length, Double.NaN);
+        }
+        if (Double.isNaN(latitudes[id]))
+            coordinateCount++;
+        latitudes[id] = Math.toRadians(latitude);
+        longitudes[id] = Math.toRadians(longitude);
+        Node node = nodes.get(data);
+        for (Edge edge : node.edgesLeaving)
+            edgeWeightSet(edge);
+        for (Edge edge : node.edgesEntering)
+            edgeWeightSet(edge);
+    }
+
+    /**
+     * Checks whether searches are guided by coordinates, which is the case
+     * when every node in the graph has them.
+     *
+     * @return true if searches use A*, or false if they use plain Dijkstra
+     */
+    public boolean hasAllCoordinates() {
+        return coordinateCount == getNodeCount();
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        if (containsNode(data))
+            clearCoordinates(nodes.get(data).id);
+        return super.removeNode(data);
+    }
+
+    @Override
+    protected void nodeCompacted(Node node) {
+        clearCoordinates(node.id);
+    }
+
+    /**
+     * Lowers the estimate scale when an edge is shorter than the great-circle
+     * distance between its nodes, so that estimates stay consistent: the
+     * estimate never drops by more than an edge's weight along that edge.
+     *
+     * @param edge the edge added or updated
+     */
+    @Override
+    protected void edgeWeightSet(Edge edge) {
+        int from = edge.predecessor.id;
+        int to = edge.successor.id;
+        if (Math.max(from, to) >= latitudes.length || Double.isNaN(latitudes[from])
+                || Double.isNaN(latitudes[to]))
+            return;
+        double miles = greatCircleMiles(latitudes[from], longitudes[from], latitudes[to], longitudes[to]);
+        double weight = edge.data.doubleValue();
+        if (weight < miles * estimateScale / ESTIMATE_SCALE)
+            estimateScale = Math.max(0, ESTIMATE_SCALE * weight / miles);
+    }
+
+    // forgets the coordinates of a node that is leaving the graph
+    private void clearCoordinates(int id) {
+        if (id < latitudes.length && !Double.isNaN(latitudes[id])) {
+            latitudes[id] = Double.NaN;
+            longitudes[id] = Double.NaN;
+            coordinateCount--;
+        }
+    }
+
+    /**
+     * Returns the great-circle distance from a node to the end node, scaled
+     * down by estimateScale, or 0 when some node in the graph has no
+     * coordinates.
+     *
+     * @param node    the node to estimate the remaining cost from
+     * @param endNode the end node of the search
+     * @return a lower bound on the miles of a route from node to endNode
+     */
+    @Override
+    protected double estimate(Node node, Node endNode) {
+        if (!hasAllCoordinates())
+            return 0;
+        return estimateScale * greatCircleMiles(latitudes[node.id], longitudes[node.id],
+                latitudes[endNode.id], longitudes[endNode.id]);
+    }
+
+    @Override
+    protected boolean usesEstimate() {
+        return hasAllCoordinates();
+    }
+
+    /**
+     * Computes the great-circle distance between two points on the earth with
+     * the haversine formula.
+     *
+     * @param latitude1  latitude of the first point in radians
+     * @param longitude1 longitude of the first point in radians
+     * @param latitude2  latitude of the second point in radians
+     * @param longitude2 longitude of the second point in radians
+     * @return the distance between the points in miles
+     */
+    public static double greatCircleMiles(double latitude1, double longitude1,
+            double latitude2, double longitude2) {
+        double sinLatitude = Math.sin((latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin((longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude
+                + Math.cos(latitude1) * Math.cos(latitude2) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
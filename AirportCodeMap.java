@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements MapADT for airport names, by interning each name with
+ * AirportCodes and storing the values in an array indexed by the name's dense
+ * id. Looking up an IATA or ICAO code packs it into an int instead of hashing
+ * and comparing Strings. It can be used as the node map of a graph of
+ * airports, such as DijkstraGraph&lt;String, Integer&gt;.
+ *
+ * Names keep their id after they are removed, so the array is as long as the
+ * number of distinct names ever put in the map.
+ */
+public class AirportCodeMap<ValueType> implements MapADT<String, ValueType> {
+
+    // Gives each name the index of its value
+    protected AirportCodes codes = new AirportCodes();
+    // The value of each id, and whether that id's name is in the map
+    private Object[] values = new Object[16];
+    private boolean[] present = new boolean[16];
+    // The number of keys in the map
+    private int size = 0;
+
+    @Override
+    public void put(String key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int id = codes.intern(key);
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+            present = Arrays.copyOf(present, values.length);
+        }
+        if (present[id])
+            throw new IllegalArgumentException("key " + key + " already present in map");
+        values[id] = value;
+        present[id] = true;
+        size++;
+    }
+
+    // returns the id of a key in the map, or -1 if it is not in the map
+    private int find(String key) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int id = codes.idOf(key);
+        return id >= 0 && id < present.length && present[id] ? id : -1;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType get(String key) throws NoSuchElementException {
+        int id = find(key);
+        if (id < 0)
+            throw new NoSuchElementException("key " + key + " not in map");
+        return (ValueType) values[id];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType remove(String key) throws NoSuchElementException {
+        int id = find(key);
+        if (id < 0)
+            throw new NoSuchElementException("key " + key + " not in map");
+        ValueType value = (ValueType) values[id];
+        values[id] = null;
+        present[id] = false;
+        size--;
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(present, false);
+        size = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of values the map can hold before its arrays grow
+     */
+    @Override
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the dense id that a name was given when it was first put in
+     * this map.
+     *
+     * @param key the airport name
+     * @return the id of key, or -1 if it has never been put in this map
+     */
+    public int idOf(String key) {
+        return codes.idOf(key);
+    }
+}
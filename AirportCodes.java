@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * This class interns airport names, giving each distinct name a dense int id
+ * numbered from 0 in the order the names are first seen. IATA and ICAO codes
+ * of one to five uppercase letters and digits are packed directly into an
+ * int, and are looked up in a table of packed codes, so that finding their id
+ * never hashes or compares String objects. Any other name is kept in a
+ * fallback table keyed by the name itself.
+ *
+ * Ids are never reused or taken back, so an id stays valid for the lifetime of
+ * the AirportCodes that gave it out.
+ */
+public class AirportCodes {
+
+    // Letters and digits are packed as the digits 1-36 of a base 37 number,
+    // so codes of different lengths never pack to the same value
+    private static final int RADIX = 37;
+    // The longest code that fits in an int in that form
+    public static final int MAX_PACKED_LENGTH = 5;
+
+    // Packed codes and their ids, in an open-addressing table with linear
+    // probing; 0 marks an empty slot, since every packed code is positive
+    private int[] packedKeys = new int[64];
+    private int[] packedIds = new int[64];
+    private int packedCount = 0;
+    // Ids of names that cannot be packed
+    private OpenAddressingMap<String, Integer> fallback = new OpenAddressingMap<>();
+    // The name of each id
+    private String[] names = new String[64];
+    private int size = 0;
+
+    /**
+     * Packs an airport code into an int.
+     *
+     * @param code the code to pack
+     * @return the packed code, which is positive, or 0 if the code is empty,
+     *         longer than MAX_PACKED_LENGTH, or has characters other than
+     *         uppercase letters and digits
+     */
+    public static int pack(String code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_PACKED_LENGTH)
+            return 0;
+        int packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int digit;
+            if (c >= 'A' && c <= 'Z')
+                digit = c - 'A' + 1;
+            else if (c >= '0' && c <= '9')
+                digit = c - '0' + 27;
+            else
+                return 0;
+            packed = packed * RADIX + digit;
+        }
+        return packed;
+    }
+
+    // the slot of a packed code, or of the empty slot where it would go
+    private int slotOf(int packed) {
+        int mask = packedKeys.length - 1;
+        int slot = (packed * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(packedKeys.length));
+        while (packedKeys[slot] != 0 && packedKeys[slot] != packed)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Returns the id of a name, giving it the next id if it has none yet.
+     *
+     * @param name the airport name
+     * @return the id of name
+     * @throws NullPointerException if name is null
+     */
+    public int intern(String name) {
+        int packed = pack(name);
+        if (packed != 0) {
+            int slot = slotOf(packed);
+            if (packedKeys[slot] != 0)
+                return packedIds[slot];
+            int id = add(name);
+            packedKeys[slot] = packed;
+            packedIds[slot] = id;
+            // keep the packed table at most half full
+            if (++packedCount * 2 > packedKeys.length)
+                growPacked();
+            return id;
+        }
+        if (fallback.containsKey(name))
+            return fallback.get(name);
+        int id = add(name);
+        fallback.put(name, id);
+        return id;
+    }
+
+    private int add(String name) {
+        if (size == names.length)
+            names = Arrays.copyOf(names, size * 2);
+        names[size] = name;
+        return size++;
+    }
+
+    private void growPacked() {
+        int[] oldKeys = packedKeys;
+        int[] oldIds = packedIds;
+        packedKeys = new int[oldKeys.length * 2];
+        packedIds = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0)
+                continue;
+            int slot = slotOf(oldKeys[i]);
+            packedKeys[slot] = oldKeys[i];
+            packedIds[slot] = oldIds[i];
+        }
+    }
+
+    /**
+     * Returns the id of a name without interning it.
+     *
+     * @param name the airport name
+     * @return the id of name, or -1 if it has not been interned
+     * @throws NullPointerException if name is null
+     */
+    public int idOf(String name) {
+        int packed = pack(name);
+        if (packed != 0) {
+            int slot = slotOf(packed);
+            return packedKeys[slot] != 0 ? packedIds[slot] : -1;
+        }
+        return fallback.containsKey(name) ? fallback.get(name) : -1;
+    }
+
+    /**
+     * Returns the name that an id was given to.
+     *
+     * @param id the id
+     * @return the name with that id
+     * @throws IndexOutOfBoundsException if no name has that id
+     */
+    public String nameOf(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("no airport with id " + id);
+        return names[id];
+    }
+
+    /**
+     * @return the number of names interned, which is one more than the
+     *         largest id
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * This class extends CSRGraph with tables of the shortest paths between all
+ * pairs of nodes, computed once when the graph is built. dist[i * n + j] is
+ * the cost of the shortest path from node i to node j, and next[i * n + j] is
+ * the index of the first edge on that path, so queries are answered by a
+ * table lookup and a walk along next hops, without any searching.
+ *
+ * The tables hold a double and an int for every pair of nodes, so they are
+ * meant for graphs of at most a few thousand nodes; see tableBytes().
+ */
+public class AllPairsGraph<NodeType, EdgeType extends Number>
+        extends CSRGraph<NodeType, EdgeType> {
+
+    // Bytes of table memory per pair of nodes: the distance and the next hop
+    public static final long BYTES_PER_PAIR = Double.BYTES + Integer.BYTES;
+    // Side length of the square blocks that Floyd-Warshall updates as one task
+    protected static final int BLOCK_SIZE = 64;
+
+    // The number of nodes, which is the length of each table row
+    protected int n;
+    // The cost of the shortest path between each pair of nodes, row by row
+    protected double[] dist;
+    // The index of the first edge on each of those paths, or -1 for none
+    protected int[] next;
+    // Time taken to compute the tables, in nanoseconds
+    protected long computeNanos;
+
+    /**
+     * Constructor that copies the nodes and edges of an existing graph and
+     * computes its tables, choosing the algorithm by the graph's density.
+     * Later changes to that graph are not reflected in this one.
+     *
+     * @param graph the graph to copy
+     * @throws IllegalArgumentException if the graph has too many nodes for
+     *                                  the tables to fit in arrays
+     */
+    public AllPairsGraph(BaseGraph<NodeType, EdgeType> graph) {
+        this(graph, isDense(graph.getNodeCount(), graph.getEdgeCount()));
+    }
+
+    /**
+     * Constructor that copies the nodes and edges of an existing graph and
+     * computes its tables with the given algorithm.
+     *
+     * @param graph         the graph to copy
+     * @param floydWarshall true to use blocked Floyd-Warshall, or false to run
+     *                      Dijkstra's algorithm from every node
+     * @throws IllegalArgumentException if the graph has too many nodes for
+     *                                  the tables to fit in arrays
+     */
+    public AllPairsGraph(BaseGraph<NodeType, EdgeType> graph, boolean floydWarshall) {
+        super(graph);
+        n = nodeData.length;
+        if ((long) n * n > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("too many nodes for all-pairs tables: " + n);
+        long start = System.nanoTime();
+        dist = new double[n * n];
+        next = new int[n * n];
+        if (floydWarshall)
+            computeFloydWarshall();
+        else
+            computeDijkstra();
+        computeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the memory that the tables of a graph would take.
+     *
+     * @param nodeCount the number of nodes in the graph
+     * @return the size of the tables in bytes
+     */
+    public static long tableBytes(int nodeCount) {
+        return BYTES_PER_PAIR * nodeCount * nodeCount;
+    }
+
+    /**
+     * Decides whether Floyd-Warshall, which takes about n^3 steps, is likely
+     * faster than Dijkstra from every node, which takes about n*m*log(n).
+     *
+     * @param nodeCount the number of nodes
+     * @param edgeCount the number of edges
+     * @return true if the graph is dense enough for Floyd-Warshall
+     */
+    protected static boolean isDense(int nodeCount, int edgeCount) {
+        double log = Math.max(1, Math.log(nodeCount) / Math.log(2));
+        return (double) edgeCount * log * 4 > (double) nodeCount * nodeCount;
+    }
+
+    /**
+     * Computes the tables with the blocked Floyd-Warshall algorithm. The
+     * tables are split into square blocks, and for each block k of
+     * intermediate nodes, the diagonal block is updated first, then the
+     * other blocks in its row and column, which only depend on it, and then
+     * all the remaining blocks. Blocks in the last two steps are independent
+     * of each other, so they are updated in parallel on the common fork/join
+     * pool.
+     */
+    protected void computeFloydWarshall() {
+        initializeTables();
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int k = 0; k < blocks; k++) {
+            int kBlock = k;
+            updateBlock(kBlock, kBlock, kBlock);
+            IntStream.range(0, blocks).parallel().forEach(b -> {
+                if (b != kBlock) {
+                    updateBlock(kBlock, b, kBlock);
+                    updateBlock(b, kBlock, kBlock);
+                }
+            });
+            IntStream.range(0, blocks * blocks).parallel().forEach(block -> {
+                int i = block / blocks;
+                int j = block % blocks;
+                if (i != kBlock && j != kBlock)
+                    updateBlock(i, j, kBlock);
+            });
+        }
+    }
+
+    // sets each distance to the cheapest edge between the nodes, if any
+    private void initializeTables() {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, -1);
+        for (int i = 0; i < n; i++) {
+            dist[i * n + i] = 0;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int pair = i * n + targets[e];
+                if (weights[e] < dist[pair]) {
+                    dist[pair] = weights[e];
+                    next[pair] = e;
+                }
+            }
+        }
+    }
+
+    // relaxes the paths from the nodes of block iBlock to those of block
+    // jBlock through each intermediate node of block kBlock
+    private void updateBlock(int iBlock, int jBlock, int kBlock) {
+        int iEnd = Math.min(n, (iBlock + 1) * BLOCK_SIZE);
+        int jStart = jBlock * BLOCK_SIZE;
+        int jEnd = Math.min(n, jStart + BLOCK_SIZE);
+        int kEnd = Math.min(n, (kBlock + 1) * BLOCK_SIZE);
+        for (int k = kBlock * BLOCK_SIZE; k < kEnd; k++) {
+            int kRow = k * n;
+            for (int i = iBlock * BLOCK_SIZE; i < iEnd; i++) {
+                int iRow = i * n;
+                double throughK = dist[iRow + k];
+                if (throughK == Double.POSITIVE_INFINITY)
+                    continue;
+                int firstEdge = next[iRow + k];
+                for (int j = jStart; j < jEnd; j++) {
+                    double cost = throughK + dist[kRow + j];
+                    if (cost < dist[iRow + j]) {
+                        dist[iRow + j] = cost;
+                        next[iRow + j] = firstEdge;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the tables by running Dijkstra's algorithm from every node,
+     * with the sources spread over the common fork/join pool. Each search
+     * fills in its source's row, and remembers the first edge of the path
+     * to each node it reaches.
+     */
+    protected void computeDijkstra() {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, -1);
+        ThreadLocal<IndexedPriorityQueue> queues = ThreadLocal.withInitial(queueFactory);
+        IntStream.range(0, n).parallel().forEach(source -> {
+            IndexedPriorityQueue queue = queues.get();
+            queue.reset(n);
+            int row = source * n;
+            dist[row + source] = 0;
+            queue.insertOrDecrease(source, 0);
+            while (!queue.isEmpty()) {
+                int current = queue.pollMin();
+                double currentDist = dist[row + current];
+                for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                    int neighbor = targets[e];
+                    double cost = currentDist + weights[e];
+                    if (cost < dist[row + neighbor]) {
+                        dist[row + neighbor] = cost;
+                        next[row + neighbor] = current == source ? e : next[row + current];
+                        queue.insertOrDecrease(neighbor, cost);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Looks up the table entry for a pair of nodes, checking that there is a
+     * path between them.
+     *
+     * @return the index of the pair in the tables
+     * @throws NoSuchElementException if either node is not in this graph, or
+     *                                there is no path between them
+     */
+    private int pairOf(NodeType start, NodeType end) {
+        int pair = idOf(start) * n + idOf(end);
+        if (dist[pair] == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("No path from start to end node");
+        return pair;
+    }
+
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return dist[pairOf(start, end)];
+    }
+
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        return shortestPath(start, end).getNodes();
+    }
+
+    @Override
+    public GraphPath<NodeType, EdgeType> shortestPath(NodeType start, NodeType end) {
+        int pair = pairOf(start, end);
+        int to = idOf(end);
+        // follow the next hops from the start node to the end node
+        List<NodeType> pathNodes = new LinkedList<>();
+        List<EdgeType> pathEdges = new LinkedList<>();
+        int node = idOf(start);
+        pathNodes.add(nodeData[node]);
+        while (node != to) {
+            int edge = next[node * n + to];
+            node = targets[edge];
+            pathNodes.add(nodeData[node]);
+            pathEdges.add(edgeData[edge]);
+        }
+        return new GraphPath<>(pathNodes, pathEdges, dist[pair]);
+    }
+
+    /**
+     * @return the time taken to compute the tables, in milliseconds
+     */
+    public double getComputeMillis() {
+        return computeNanos / 1e6;
+    }
+}
@@ -1,21 +1,76 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * This class implements the backend of the Flight Router app. It is safe to use from many threads
+ * at once: any number of route and statistics queries can run concurrently, while reading a file
+ * waits for the running queries to finish and holds new ones back until it is done.
+ */
 public class Backend implements BackendInterface {
 
     private GraphADT graphADT;
     private long totalMiles = 0;//to record total distance of the whole graph
+    //memory that precomputed all-pairs route tables may use, or 0 to always search the graph
+    private long allPairsMemoryBudget = 0;
+    private volatile AllPairsGraph allPairsGraph = null;//answers route queries by table lookup when not null
+    private volatile long allPairsVersion = 0;//the version of the graph that the tables were computed for
+    private DotReader dotReader = new DotReader(Runtime.getRuntime().availableProcessors());
+    private File dataFile = null;//the last file read, which snapshots are made from
+    private long fileMiles = 0;//the miles of all flights in that file, counting each flight once
+    //optional airport coordinates in node attributes, such as [lat=41.97, lon=-87.90]
+    private static final Pattern LATITUDE_PATTERN =
+            Pattern.compile("\\b(?:lat|latitude)\\s*=\\s*\"?(-?\\d+(?:\\.\\d+)?)");
+    private static final Pattern LONGITUDE_PATTERN =
+            Pattern.compile("\\b(?:lon|lng|longitude)\\s*=\\s*\"?(-?\\d+(?:\\.\\d+)?)");
+    //queries share the read lock, and reading a file takes the write lock, since the graphs are
+    //only safe to search from several threads while nothing changes them
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private RouteCache routeCache = null;//caches the routes of getShortestRoute when not null
+    //the number of files and snapshots read, so that cached routes are dropped for graphs that
+    //do not extend BaseGraph and so have no version of their own
+    private long loads = 0;
 
     public Backend(GraphADT graphADT){
         this.graphADT = graphADT;
     }
 
+    /**
+     * Creates a backend that precomputes the shortest routes between all pairs of airports after
+     * reading a file, if the tables fit in the given memory budget. Otherwise, and for graphs
+     * that do not extend BaseGraph, routes are searched for in the graph as usual. When the graph
+     * is changed directly, such as by closing airports, the tables are computed again by the
+     * next query, or dropped if they no longer fit in the budget.
+     *
+     * @param graphADT The graph to store the airports and flights in.
+     * @param allPairsMemoryBudget The most memory in bytes that the all-pairs tables may use.
+     */
+    public Backend(GraphADT graphADT, long allPairsMemoryBudget){
+        this.graphADT = graphADT;
+        this.allPairsMemoryBudget = allPairsMemoryBudget;
+    }
+
+    /**
+     * Creates a backend that caches the routes found by getShortestRoute. Cached routes are
+     * dropped whenever the graph changes, whether by reading a file or by changing the graph
+     * directly, as long as the graph extends BaseGraph.
+     *
+     * @param graphADT The graph to store the airports and flights in.
+     * @param routeCache The cache for routes, which should not be shared with other backends.
+     */
+    public Backend(GraphADT graphADT, RouteCache routeCache){
+        this.graphADT = graphADT;
+        this.routeCache = routeCache;
+    }
+
     /**
      * Reads graphics data from a file
      *
@@ -24,28 +79,221 @@ public class Backend implements BackendInterface {
      */
     @Override
     public void readDataFromFile(String filePath) throws IOException {
+        lock.writeLock().lock();
+        try {
+            readFile(filePath);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a DOT file into the graph, while holding the write lock
+     */
+    private void readFile(String filePath) throws IOException {
+        long milesBefore = totalMiles;
+        //an undirected graph stores each flight once, and follows it both ways
+        boolean undirected = graphADT instanceof BaseGraph && ((BaseGraph) graphADT).isUndirected();
+        //one pass over the file, parsed in parallel chunks when it is large: airports are inserted
+        //when first seen, and each flight is parsed once
+        dotReader.read(filePath, new DotReader.Listener() {
+            @Override
+            public void airport(String airport, String attributes) {
+                graphADT.insertNode(airport);
+                readCoordinates(airport,attributes);
+            }
+
+            @Override
+            public void flight(String from, String to, int miles) {// build undirected graph
+                if(!graphADT.containsNode(from)) graphADT.insertNode(from);
+                if(!graphADT.containsNode(to)) graphADT.insertNode(to);
+                Integer weight = miles;
+                graphADT.insertEdge(from,to,weight);
+                if(!undirected) graphADT.insertEdge(to,from,weight);
+                totalMiles += miles;
+            }
+        });
+        fileMiles = totalMiles - milesBefore;
+        dataFile = new File(filePath);
+        totalMiles *= 2;// due to the undirected graph, the total miles should be doubled
+        prepareForQueries();
+    }
+
+    /**
+     * Loads the airports and flights of a DOT file from a binary snapshot of it, if the snapshot
+     * is valid, and otherwise reads the DOT file itself. A snapshot is only valid when it has the
+     * current format version and checksum, and the DOT file has not changed since it was made.
+     * The graph and statistics are the same either way.
+     *
+     * @param snapshotPath The path to the snapshot file, which does not need to exist.
+     * @param filePath The path to the DOT file.
+     * @return true if the snapshot was loaded, false if the DOT file was read instead.
+     * @throws IOException If an error occurred while reading the files.
+     */
+    public boolean readDataFromSnapshot(String snapshotPath, String filePath) throws IOException {
+        lock.writeLock().lock();
+        try {
+            return readSnapshot(snapshotPath,filePath);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads a snapshot, or the DOT file when the snapshot is not valid, while holding the write lock
+     */
+    private boolean readSnapshot(String snapshotPath, String filePath) throws IOException {
+        File file = new File(filePath);
+        GraphSnapshot snapshot = graphADT instanceof BaseGraph ? GraphSnapshot.read(snapshotPath,file) : null;
+        if(snapshot == null){//missing, stale or corrupt
+            readFile(filePath);
+            return false;
+        }
+        //the nodes and edges are inserted in the order they were stored, with no parsing; the edges
+        //of a snapshot are unique, so into an empty graph they are appended without looking for
+        //existing ones
+        boolean empty = graphADT.getNodeCount() == 0;
+        for(int i=0;i<snapshot.names.length;i++){
+            graphADT.insertNode(snapshot.names[i]);
+            if(snapshot.latitudes != null && graphADT instanceof AStarGraph
+                    && !Double.isNaN(snapshot.latitudes[i])){
+                ((AStarGraph) graphADT).setCoordinates(snapshot.names[i],snapshot.latitudes[i],snapshot.longitudes[i]);
+            }
+        }
+        BaseGraph graph = (BaseGraph) graphADT;
+        BaseGraph.Node[] nodes = new BaseGraph.Node[snapshot.names.length];
+        for(int i=0;i<snapshot.names.length;i++){
+            nodes[i] = (BaseGraph.Node) graph.nodes.get(snapshot.names[i]);
+        }
+        for(int i=0;i<snapshot.names.length;i++){
+            for(int edge=snapshot.offsets[i];edge<snapshot.offsets[i+1];edge++){
+                int target = snapshot.targets[edge];
+                if(graph.isUndirected() && target < i){
+                    //an undirected graph already has this flight from when target's edges were added
+                    continue;
+                }
+                if(empty){
+                    graph.appendEdge(nodes[i],nodes[target],snapshot.miles[edge]);
+                }else{
+                    graph.insertEdge(snapshot.names[i],snapshot.names[snapshot.targets[edge]],snapshot.miles[edge]);
+                }
+            }
+        }
+        fileMiles = snapshot.fileMiles;
+        dataFile = file;
+        totalMiles = (totalMiles + fileMiles) * 2;//as readDataFromFile computes it
+        prepareForQueries();
+        return true;
+    }
 
-        Scanner scanner = new Scanner(new File(filePath));
-        Pattern pattern = Pattern.compile("^\\s+\"(\\w+)\"\\s\\[");
-        while (scanner.hasNextLine()){//insert nodes at first, then insert edges in next steps
-            String line = scanner.nextLine();
-            Matcher matcher = pattern.matcher(line);
-            if(matcher.find()){
-                graphADT.insertNode(matcher.group(1));
+    /**
+     * Writes a binary snapshot of the airports and flights read from the last DOT file, which
+     * readDataFromSnapshot can load much faster than the DOT file can be read.
+     *
+     * @param snapshotPath The path to write the snapshot file to.
+     * @throws IOException If an error occurred while writing the file.
+     * @throws IllegalStateException If no file has been read, or the graph does not extend BaseGraph.
+     */
+    public void writeSnapshot(String snapshotPath) throws IOException {
+        lock.readLock().lock();
+        try {
+            if(dataFile == null || !(graphADT instanceof BaseGraph)){
+                throw new IllegalStateException("no data file has been read into a BaseGraph");
             }
+            GraphSnapshot.write(snapshotPath,(BaseGraph) graphADT,fileMiles,dataFile);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Precomputes the all-pairs route tables when they are enabled and fit in the memory budget,
+     * and otherwise the graph's own preprocessing, so that no query has to do it while other
+     * queries are searching the graph
+     */
+    private void prepareForQueries() {
+        loads++;
+        allPairsGraph = null;
+        if(graphADT instanceof BaseGraph
+                && AllPairsGraph.tableBytes(graphADT.getNodeCount()) <= allPairsMemoryBudget){
+            computeAllPairsTables();
+        }else if(graphADT instanceof ContractionHierarchyGraph){
+            ((ContractionHierarchyGraph) graphADT).preprocess();
+        }else if(graphADT instanceof LandmarkGraph){
+            ((LandmarkGraph) graphADT).preprocess();
         }
-        scanner = new Scanner(new File(filePath));
-        pattern = Pattern.compile("^\\s+\"(\\w+)\"\\s--\\s\"(\\w+)\"\\s\\[miles=(\\d+)\\];");
-        while (scanner.hasNextLine()){//insert edges
-            String line = scanner.nextLine();
-            Matcher matcher = pattern.matcher(line);
-            if(matcher.find()){// build undirected graph
-                graphADT.insertEdge(matcher.group(1),matcher.group(2),Integer.parseInt(matcher.group(3)));
-                graphADT.insertEdge(matcher.group(2),matcher.group(1),Integer.parseInt(matcher.group(3)));
-                totalMiles += Integer.parseInt(matcher.group(3));
+    }
+
+    /**
+     * Computes the all-pairs tables for the current version of the graph, or drops them when they
+     * no longer fit in the memory budget
+     */
+    private void computeAllPairsTables() {
+        BaseGraph<?, ?> graph = (BaseGraph<?, ?>) graphADT;
+        long version = graph.getVersion();
+        allPairsGraph = AllPairsGraph.tableBytes(graph.getNodeCount()) <= allPairsMemoryBudget
+                ? new AllPairsGraph<>(graph) : null;
+        allPairsVersion = version;
+    }
+
+    /**
+     * Gets the all-pairs tables, computing them again first if the graph has changed since they
+     * were computed, while the read lock is held. When several queries find the tables out of
+     * date at once, one of them computes them while the others wait for it.
+     *
+     * @return the tables, or null if routes are searched for in the graph
+     */
+    private AllPairsGraph<?, ?> allPairsTables() {
+        if(allPairsGraph != null && allPairsVersion != ((BaseGraph<?, ?>) graphADT).getVersion()){
+            synchronized (this) {
+                if(allPairsGraph != null && allPairsVersion != ((BaseGraph<?, ?>) graphADT).getVersion()){
+                    computeAllPairsTables();
+                }
             }
         }
-        totalMiles *= 2;// due to the undirected graph, the total miles should be doubled
+        return allPairsGraph;
+    }
+
+    /**
+     * Get the reading speed of the last file read
+     *
+     * @return The number of lines read per second by the last call to readDataFromFile.
+     */
+    public double getLinesPerSecond() {
+        return dotReader.getLinesPerSecond();
+    }
+
+    /**
+     * Checks whether routes are looked up in precomputed all-pairs tables
+     *
+     * @return true if the tables were computed for the data read, false if routes are searched for
+     */
+    public boolean hasAllPairsTables() {
+        lock.readLock().lock();
+        try {
+            return allPairsTables() != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the optional lat and lon attributes of an airport's node line, and passes them to
+     * the graph when it can use them to guide its searches
+     *
+     * @param airport The identifier of the airport.
+     * @param attributes The attribute list of the airport's node line.
+     */
+    private void readCoordinates(String airport, String attributes) {
+        if(!(graphADT instanceof AStarGraph)){
+            return;
+        }
+        Matcher latitude = LATITUDE_PATTERN.matcher(attributes);
+        Matcher longitude = LONGITUDE_PATTERN.matcher(attributes);
+        if(latitude.find() && longitude.find()){
+            ((AStarGraph) graphADT).setCoordinates(airport,
+                    Double.parseDouble(latitude.group(1)),Double.parseDouble(longitude.group(1)));
+        }
     }
 
     /**
@@ -58,15 +306,138 @@ public class Backend implements BackendInterface {
      */
     @Override
     public ShortestPath getShortestRoute(String start, String destination) throws NoSuchElementException {
-        List<String> routeList = graphADT.shortestPathData(start,destination);//obtaining route list
-        int totalCost = (int) graphADT.shortestPathCost(start,destination);
+        //one search returns the route list, the miles of each leg and the total miles together
+        GraphPath<String, ? extends Number> path;
+        lock.readLock().lock();
+        try {
+            if(routeCache != null){
+                //the version cannot change while the read lock is held
+                return routeCache.get(start,destination,graphVersion(),() -> searchRoute(start,destination));
+            }
+            path = searchedGraph().shortestPath(start,destination);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return toShortestPath(path);
+    }
+
+    /**
+     * Searches for a route, while the read lock is held
+     */
+    private ShortestPath searchRoute(String start, String destination) {
+        return toShortestPath(searchedGraph().shortestPath(start,destination));
+    }
+
+    /**
+     * @return the all-pairs tables when they are used, and otherwise the graph
+     */
+    private GraphADT searchedGraph() {
+        AllPairsGraph<?, ?> tables = allPairsTables();
+        return tables != null ? tables : graphADT;
+    }
+
+    /**
+     * @return a version of the data that grows whenever a file is read or the graph changes
+     */
+    private long graphVersion() {
+        return graphADT instanceof BaseGraph ? ((BaseGraph) graphADT).getVersion() + loads : loads;
+    }
+
+    /**
+     * Get the route cache, whose counters show how well it is working
+     *
+     * @return The cache of routes, or null if routes are not cached.
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Converts a path through the graph into a route, with the miles of each flight along it
+     */
+    private static ShortestPath toShortestPath(GraphPath<String, ? extends Number> path) {
         List<Integer> milesList = new ArrayList<>();
-        for(int i=0;i<routeList.size()-1;i++){//after obtaining the route list, use it to load miles list
-            //each data of distance between joint airports can be calculated by calling shortestPathCost method
-            milesList.add((int) graphADT.shortestPathCost(routeList.get(i),routeList.get(i+1)));
+        for(Number miles : path.getEdges()){
+            milesList.add(miles.intValue());
+        }
+
+        return new ShortestPath(path.getNodes(),milesList,(int) path.getCost());
+    }
+
+    /**
+     * Calculates the shortest routes for a batch of (start, destination) pairs. The pairs are
+     * grouped by their start airport, and a single search from each start airport finds the
+     * routes to all of its destinations. The start airports are searched from in parallel on the
+     * common fork/join pool, and the results are returned in the order of the pairs.
+     *
+     * @param pairs The start and destination airport of each query, as two-element arrays.
+     * @return The result of each query, in the order of pairs, holding an error for each pair of
+     *         airports that do not exist or are not connected.
+     */
+    @Override
+    public List<RouteResult> getShortestRoutes(List<String[]> pairs) {
+        //the indexes of the pairs that start at each airport
+        Map<String, List<Integer>> byStart = new LinkedHashMap<>();
+        for(int i=0;i<pairs.size();i++){
+            byStart.computeIfAbsent(pairs.get(i)[0], start -> new ArrayList<>()).add(i);
+        }
+        RouteResult[] results = new RouteResult[pairs.size()];
+        lock.readLock().lock();
+        try {
+            //the calling thread holds the read lock until every search has finished
+            byStart.entrySet().parallelStream()
+                    .forEach(group -> routesFrom(group.getKey(),group.getValue(),pairs,results));
+        } finally {
+            lock.readLock().unlock();
         }
+        return Arrays.asList(results);
+    }
 
-        return new ShortestPath(routeList,milesList,totalCost);
+    /**
+     * Finds the routes of the pairs that start at one airport, with a single search when the
+     * graph is a DijkstraGraph, while the read lock is held
+     */
+    private void routesFrom(String start, List<Integer> indexes, List<String[]> pairs, RouteResult[] results) {
+        List<String> destinations = new ArrayList<>(indexes.size());
+        for(int index : indexes){
+            destinations.add(pairs.get(index)[1]);
+        }
+        GraphADT searched = searchedGraph();
+        List<? extends GraphPath<String, ? extends Number>> paths = null;
+        if(searched == graphADT && graphADT instanceof DijkstraGraph && graphADT.containsNode(start)){
+            try {
+                paths = dijkstraGraph().shortestPathsFrom(start,destinations);
+            } catch (NoSuchElementException e) {
+                //a closed start airport; each pair below reports the error of its own search
+            }
+        }
+        for(int i=0;i<indexes.size();i++){
+            String destination = destinations.get(i);
+            RouteResult result;
+            if(!graphADT.containsNode(start) || !graphADT.containsNode(destination)){
+                result = new RouteResult(start,destination,"There is no start or end node");
+            }else if(paths != null){
+                result = paths.get(i) != null
+                        ? new RouteResult(start,destination,toShortestPath(paths.get(i)))
+                        : new RouteResult(start,destination,"No path from start to end node");
+            }else{
+                try {
+                    result = new RouteResult(start,destination,
+                            toShortestPath(searched.shortestPath(start,destination)));
+                } catch (NoSuchElementException e) {
+                    result = new RouteResult(start,destination,e.getMessage());
+                }
+            }
+            results[indexes.get(i)] = result;
+        }
+    }
+
+    /**
+     * @return the graph as a DijkstraGraph, which it must be; its airports are always Strings
+     */
+    @SuppressWarnings("unchecked")
+    private DijkstraGraph<String, ? extends Number> dijkstraGraph() {
+        return (DijkstraGraph<String, ? extends Number>) graphADT;
     }
 
     /**
@@ -76,8 +447,13 @@ public class Backend implements BackendInterface {
      */
     @Override
     public String getDatasetStatistics() {
-        return "Number of airports: "+graphADT.getNodeCount()+
-                "\nNumber of flights: "+graphADT.getEdgeCount()+
-                "\nTotal Miles for All Flights: "+totalMiles;
+        lock.readLock().lock();
+        try {
+            return "Number of airports: "+graphADT.getNodeCount()+
+                    "\nNumber of flights: "+graphADT.getEdgeCount()+
+                    "\nTotal Miles for All Flights: "+totalMiles;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 }
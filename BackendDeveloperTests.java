@@ -1,8 +1,19 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class BackendDeveloperTests {
 
@@ -98,4 +109,599 @@ public class BackendDeveloperTests {
         }
     }
 
+    /**
+     * Test reading airport coordinates from the node lines of a DOT file
+     * A backend with an AStarGraph should pick up the coordinates, and find the same routes as a
+     * backend with a DijkstraGraph
+     */
+    @Test
+    public void testReadCoordinates() throws IOException {
+        File file = File.createTempFile("coordinates", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 400, 6, 9);
+        AStarGraph<String, Integer> graph = new AStarGraph<>(new PlaceholderMap<>());
+        BackendInterface aStarBackend = new Backend(graph);
+        BackendInterface dijkstraBackend = new Backend(new DijkstraGraph(new PlaceholderMap()));
+        aStarBackend.readDataFromFile(file.getPath());
+        dijkstraBackend.readDataFromFile(file.getPath());
+
+        Assertions.assertTrue(graph.hasAllCoordinates(), "every airport in the file has coordinates !");
+        Assertions.assertEquals(dijkstraBackend.getDatasetStatistics(),aStarBackend.getDatasetStatistics());
+        String[] airports = GraphBenchmark.airportNames(400);
+        for(int i=0;i<airports.length;i+=7){
+            ShortestPathInterface expected = dijkstraBackend.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            ShortestPathInterface actual = aStarBackend.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            Assertions.assertEquals(expected.getTotalMiles(),actual.getTotalMiles(),
+                    "A* should find routes with the same miles as Dijkstra !");
+        }
+    }
+
+    /**
+     * Test the all-pairs mode of the backend
+     * With a big enough memory budget, routes should come from the precomputed tables and match
+     * the routes searched for by a plain backend; with a budget that is too small, the backend
+     * should fall back to searching
+     */
+    @Test
+    public void testAllPairsRoutes() throws IOException {
+        File file = File.createTempFile("allpairs", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 300, 6, 9);
+        Backend tableBackend = new Backend(new DijkstraGraph(new PlaceholderMap()), AllPairsGraph.tableBytes(300));
+        Backend smallBackend = new Backend(new DijkstraGraph(new PlaceholderMap()), AllPairsGraph.tableBytes(299));
+        BackendInterface searchBackend = new Backend(new DijkstraGraph(new PlaceholderMap()));
+        tableBackend.readDataFromFile(file.getPath());
+        smallBackend.readDataFromFile(file.getPath());
+        searchBackend.readDataFromFile(file.getPath());
+
+        Assertions.assertTrue(tableBackend.hasAllPairsTables(), "the tables fit in the budget !");
+        Assertions.assertFalse(smallBackend.hasAllPairsTables(), "the tables do not fit in the budget !");
+        String[] airports = GraphBenchmark.airportNames(300);
+        for(int i=0;i<airports.length;i+=7){
+            ShortestPathInterface expected = searchBackend.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            ShortestPathInterface actual = tableBackend.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            Assertions.assertEquals(expected.getTotalMiles(),actual.getTotalMiles(),
+                    "table lookups should find routes with the same miles as searching !");
+            int miles = 0;
+            for(int leg : actual.getMiles()){
+                miles += leg;
+            }
+            Assertions.assertEquals(actual.getTotalMiles(),miles);
+            Assertions.assertEquals(actual.getRoute().size(),actual.getMiles().size()+1);
+        }
+        Assertions.assertThrows(NoSuchElementException.class,()->tableBackend.getShortestRoute("AAA","ZZZ"));
+    }
+
+    /**
+     * Test that the all-pairs tables follow changes made to the graph directly after reading a
+     * file: new flights and closed airports change the routes, and the tables are dropped once
+     * the graph outgrows the memory budget
+     */
+    @Test
+    public void testAllPairsRoutesAfterChanges() throws IOException {
+        File file = File.createTempFile("allpairs", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 200, 6, 29);
+        DijkstraGraph<String,Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        Backend backend = new Backend(graph, AllPairsGraph.tableBytes(200));
+        backend.readDataFromFile(file.getPath());
+        Assertions.assertTrue(backend.hasAllPairsTables());
+        String[] airports = GraphBenchmark.airportNames(200);
+
+        //a new flight is used right away
+        graph.insertEdge(airports[0],airports[199],1);
+        Assertions.assertEquals(1,backend.getShortestRoute(airports[0],airports[199]).getTotalMiles());
+
+        //a closed airport is no longer flown through, and cannot be flown to
+        List<String> route = backend.getShortestRoute(airports[10],airports[150]).getRoute();
+        Assertions.assertTrue(route.size() > 2);
+        String closed = route.get(1);
+        graph.closeNodes(List.of(closed));
+        Assertions.assertTrue(backend.hasAllPairsTables());
+        ShortestPathInterface detour = backend.getShortestRoute(airports[10],airports[150]);
+        Assertions.assertFalse(detour.getRoute().contains(closed));
+        Assertions.assertEquals(graph.shortestPathCost(airports[10],airports[150]),detour.getTotalMiles());
+        Assertions.assertThrows(NoSuchElementException.class,()->backend.getShortestRoute(airports[10],closed));
+        List<RouteResult> results = backend.getShortestRoutes(List.of(new String[]{airports[10],airports[150]},
+                new String[]{airports[10],closed}));
+        Assertions.assertEquals(detour.getTotalMiles(),results.get(0).getRoute().getTotalMiles());
+        Assertions.assertFalse(results.get(1).hasRoute());
+
+        //tables that no longer fit in the budget are dropped, and routes are searched for instead
+        graph.insertNode("ZZZ");
+        graph.insertEdge(airports[150],"ZZZ",5);
+        Assertions.assertFalse(backend.hasAllPairsTables());
+        Assertions.assertEquals(detour.getTotalMiles()+5,backend.getShortestRoute(airports[10],"ZZZ").getTotalMiles());
+    }
+
+    /**
+     * Test that the single-pass reader builds exactly the graph that the original two Scanner and
+     * regex passes built, including for lines that only almost match, tab indentation and \r\n
+     * line endings
+     */
+    @Test
+    public void testSinglePassReader() throws IOException {
+        File file = File.createTempFile("tricky", ".dot");
+        file.deleteOnExit();
+        String contents = "graph flights {\n"
+                + "  \"ORD\" [label=\"ORD\", lat=41.97, lon=-87.90];\r\n"
+                + "\t\"MKE\" [label=\"MKE\"];\n"
+                + "\"SFO\" [label=\"SFO\"];\n"//no indentation, not an airport
+                + "  \"DEN\"  [label=\"DEN\"];\n"//two spaces, not an airport
+                + "  \"LAX\" [\r"
+                + "  \"JFK\" [label=\"JFK\"];\n"
+                + "  \"ORD\" -- \"MKE\" [miles=67];\r\n"
+                + "  \"ORD\" -- \"LAX\" [miles=1744]; // comment\n"
+                + "  \"ORD\" -- \"JFK\" [miles=];\n"//no miles, not a flight
+                + "  \"ORD\" -- \"JFK\" [miles=740]\n"//no semicolon, not a flight
+                + "  \"ORD\"--\"JFK\" [miles=740];\n"//no spaces, not a flight
+                + "  \"MKE\" -- \"JFK\" [miles=738];\n"
+                + "  \"MKE\" -- \"JFK\" [miles=737];\n"//updates the weight
+                + "}";
+        Files.write(file.toPath(), contents.getBytes());
+        DijkstraGraph<String,Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        Backend backend = new Backend(graph);
+        backend.readDataFromFile(file.getPath());
+
+        //the original passes, as a reference
+        DijkstraGraph<String,Integer> expected = new DijkstraGraph<>(new PlaceholderMap<>());
+        long miles = 0;
+        Scanner scanner = new Scanner(file);
+        Pattern pattern = Pattern.compile("^\\s+\"(\\w+)\"\\s\\[(.*)");
+        while(scanner.hasNextLine()){
+            Matcher matcher = pattern.matcher(scanner.nextLine());
+            if(matcher.find()) expected.insertNode(matcher.group(1));
+        }
+        scanner = new Scanner(file);
+        pattern = Pattern.compile("^\\s+\"(\\w+)\"\\s--\\s\"(\\w+)\"\\s\\[miles=(\\d+)\\];");
+        while(scanner.hasNextLine()){
+            Matcher matcher = pattern.matcher(scanner.nextLine());
+            if(matcher.find()){
+                expected.insertEdge(matcher.group(1),matcher.group(2),Integer.parseInt(matcher.group(3)));
+                expected.insertEdge(matcher.group(2),matcher.group(1),Integer.parseInt(matcher.group(3)));
+                miles += Integer.parseInt(matcher.group(3));
+            }
+        }
+
+        Assertions.assertEquals(4,graph.getNodeCount());
+        Assertions.assertEquals(expected.getNodeCount(),graph.getNodeCount());
+        Assertions.assertEquals(expected.getEdgeCount(),graph.getEdgeCount());
+        for(String airport : new String[]{"ORD","MKE","LAX","JFK"}){
+            Assertions.assertTrue(graph.containsNode(airport));
+            for(String other : new String[]{"ORD","MKE","LAX","JFK"}){
+                Assertions.assertEquals(expected.containsEdge(airport,other),graph.containsEdge(airport,other));
+                if(expected.containsEdge(airport,other)){
+                    Assertions.assertEquals(expected.getEdge(airport,other),graph.getEdge(airport,other));
+                }
+            }
+        }
+        Assertions.assertEquals("Number of airports: 4\nNumber of flights: 6\nTotal Miles for All Flights: "+miles*2,
+                backend.getDatasetStatistics());
+        Assertions.assertTrue(backend.getLinesPerSecond()>0);
+    }
+
+    /**
+     * Test that reading a large file in parallel chunks passes on exactly the airports and flights
+     * that a single-threaded read does, in the same order, with mixed line endings that chunk
+     * boundaries can fall between
+     */
+    @Test
+    public void testParallelReader() throws IOException {
+        File file = File.createTempFile("parallel", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 30000, 8, 3);
+        List<String> lines = Files.readAllLines(file.toPath());
+        StringBuilder contents = new StringBuilder();
+        for(int i=0;i<lines.size();i++){
+            contents.append(lines.get(i)).append(i%3==0 ? "\r\n" : i%3==1 ? "\r" : "\n");
+        }
+        Files.write(file.toPath(), contents.toString().getBytes());
+        Assertions.assertTrue(file.length()>3*DotReader.MIN_CHUNK_BYTES, "the file should be split into chunks !");
+
+        DotReader sequential = new DotReader();
+        DotReader parallel = new DotReader(4);
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        sequential.read(file.getPath(), recorder(expected));
+        parallel.read(file.getPath(), recorder(actual));
+        Assertions.assertEquals(lines.size(),sequential.getLineCount());
+        Assertions.assertEquals(sequential.getLineCount(),parallel.getLineCount());
+        Assertions.assertEquals(expected.size(),actual.size());
+        Assertions.assertEquals(expected,actual);
+    }
+
+    /**
+     * Creates a reader listener that records each airport and flight as a string
+     */
+    private static DotReader.Listener recorder(List<String> events) {
+        return new DotReader.Listener() {
+            @Override
+            public void airport(String airport, String attributes) {
+                events.add(airport+" ["+attributes);
+            }
+
+            @Override
+            public void flight(String from, String to, int miles) {
+                events.add(from+" -- "+to+" "+miles);
+            }
+        };
+    }
+
+    /**
+     * Test writing and loading binary snapshots
+     * A valid snapshot should give the same graph, statistics and coordinates as the DOT file,
+     * while a corrupt, stale or differently versioned snapshot should be ignored in favor of the
+     * DOT file
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        File file = File.createTempFile("snapshot", ".dot");
+        File snapshot = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        snapshot.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 300, 6, 4);
+        Backend original = new Backend(new AStarGraph(new PlaceholderMap()));
+        original.readDataFromFile(file.getPath());
+        original.writeSnapshot(snapshot.getPath());
+
+        AStarGraph<String,Integer> graph = new AStarGraph<>(new PlaceholderMap<>());
+        Backend loaded = new Backend(graph);
+        Assertions.assertTrue(loaded.readDataFromSnapshot(snapshot.getPath(),file.getPath()),
+                "a valid snapshot should be loaded !");
+        Assertions.assertEquals(original.getDatasetStatistics(),loaded.getDatasetStatistics());
+        Assertions.assertTrue(graph.hasAllCoordinates());
+        String[] airports = GraphBenchmark.airportNames(300);
+        for(int i=0;i<airports.length;i+=11){
+            ShortestPathInterface expected = original.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            ShortestPathInterface actual = loaded.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            Assertions.assertEquals(expected.getRoute(),actual.getRoute());
+            Assertions.assertEquals(expected.getMiles(),actual.getMiles());
+        }
+
+        //a changed byte in the body fails the checksum
+        byte[] bytes = Files.readAllBytes(snapshot.toPath());
+        byte[] corrupt = bytes.clone();
+        corrupt[corrupt.length/2] ^= 1;
+        Files.write(snapshot.toPath(), corrupt);
+        Backend fallback = new Backend(new AStarGraph(new PlaceholderMap()));
+        Assertions.assertFalse(fallback.readDataFromSnapshot(snapshot.getPath(),file.getPath()),
+                "a corrupt snapshot should not be loaded !");
+        Assertions.assertEquals(original.getDatasetStatistics(),fallback.getDatasetStatistics());
+
+        //another format version
+        byte[] versioned = bytes.clone();
+        versioned[7] = (byte) (GraphSnapshot.VERSION + 1);
+        Files.write(snapshot.toPath(), versioned);
+        Assertions.assertFalse(new Backend(new DijkstraGraph(new PlaceholderMap()))
+                .readDataFromSnapshot(snapshot.getPath(),file.getPath()));
+
+        //a DOT file changed since the snapshot was made
+        Files.write(snapshot.toPath(), bytes);
+        Assertions.assertTrue(new Backend(new DijkstraGraph(new PlaceholderMap()))
+                .readDataFromSnapshot(snapshot.getPath(),file.getPath()));
+        Assertions.assertTrue(file.setLastModified(file.lastModified()+60000));
+        Assertions.assertFalse(new Backend(new DijkstraGraph(new PlaceholderMap()))
+                .readDataFromSnapshot(snapshot.getPath(),file.getPath()));
+
+        //a missing snapshot
+        Assertions.assertTrue(snapshot.delete());
+        Assertions.assertFalse(new Backend(new DijkstraGraph(new PlaceholderMap()))
+                .readDataFromSnapshot(snapshot.getPath(),file.getPath()));
+    }
+
+    /**
+     * A backend with an undirected graph stores each flight once, but should report the same
+     * statistics and routes as one with a directed graph, and load and write the same snapshots
+     */
+    @Test
+    public void testUndirectedGraph() throws IOException {
+        File file = File.createTempFile("undirected", ".dot");
+        File snapshot = File.createTempFile("undirected", ".bin");
+        file.deleteOnExit();
+        snapshot.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 300, 6, 12);
+        Backend directed = new Backend(new AStarGraph(new PlaceholderMap()));
+        AStarGraph<String,Integer> graph = new AStarGraph<>(new AirportCodeMap<>(), true);
+        Backend undirected = new Backend(graph);
+        directed.readDataFromFile(file.getPath());
+        undirected.readDataFromFile(file.getPath());
+        Assertions.assertEquals(directed.getDatasetStatistics(),undirected.getDatasetStatistics());
+        Assertions.assertTrue(graph.hasAllCoordinates());
+        String[] airports = GraphBenchmark.airportNames(300);
+        for(int i=0;i<airports.length;i+=11){
+            ShortestPathInterface expected = directed.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            ShortestPathInterface actual = undirected.getShortestRoute(airports[i],airports[airports.length-1-i]);
+            Assertions.assertEquals(expected.getTotalMiles(),actual.getTotalMiles());
+        }
+
+        //snapshots of an undirected graph load into either kind of graph
+        undirected.writeSnapshot(snapshot.getPath());
+        Backend loadedDirected = new Backend(new DijkstraGraph(new PlaceholderMap()));
+        Backend loadedUndirected = new Backend(new DijkstraGraph(new PlaceholderMap(), DaryHeap::new, true));
+        Assertions.assertTrue(loadedDirected.readDataFromSnapshot(snapshot.getPath(),file.getPath()));
+        Assertions.assertTrue(loadedUndirected.readDataFromSnapshot(snapshot.getPath(),file.getPath()));
+        Assertions.assertEquals(directed.getDatasetStatistics(),loadedDirected.getDatasetStatistics());
+        Assertions.assertEquals(directed.getDatasetStatistics(),loadedUndirected.getDatasetStatistics());
+    }
+
+    /**
+     * A RouteServer should answer route and statistics queries with the backend's results as
+     * JSON, reject bad queries, and give the same answers to many clients at once
+     */
+    @Test
+    public void testRouteServer() throws IOException, InterruptedException {
+        File file = File.createTempFile("server", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 300, 6, 13);
+        Backend backend = new Backend(new AStarGraph<>(new AirportCodeMap<>(), true));
+        backend.readDataFromFile(file.getPath());
+        RouteServer server = new RouteServer(backend, 0);
+        server.start();
+        try {
+            String base = "http://localhost:"+server.getPort();
+            String[] airports = GraphBenchmark.airportNames(300);
+            ShortestPathInterface expected = backend.getShortestRoute(airports[3],airports[250]);
+            StringBuilder route = new StringBuilder();
+            for(String airport : expected.getRoute()){
+                route.append(route.length() == 0 ? "" : ",").append('"').append(airport).append('"');
+            }
+            Assertions.assertEquals("{\"route\":["+route+"],\"miles\":"+expected.getMiles().toString().replace(" ","")
+                    +",\"totalMiles\":"+expected.getTotalMiles()+"}",
+                    get(base+"/route?from="+airports[3]+"&to="+airports[250],200));
+            Assertions.assertEquals("{\"statistics\":\""+backend.getDatasetStatistics().replace("\n","\\n")+"\"}",
+                    get(base+"/statistics",200));
+            Assertions.assertEquals("{\"error\":\"no route from "+airports[3]+" to XYZ\"}",
+                    get(base+"/route?from="+airports[3]+"&to=XYZ",404));
+            get(base+"/route?from="+airports[3],400);
+            get(base+"/airports",404);
+
+            //many clients at once get the same answers as one
+            RouteLoadGenerator generator = new RouteLoadGenerator(base, airports);
+            RouteLoadGenerator.Result result = generator.run(8, 25, 14);
+            Assertions.assertEquals(0, result.errors);
+            Assertions.assertEquals(200, result.requests);
+            List<Thread> clients = new ArrayList<>();
+            List<String> mismatches = new ArrayList<>();
+            for(int c=0;c<8;c++){
+                int offset = c;
+                clients.add(new Thread(() -> {
+                    for(int i=offset;i<airports.length;i+=8){
+                        String from = airports[i], to = airports[airports.length-1-i];
+                        int miles = backend.getShortestRoute(from,to).getTotalMiles();
+                        try {
+                            if(!get(base+"/route?from="+from+"&to="+to,200).endsWith("\"totalMiles\":"+miles+"}")){
+                                synchronized (mismatches){ mismatches.add(from+" to "+to); }
+                            }
+                        } catch (IOException e) {
+                            synchronized (mismatches){ mismatches.add(e.toString()); }
+                        }
+                    }
+                }));
+            }
+            for(Thread client : clients) client.start();
+            for(Thread client : clients) client.join();
+            Assertions.assertTrue(mismatches.isEmpty(), mismatches.toString());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sends a GET request and checks its status
+     *
+     * @return the response body
+     */
+    private static String get(String url, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int status = connection.getResponseCode();
+        Assertions.assertEquals(expectedStatus, status, url);
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A batch of route queries should give the same results as asking for each route on its own,
+     * in the order asked, with errors for airports that do not exist or are not connected
+     */
+    @Test
+    public void testBatchRoutes() throws IOException {
+        File file = File.createTempFile("batch", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 300, 6, 15);
+        Backend backend = new Backend(new DijkstraGraph(new PlaceholderMap()));
+        Backend undirected = new Backend(new AStarGraph<>(new AirportCodeMap<>(), true));
+        Backend tables = new Backend(new DijkstraGraph(new PlaceholderMap()), AllPairsGraph.tableBytes(300));
+        backend.readDataFromFile(file.getPath());
+        undirected.readDataFromFile(file.getPath());
+        tables.readDataFromFile(file.getPath());
+        Assertions.assertTrue(tables.hasAllPairsTables());
+
+        String[] airports = GraphBenchmark.airportNames(300);
+        java.util.Random random = new java.util.Random(16);
+        List<String[]> pairs = new ArrayList<>();
+        for(int i=0;i<500;i++){
+            //few start airports, so that each has many destinations
+            pairs.add(new String[]{airports[random.nextInt(20)],airports[random.nextInt(airports.length)]});
+        }
+        pairs.add(new String[]{airports[1],"XYZ"});
+        pairs.add(new String[]{"XYZ",airports[1]});
+        pairs.add(new String[]{airports[2],airports[2]});
+        for(Backend batched : List.of(backend,undirected,tables)){
+            List<RouteResult> results = batched.getShortestRoutes(pairs);
+            Assertions.assertEquals(pairs.size(),results.size());
+            for(int i=0;i<pairs.size();i++){
+                RouteResult result = results.get(i);
+                Assertions.assertEquals(pairs.get(i)[0],result.getStart());
+                Assertions.assertEquals(pairs.get(i)[1],result.getDestination());
+                try {
+                    ShortestPathInterface expected = backend.getShortestRoute(pairs.get(i)[0],pairs.get(i)[1]);
+                    Assertions.assertTrue(result.hasRoute(),"no route for pair "+i+": "+result.getError());
+                    Assertions.assertEquals(expected.getTotalMiles(),result.getRoute().getTotalMiles());
+                    Assertions.assertEquals(expected.getRoute().get(0),result.getRoute().getRoute().get(0));
+                    Assertions.assertEquals(expected.getRoute().size()-1,result.getRoute().getMiles().size());
+                } catch (NoSuchElementException e) {
+                    Assertions.assertFalse(result.hasRoute());
+                    Assertions.assertEquals(e.getMessage(),result.getError());
+                }
+            }
+        }
+        Assertions.assertEquals("There is no start or end node",backend.getShortestRoutes(pairs).get(500).getError());
+        Assertions.assertTrue(backend.getShortestRoutes(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * Test that closed start and destination airports give an error for their own pairs in a
+     * batch, while the other pairs still get their routes
+     */
+    @Test
+    public void testBatchRoutesWithClosures() {
+        DijkstraGraph<String,Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        for(String airport : new String[]{"AAA","BBB","CCC","DDD"}){
+            graph.insertNode(airport);
+        }
+        graph.insertEdge("AAA","CCC",10);
+        graph.insertEdge("BBB","CCC",20);
+        graph.insertEdge("BBB","DDD",30);
+        Backend backend = new Backend(graph);
+        graph.closeNodes(List.of("AAA","DDD"));
+
+        List<RouteResult> results = backend.getShortestRoutes(List.of(new String[]{"AAA","CCC"},
+                new String[]{"BBB","CCC"},new String[]{"BBB","DDD"},new String[]{"AAA","BBB"}));
+        Assertions.assertEquals(4,results.size());
+        Assertions.assertFalse(results.get(0).hasRoute());
+        Assertions.assertEquals("No path from start to end node",results.get(0).getError());
+        Assertions.assertTrue(results.get(1).hasRoute());
+        Assertions.assertEquals(20,results.get(1).getRoute().getTotalMiles());
+        Assertions.assertFalse(results.get(2).hasRoute());
+        Assertions.assertEquals("No path from start to end node",results.get(2).getError());
+        Assertions.assertFalse(results.get(3).hasRoute());
+    }
+
+    /**
+     * A backend with a route cache should give the same routes as one without, count its hits
+     * and misses, drop its routes when the graph changes, and stay within its bounds
+     */
+    @Test
+    public void testRouteCache() throws IOException {
+        File file = File.createTempFile("cache", ".dot");
+        file.deleteOnExit();
+        GraphBenchmark.writeDotFile(file.getPath(), 300, 6, 19);
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        RouteCache cache = new RouteCache(50, 1 << 20);
+        Backend cached = new Backend(graph, cache);
+        Backend uncached = new Backend(new DijkstraGraph(new PlaceholderMap()));
+        cached.readDataFromFile(file.getPath());
+        uncached.readDataFromFile(file.getPath());
+        Assertions.assertSame(cache, cached.getRouteCache());
+
+        String[] airports = GraphBenchmark.airportNames(300);
+        ShortestPathInterface first = cached.getShortestRoute(airports[0],airports[200]);
+        Assertions.assertSame(first, cached.getShortestRoute(airports[0],airports[200]));
+        Assertions.assertEquals(uncached.getShortestRoute(airports[0],airports[200]).getRoute(),first.getRoute());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(0.5, cache.getHitRate());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.getRoute().clear());
+        //failed searches are not cached
+        Assertions.assertThrows(NoSuchElementException.class, () -> cached.getShortestRoute(airports[0],"XYZ"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> cached.getShortestRoute(airports[0],"XYZ"));
+        Assertions.assertEquals(1, cache.getSize());
+
+        //a shortcut straight to the destination replaces the cached route
+        graph.insertEdge(airports[0],airports[200],1);
+        ShortestPathInterface shortcut = cached.getShortestRoute(airports[0],airports[200]);
+        Assertions.assertEquals(1, shortcut.getTotalMiles());
+        Assertions.assertEquals(1, cache.getInvalidationCount());
+        graph.removeEdge(airports[0],airports[200]);
+        Assertions.assertEquals(first.getTotalMiles(), cached.getShortestRoute(airports[0],airports[200]).getTotalMiles());
+
+        //the least recently used routes are evicted to stay within both bounds
+        for(int i=1;i<100;i++){
+            ShortestPathInterface route = cached.getShortestRoute(airports[i],airports[299-i]);
+            Assertions.assertEquals(uncached.getShortestRoute(airports[i],airports[299-i]).getTotalMiles(),
+                    route.getTotalMiles());
+        }
+        Assertions.assertEquals(50, cache.getSize());
+        Assertions.assertTrue(cache.getEvictionCount() >= 50);
+        long hits = cache.getHitCount();
+        cached.getShortestRoute(airports[99],airports[200]);
+        cached.getShortestRoute(airports[0],airports[200]);
+        Assertions.assertEquals(hits+1, cache.getHitCount());
+        RouteCache small = new RouteCache(1000, 2000);
+        for(int i=0;i<100;i++){
+            small.get(airports[i],airports[299-i],0,() -> uncached.getShortestRoute(airports[0],airports[299]));
+        }
+        Assertions.assertTrue(small.getBytes() <= 2000);
+        Assertions.assertTrue(small.getSize() > 0 && small.getSize() < 100);
+    }
+
+    /**
+     * Threads that miss on the same route at once should share one search
+     */
+    @Test
+    public void testRouteCacheCoalescesMisses() throws InterruptedException {
+        RouteCache cache = new RouteCache(10, 1 << 20);
+        java.util.concurrent.atomic.AtomicInteger searches = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.CountDownLatch waiting = new java.util.concurrent.CountDownLatch(1);
+        ShortestPath route = new ShortestPath(List.of("A","B"),List.of(7),7);
+        List<Thread> threads = new ArrayList<>();
+        List<ShortestPath> results = new ArrayList<>();
+        for(int t=0;t<8;t++){
+            threads.add(new Thread(() -> {
+                ShortestPath result = cache.get("A","B",1,() -> {
+                    searches.incrementAndGet();
+                    try {
+                        //holds the search open until every thread has looked the route up
+                        waiting.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return route;
+                });
+                synchronized (results){ results.add(result); }
+            }));
+        }
+        for(Thread thread : threads) thread.start();
+        while(cache.getMissCount()+cache.getCoalescedCount() < 8){
+            Thread.sleep(1);
+        }
+        waiting.countDown();
+        for(Thread thread : threads) thread.join();
+        Assertions.assertEquals(1, searches.get());
+        Assertions.assertEquals(7, cache.getCoalescedCount());
+        Assertions.assertEquals(8, results.size());
+        for(ShortestPath result : results){
+            Assertions.assertSame(results.get(0), result);
+        }
+
+        //waiting threads get the exception of a failed search too
+        java.util.concurrent.CountDownLatch failing = new java.util.concurrent.CountDownLatch(1);
+        List<Throwable> errors = new ArrayList<>();
+        threads.clear();
+        for(int t=0;t<4;t++){
+            threads.add(new Thread(() -> {
+                try {
+                    cache.get("A","C",1,() -> {
+                        try {
+                            failing.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        throw new NoSuchElementException("No path from start to end node");
+                    });
+                } catch (NoSuchElementException e) {
+                    synchronized (errors){ errors.add(e); }
+                }
+            }));
+        }
+        for(Thread thread : threads) thread.start();
+        while(cache.getMissCount()+cache.getCoalescedCount() < 12){
+            Thread.sleep(1);
+        }
+        failing.countDown();
+        for(Thread thread : threads) thread.join();
+        Assertions.assertEquals(4, errors.size());
+        Assertions.assertEquals(1, cache.getSize());
+    }
 }
@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.List;
 
@@ -31,6 +32,26 @@ public interface BackendInterface {
      */
     ShortestPathInterface getShortestRoute(String start, String destination) throws NoSuchElementException;
 
+    /**
+     * Calculates the shortest routes for a batch of (start, destination) pairs. Instead of
+     * throwing, a pair without a route gets a result holding the error.
+     * This default implementation answers the pairs one at a time with getShortestRoute.
+     *
+     * @param pairs The start and destination airport of each query, as two-element arrays.
+     * @return The result of each query, in the order of pairs.
+     */
+    default List<RouteResult> getShortestRoutes(List<String[]> pairs) {
+        List<RouteResult> results = new ArrayList<>(pairs.size());
+        for (String[] pair : pairs) {
+            try {
+                results.add(new RouteResult(pair[0], pair[1], getShortestRoute(pair[0], pair[1])));
+            } catch (NoSuchElementException e) {
+                results.add(new RouteResult(pair[0], pair[1], e.getMessage()));
+            }
+        }
+        return results;
+    }
+
     /**
      * Get statistics for the dataset, including the number of airports, the number of flights, and the total number of miles for all flights.
      * 
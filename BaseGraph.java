@@ -1,32 +1,62 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * This BaseGraph class contains stores a set of nodes, along with a set of
  * directed and weighted edges connecting those nodes.
+ *
+ * An undirected BaseGraph instead stores each edge once, as a route that can
+ * be followed both ways. That edge is in the edgesLeaving list of both of its
+ * nodes, and edgesEntering lists are not used.
+ *
+ * Nodes and edges can be closed in batches, such as airports closed by a
+ * storm. Closed nodes and edges are only marked, so that searches skip them,
+ * and stay in the graph until compact() removes them all in one pass.
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
-    // Each node contains unique data along with two lists of directed edges
+    // Each node contains unique data along with two lists of directed edges,
+    // and a small int id that searches use to index into arrays
     protected class Node {
         public NodeType data;
-        public List<Edge> edgesLeaving = new LinkedList<>();
-        public List<Edge> edgesEntering = new LinkedList<>();
+        public int id;
+        public List<Edge> edgesLeaving = new ArrayList<>();
+        public List<Edge> edgesEntering = new ArrayList<>();
+        // The leaving edges in an open-addressing table keyed by the id of the
+        // node at their other end, or null while there are few enough of them
+        // to scan; kept up to date by every change to edgesLeaving, so that
+        // findEdge() never writes to it
+        public Edge[] successorIndex = null;
+        // Whether the node is closed, so that searches do not pass through it
+        public boolean closed = false;
 
         public Node(NodeType data) {
             this.data = data;
+            this.id = nextNodeId++;
         }
     }
 
+    // The id given to the next node inserted; ids of removed nodes are not reused
+    protected int nextNodeId = 0;
+    // Nodes with more leaving edges than this find them through a successor
+    // index instead of scanning their list
+    protected static final int SUCCESSOR_INDEX_THRESHOLD = 8;
+
     // Nodes can be retrieved from this map by their unique data
     protected MapADT<NodeType, Node> nodes = null;
+    // The same nodes in insertion order, so the whole graph can be walked
+    protected Set<Node> nodeSet = new LinkedHashSet<>();
 
     // Each edge contains data/weight, and two nodes that it connects
     protected class Edge {
         public EdgeType data; // the weight or cost of this edge
         public Node predecessor;
         public Node successor;
+        public boolean closed = false; // closed edges are skipped by searches
 
         public Edge(EdgeType data, Node pred, Node succ) {
             this.data = data;
@@ -35,9 +65,20 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         }
     }
 
+    // The number of directed edges, counting both directions of each edge of
+    // an undirected graph
     protected int edgeCount = 0;
     // Edges can be retrieved through the edge lists in either connected node
 
+    // Whether each edge can be followed both ways
+    protected final boolean undirected;
+    // The number of nodes and edges closed and not yet reopened or compacted
+    protected int closedNodeCount = 0;
+    protected int closedEdgeCount = 0;
+    // Counts the changes made to the graph, so that results derived from an
+    // earlier version of it can be recognized as stale; see getVersion()
+    protected long version = 0;
+
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
      * 
@@ -45,7 +86,54 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *        it is stored in
      */
     public BaseGraph(MapADT<NodeType, Node> map) {
+        this(map, false);
+    }
+
+    /**
+     * Constructor for BaseGraph that provides the map the graph uses, and
+     * whether its edges are undirected.
+     * 
+     * @param map the map the graph uses to map a data object to the node object
+     *        it is stored in
+     * @param undirected true to store each edge once and follow it both ways,
+     *        so that inserting, updating or removing the edge from pred to
+     *        succ does the same to the edge from succ to pred
+     */
+    public BaseGraph(MapADT<NodeType, Node> map, boolean undirected) {
         this.nodes = map;
+        this.undirected = undirected;
+    }
+
+    /**
+     * @return true if each edge of this graph can be followed both ways
+     */
+    public boolean isUndirected() {
+        return undirected;
+    }
+
+    /**
+     * Returns a counter that grows whenever the graph changes: when a node or
+     * edge is inserted or removed, an edge's weight is updated, or nodes and
+     * edges are closed, reopened or compacted away. Results computed while
+     * the version stays the same, such as cached routes, are still valid.
+     * 
+     * @return the number of changes made to the graph so far
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the node at the other end of an edge from one of its nodes.
+     * Edges are followed from their predecessor to their successor, except
+     * that an undirected graph follows them from either node.
+     * 
+     * @param edge an edge
+     * @param node one of the nodes of that edge
+     * @return the edge's other node, or node itself if the edge is a loop
+     */
+    protected Node otherEnd(Edge edge, Node node) {
+        return edge.predecessor == node ? edge.successor : edge.predecessor;
     }
 
     /**
@@ -59,7 +147,10 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        Node newNode = new Node(data);
+        nodes.put(data, newNode);
+        nodeSet.add(newNode);
+        version++;
         return true;
     }
 
@@ -77,12 +168,32 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         if (!nodes.containsKey(data))
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
+        nodeSet.remove(oldNode);
+        version++;
+        if (oldNode.closed)
+            closedNodeCount--;
+        if (undirected) {
+            // remove each edge from the list of the node at its other end
+            for (Edge edge : oldNode.edgesLeaving) {
+                if (edge.closed)
+                    closedEdgeCount--;
+                if (otherEnd(edge, oldNode) != oldNode)
+                    removeLeaving(otherEnd(edge, oldNode), edge);
+            }
+            return true;
+        }
         // remove all edges entering neighboring nodes from this one
-        for (Edge edge : oldNode.edgesLeaving)
+        for (Edge edge : oldNode.edgesLeaving) {
+            if (edge.closed)
+                closedEdgeCount--;
             edge.successor.edgesEntering.remove(edge);
+        }
         // remove all edges leaving neighboring nodes toward this one
-        for (Edge edge : oldNode.edgesEntering)
-            edge.predecessor.edgesLeaving.remove(edge);
+        for (Edge edge : oldNode.edgesEntering) {
+            if (edge.closed && edge.predecessor != oldNode)
+                closedEdgeCount--;
+            removeLeaving(edge.predecessor, edge);
+        }
         return true;
     }
 
@@ -123,19 +234,131 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         Node succNode = nodes.get(succ);
         if (predNode == null || succNode == null)
             return false;
-        try {
+        Edge existingEdge = findEdge(predNode, succNode);
+        if (existingEdge != null) {
             // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
             existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
+            version++;
+            edgeWeightSet(existingEdge);
+        } else
             // otherwise create a new edges
-            Edge newEdge = new Edge(weight, predNode, succNode);
-            this.edgeCount++;
-            // and insert it into each of its adjacent nodes' respective lists
-            predNode.edgesLeaving.add(newEdge);
+            appendEdge(predNode, succNode, weight);
+        return true;
+    }
+
+    /**
+     * Adds an edge that is known not to be in the graph yet, without looking
+     * for an existing one. Meant for loading graphs whose edges are known to
+     * be unique, such as snapshots of another graph.
+     * 
+     * @param predNode the source node for the edge
+     * @param succNode the target node for the edge
+     * @param weight the weight for the edge
+     */
+    protected void appendEdge(Node predNode, Node succNode, EdgeType weight) {
+        Edge newEdge = new Edge(weight, predNode, succNode);
+        this.edgeCount++;
+        version++;
+        // insert it into each of its adjacent nodes' respective lists
+        addLeaving(predNode, newEdge);
+        if (!undirected)
             succNode.edgesEntering.add(newEdge);
+        else if (succNode != predNode) {
+            // the same edge also leaves the successor
+            addLeaving(succNode, newEdge);
+            this.edgeCount++;
         }
-        return true;
+        edgeWeightSet(newEdge);
+    }
+
+    // adds an edge to a node's leaving edges, and to its successor index,
+    // which is built once the node has more than SUCCESSOR_INDEX_THRESHOLD
+    private void addLeaving(Node node, Edge edge) {
+        node.edgesLeaving.add(edge);
+        if (node.successorIndex == null) {
+            if (node.edgesLeaving.size() > SUCCESSOR_INDEX_THRESHOLD)
+                buildSuccessorIndex(node);
+        } else if (node.edgesLeaving.size() * 2 > node.successorIndex.length)
+            buildSuccessorIndex(node);
+        else
+            indexEdge(node.successorIndex, node, edge);
+    }
+
+    // removes an edge from a node's leaving edges, and from its successor
+    // index, which is dropped once the node has few enough edges to scan
+    private void removeLeaving(Node node, Edge edge) {
+        node.edgesLeaving.remove(edge);
+        if (node.edgesLeaving.size() <= SUCCESSOR_INDEX_THRESHOLD)
+            node.successorIndex = null;
+        else
+            unindexEdge(node.successorIndex, node, edge);
+    }
+
+    /**
+     * Finds the edge between two nodes without throwing when there is none.
+     * Nodes with up to SUCCESSOR_INDEX_THRESHOLD leaving edges scan them;
+     * nodes with more look the successor up in their successor index. Since
+     * the index is kept up to date whenever edges are added or removed, this
+     * only reads the graph, and can run on many threads at once.
+     * 
+     * @param predNode the source node for the edge
+     * @param succNode the target node for the edge
+     * @return the edge from predNode to succNode, or null if there is none
+     */
+    protected Edge findEdge(Node predNode, Node succNode) {
+        if (predNode.edgesLeaving.size() <= SUCCESSOR_INDEX_THRESHOLD) {
+            for (Edge edge : predNode.edgesLeaving)
+                if (otherEnd(edge, predNode) == succNode)
+                    return edge;
+            return null;
+        }
+        Edge[] index = predNode.successorIndex;
+        int mask = index.length - 1;
+        for (int slot = indexSlot(succNode.id, mask); index[slot] != null; slot = (slot + 1) & mask)
+            if (otherEnd(index[slot], predNode) == succNode)
+                return index[slot];
+        return null;
+    }
+
+    // fills a new successor index for a node, at most half full
+    private void buildSuccessorIndex(Node node) {
+        int length = Integer.highestOneBit(node.edgesLeaving.size()) * 4;
+        Edge[] index = newEdgeArray(length);
+        for (Edge edge : node.edgesLeaving)
+            indexEdge(index, node, edge);
+        node.successorIndex = index;
+    }
+
+    private void indexEdge(Edge[] index, Node node, Edge edge) {
+        int mask = index.length - 1;
+        int slot = indexSlot(otherEnd(edge, node).id, mask);
+        while (index[slot] != null)
+            slot = (slot + 1) & mask;
+        index[slot] = edge;
+    }
+
+    // removes an edge from a successor index, moving the edges after it in
+    // the same run of full slots back, so that lookups still reach them
+    private void unindexEdge(Edge[] index, Node node, Edge edge) {
+        int mask = index.length - 1;
+        int hole = indexSlot(otherEnd(edge, node).id, mask);
+        while (index[hole] != edge)
+            hole = (hole + 1) & mask;
+        for (int slot = (hole + 1) & mask; index[slot] != null; slot = (slot + 1) & mask) {
+            int home = indexSlot(otherEnd(index[slot], node).id, mask);
+            // an edge can fill the hole when the hole lies between its home
+            // slot and the slot it is in
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                index[hole] = index[slot];
+                hole = slot;
+            }
+        }
+        index[hole] = null;
+    }
+
+    private static int indexSlot(int id, int mask) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
     }
 
     /**
@@ -147,19 +370,24 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
-        try {
-            // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
+        Edge oldEdge = findEdge(pred, succ);
+        // when no such edge exists, return false instead
+        if (oldEdge == null)
+            return false;
+        if (oldEdge.closed)
+            closedEdgeCount--;
+        version++;
+        // remove it from the edge lists of each adjacent node
+        removeLeaving(oldEdge.predecessor, oldEdge);
+        if (!undirected) {
             oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
+        } else if (oldEdge.successor != oldEdge.predecessor) {
+            removeLeaving(oldEdge.successor, oldEdge);
             this.edgeCount--;
-            return true;
-        } catch (NoSuchElementException e) {
-            // when no such edge exists, return false instead
-            return false;
         }
+        // and decrement the edge count before removing
+        this.edgeCount--;
+        return true;
     }
 
     /**
@@ -170,12 +398,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return true if the edge is found in the graph, or false other
      */
     public boolean containsEdge(NodeType pred, NodeType succ) {
-        try {
-            getEdgeHelper(pred, succ);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        return findEdge(pred, succ) != null;
     }
 
     /**
@@ -192,15 +415,45 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-        Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
-        for (Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
-                return edge;
+        Edge edge = findEdge(nodes.get(pred), nodes.get(succ));
         // when no such edge can be found, throw NSE
-        throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-                succ.toString());
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                    succ.toString());
+        return edge;
+    }
+
+    /**
+     * Creates an array of edges, which cannot be done directly since Edge is
+     * an inner class of a generic class.
+     * 
+     * @param length the length of the array
+     * @return a new array of null edges
+     */
+    @SuppressWarnings("unchecked")
+    protected Edge[] newEdgeArray(int length) {
+        return (Edge[]) new BaseGraph.Edge[length];
+    }
+
+    /**
+     * Finds the edge between the nodes holding two data items.
+     * 
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the edge between those nodes, or null if either node or the
+     *         edge between them is not found within this graph
+     * @throws NullPointerException if pred or succ is null
+     */
+    protected Edge findEdge(NodeType pred, NodeType succ) {
+        Node predNode;
+        Node succNode;
+        try {
+            predNode = nodes.get(pred);
+            succNode = nodes.get(succ);
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+        return findEdge(predNode, succNode);
     }
 
     /**
@@ -212,4 +465,181 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return this.edgeCount;
     }
 
+    /**
+     * Closes a batch of nodes, such as airports closed by weather. Searches
+     * skip closed nodes straight away, but they stay in the graph, with all
+     * of their edges, until compact() removes them, so reopening them before
+     * then only clears a flag.
+     * 
+     * @param data the data items of the nodes to close
+     * @return the number of nodes closed, not counting data that is not in
+     *         the graph or whose node is already closed
+     */
+    public int closeNodes(Iterable<NodeType> data) {
+        return setNodesClosed(data, true);
+    }
+
+    /**
+     * Reopens a batch of closed nodes that have not been compacted away.
+     * 
+     * @param data the data items of the nodes to reopen
+     * @return the number of nodes reopened
+     */
+    public int reopenNodes(Iterable<NodeType> data) {
+        return setNodesClosed(data, false);
+    }
+
+    private int setNodesClosed(Iterable<NodeType> data, boolean closed) {
+        int changed = 0;
+        for (NodeType item : data) {
+            if (!nodes.containsKey(item))
+                continue;
+            Node node = nodes.get(item);
+            if (node.closed != closed) {
+                node.closed = closed;
+                changed++;
+            }
+        }
+        closedNodeCount += closed ? changed : -changed;
+        if (changed > 0) {
+            version++;
+            closuresChanged();
+        }
+        return changed;
+    }
+
+    /**
+     * Closes a batch of edges. Searches skip closed edges straight away, but
+     * they stay in the graph until compact() removes them. Closing an edge of
+     * an undirected graph closes it both ways.
+     * 
+     * @param preds the data item contained in the source node of each edge
+     * @param succs the data item contained in the target node of each edge
+     * @return the number of edges closed, not counting edges that are not in
+     *         the graph or are already closed
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public int closeEdges(NodeType[] preds, NodeType[] succs) {
+        return setEdgesClosed(preds, succs, true);
+    }
+
+    /**
+     * Reopens a batch of closed edges that have not been compacted away.
+     * 
+     * @param preds the data item contained in the source node of each edge
+     * @param succs the data item contained in the target node of each edge
+     * @return the number of edges reopened
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public int reopenEdges(NodeType[] preds, NodeType[] succs) {
+        return setEdgesClosed(preds, succs, false);
+    }
+
+    private int setEdgesClosed(NodeType[] preds, NodeType[] succs, boolean closed) {
+        if (preds.length != succs.length)
+            throw new IllegalArgumentException("edge arrays have different lengths");
+        int changed = 0;
+        for (int i = 0; i < preds.length; i++) {
+            Edge edge = findEdge(preds[i], succs[i]);
+            if (edge != null && edge.closed != closed) {
+                edge.closed = closed;
+                changed++;
+            }
+        }
+        closedEdgeCount += closed ? changed : -changed;
+        if (changed > 0) {
+            version++;
+            closuresChanged();
+        }
+        return changed;
+    }
+
+    /**
+     * Called whenever nodes or edges are closed, reopened or compacted, for
+     * subclasses that keep data derived from which parts of the graph are
+     * open. This implementation does nothing.
+     */
+    protected void closuresChanged() {
+    }
+
+    /**
+     * Called whenever an edge is added or its weight is updated, for
+     * subclasses that keep data derived from edge weights. This
+     * implementation does nothing.
+     * 
+     * @param edge the edge added or updated
+     */
+    protected void edgeWeightSet(Edge edge) {
+    }
+
+    /**
+     * Called by compact() for each closed node it removes, which does not go
+     * through removeNode(), for subclasses that keep data about each node.
+     * This implementation does nothing.
+     * 
+     * @param node the node removed
+     */
+    protected void nodeCompacted(Node node) {
+    }
+
+    /**
+     * @return the number of closed nodes that compact() would remove
+     */
+    public int getClosedNodeCount() {
+        return closedNodeCount;
+    }
+
+    /**
+     * @return the number of closed edges that compact() would remove, not
+     *         counting the edges of closed nodes
+     */
+    public int getClosedEdgeCount() {
+        return closedEdgeCount;
+    }
+
+    /**
+     * Removes every closed node, with its edges, and every closed edge from
+     * the graph, after which they can no longer be reopened. Instead of
+     * removing each edge from its neighbors' lists one at a time, as
+     * removeNode() and removeEdge() do, every edge list is filtered once, so
+     * compacting takes O(V+E) time however many nodes were closed. The graph
+     * must not be searched or changed by other threads while it compacts.
+     * 
+     * @return the number of nodes removed
+     */
+    public int compact() {
+        if (closedNodeCount == 0 && closedEdgeCount == 0)
+            return 0;
+        int removedNodes = 0;
+        int removedEdges = 0;
+        for (Iterator<Node> iterator = nodeSet.iterator(); iterator.hasNext();) {
+            Node node = iterator.next();
+            if (node.closed) {
+                // the edges of undirected graphs are counted in the lists of
+                // both of their nodes, and those of directed graphs only in
+                // their predecessor's
+                removedEdges += node.edgesLeaving.size();
+                nodes.remove(node.data);
+                iterator.remove();
+                nodeCompacted(node);
+                removedNodes++;
+                continue;
+            }
+            int leaving = node.edgesLeaving.size();
+            if (node.edgesLeaving.removeIf(edge -> edge.closed || otherEnd(edge, node).closed)) {
+                node.successorIndex = null;
+                if (node.edgesLeaving.size() > SUCCESSOR_INDEX_THRESHOLD)
+                    buildSuccessorIndex(node);
+                removedEdges += leaving - node.edgesLeaving.size();
+            }
+            node.edgesEntering.removeIf(edge -> edge.closed || edge.predecessor.closed);
+        }
+        edgeCount -= removedEdges;
+        closedNodeCount = 0;
+        closedEdgeCount = 0;
+        version++;
+        closuresChanged();
+        return removedNodes;
+    }
+
 }
@@ -0,0 +1,152 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * This class extends DijkstraGraph with a bidirectional search: one Dijkstra
+ * search grows forward from the start node over edgesLeaving, while another
+ * grows backward from the end node over edgesEntering. Every time an edge
+ * connects a node reached by one search to a node reached by the other, the
+ * cost of the path through that edge is compared with the best one found so
+ * far. Searching stops once the closest unsettled nodes of the two searches
+ * are together no closer than that best path, which usually happens after
+ * settling far fewer nodes than a forward search needs on long paths.
+ */
+public class BidirectionalDijkstraGraph<NodeType, EdgeType extends Number>
+        extends DijkstraGraph<NodeType, EdgeType> {
+
+    // The workspace of the backward search for each thread. Its predEdge
+    // entries hold the edge that leaves each node towards the end node.
+    protected ThreadLocal<SearchWorkspace> backwardWorkspaces =
+            ThreadLocal.withInitial(() -> new SearchWorkspace());
+
+    /**
+     * Constructor that sets the map that the graph uses.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     */
+    public BidirectionalDijkstraGraph(MapADT<NodeType, Node> map) {
+        super(map);
+    }
+
+    /**
+     * Constructor that sets the map that the graph uses, and the kind of
+     * priority queue that searches use.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     * @param queueFactory creates the priority queue used by each search
+     */
+    public BidirectionalDijkstraGraph(MapADT<NodeType, Node> map,
+            Supplier<IndexedPriorityQueue> queueFactory) {
+        super(map, queueFactory);
+    }
+
+    /**
+     * Runs the forward and backward searches until the shortest path is known.
+     * The path is then copied into the forward workspace, so that following
+     * workspace.predEdge back from the end node leads to the start node, just
+     * like after a forward search.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param workspace the calling thread's forward workspace
+     * @return the end node
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    @Override
+    protected Node search(NodeType start, NodeType end, SearchWorkspace workspace) {
+        if (!containsNode(start) || !containsNode(end))
+            throw new NoSuchElementException("There is no start or end node");
+        Node startNode = nodes.get(start);
+        Node endNode = nodes.get(end);
+        if (startNode.closed || endNode.closed)
+            throw new NoSuchElementException("No path from start to end node");
+        SearchWorkspace forward = workspace;
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.prepare(nextNodeId);
+        backward.prepare(nextNodeId);
+        forward.reach(startNode, 0, null);
+        backward.reach(endNode, 0, null);
+        if (startNode == endNode)
+            return endNode;
+
+        // the cheapest path found so far goes through this node
+        double best = Double.POSITIVE_INFINITY;
+        Node meetingNode = null;
+        while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+            double forwardMin = forward.queue.minPriority();
+            double backwardMin = backward.queue.minPriority();
+            // no path through an unsettled node can beat the best one anymore
+            if (forwardMin + backwardMin >= best)
+                break;
+            if (forwardMin <= backwardMin) {
+                // settle the closest node to the start, and relax its leaving edges
+                int currentId = forward.queue.pollMin();
+                Node currentNode = currentId == startNode.id ? startNode
+                        : forward.predEdge[currentId].successor;
+                forward.settle(currentId);
+                List<Edge> edges = currentNode.edgesLeaving;
+                for (int i = 0; i < edges.size(); i++) {
+                    Edge edge = edges.get(i);
+                    Node neighbor = edge.successor;
+                    if (edge.closed || neighbor.closed)
+                        continue;
+                    double cost = forwardMin + edge.data.doubleValue();
+                    if (!forward.isSettled(neighbor.id) && cost < forward.distance(neighbor.id))
+                        forward.reach(neighbor, cost, edge);
+                    if (cost + backward.distance(neighbor.id) < best) {
+                        best = cost + backward.distance(neighbor.id);
+                        meetingNode = neighbor;
+                    }
+                }
+            } else {
+                // settle the closest node to the end, and relax its entering edges
+                int currentId = backward.queue.pollMin();
+                Node currentNode = currentId == endNode.id ? endNode
+                        : backward.predEdge[currentId].predecessor;
+                backward.settle(currentId);
+                List<Edge> edges = currentNode.edgesEntering;
+                for (int i = 0; i < edges.size(); i++) {
+                    Edge edge = edges.get(i);
+                    Node neighbor = edge.predecessor;
+                    if (edge.closed || neighbor.closed)
+                        continue;
+                    double cost = backwardMin + edge.data.doubleValue();
+                    if (!backward.isSettled(neighbor.id) && cost < backward.distance(neighbor.id))
+                        backward.reach(neighbor, cost, edge);
+                    if (cost + forward.distance(neighbor.id) < best) {
+                        best = cost + forward.distance(neighbor.id);
+                        meetingNode = neighbor;
+                    }
+                }
+            }
+        }
+        if (meetingNode == null)
+            throw new NoSuchElementException("No path from start to end node");
+
+        // append the backward search's path from the meeting node to the end
+        // node onto the forward search's path
+        for (Node node = meetingNode; node != endNode; ) {
+            Edge edge = backward.predEdge[node.id];
+            Node next = edge.successor;
+            forward.dist[next.id] = forward.dist[node.id] + edge.data.doubleValue();
+            forward.predEdge[next.id] = edge;
+            forward.reached[next.id] = forward.epoch;
+            node = next;
+        }
+        return endNode;
+    }
+
+    /**
+     * Returns the number of nodes that the calling thread's last search
+     * settled, counting both the forward and the backward search.
+     *
+     * @return the number of nodes settled by the last search on this thread
+     */
+    @Override
+    public int getLastSettledCount() {
+        return workspaces.get().settledCount + backwardWorkspaces.get().settledCount;
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * This class is a read-optimized, immutable implementation of GraphADT. Nodes
+ * are numbered with dense int ids, and the edges leaving each node are stored
+ * in compressed sparse row (CSR) form: the edges leaving node i are at indexes
+ * offsets[i] through offsets[i+1]-1 of the targets and weights arrays.
+ * Shortest paths are computed with Dijkstra's algorithm directly over those
+ * primitive arrays, so no per-edge objects are visited or unboxed while
+ * searching.
+ */
+public class CSRGraph<NodeType, EdgeType extends Number>
+        implements GraphADT<NodeType, EdgeType> {
+
+    // Node ids can be retrieved from this map by their unique data
+    protected MapADT<NodeType, Integer> ids;
+    // The data stored in each node, indexed by node id
+    protected NodeType[] nodeData;
+    // The edges leaving node i are at offsets[i] until offsets[i+1]
+    protected int[] offsets;
+    // The id of the successor node of each edge
+    protected int[] targets;
+    // The weight of each edge as a primitive double
+    protected double[] weights;
+    // The original weight of each edge, as returned by getEdge()
+    protected EdgeType[] edgeData;
+    // Creates the priority queue that each search keeps its frontier in
+    protected Supplier<IndexedPriorityQueue> queueFactory = DaryHeap::new;
+
+    /**
+     * Constructor that copies the nodes and edges of an existing graph into
+     * this compact representation. Closed nodes and edges are left out, and
+     * later changes to that graph are not reflected in this one.
+     *
+     * @param graph the graph to copy
+     */
+    public CSRGraph(BaseGraph<NodeType, EdgeType> graph) {
+        this(graph, DaryHeap::new);
+    }
+
+    /**
+     * Constructor that copies the nodes and edges of an existing graph into
+     * this compact representation, and sets the kind of priority queue that
+     * searches use.
+     *
+     * @param graph        the graph to copy
+     * @param queueFactory creates the priority queue used by each search
+     */
+    @SuppressWarnings("unchecked")
+    public CSRGraph(BaseGraph<NodeType, EdgeType> graph, Supplier<IndexedPriorityQueue> queueFactory) {
+        this.queueFactory = queueFactory;
+        // closed nodes and edges are left out of the copy
+        int nodeCount = graph.nodeSet.size() - graph.closedNodeCount;
+        nodeData = (NodeType[]) new Object[nodeCount];
+        offsets = new int[nodeCount + 1];
+        ids = new OpenAddressingMap<>(nodeCount);
+        // number the nodes and count the edges leaving each of them
+        int id = 0;
+        for (BaseGraph<NodeType, EdgeType>.Node node : graph.nodeSet) {
+            if (node.closed)
+                continue;
+            nodeData[id] = node.data;
+            ids.put(node.data, id);
+            int degree = 0;
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : node.edgesLeaving)
+                if (!edge.closed && !graph.otherEnd(edge, node).closed)
+                    degree++;
+            offsets[id + 1] = offsets[id] + degree;
+            id++;
+        }
+        targets = new int[offsets[nodeCount]];
+        weights = new double[offsets[nodeCount]];
+        edgeData = (EdgeType[]) new Number[offsets[nodeCount]];
+        // then copy every edge into its node's row
+        id = 0;
+        for (BaseGraph<NodeType, EdgeType>.Node node : graph.nodeSet) {
+            if (node.closed)
+                continue;
+            int index = offsets[id];
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : node.edgesLeaving) {
+                if (edge.closed || graph.otherEnd(edge, node).closed)
+                    continue;
+                targets[index] = ids.get(graph.otherEnd(edge, node).data);
+                weights[index] = edge.data.doubleValue();
+                edgeData[index] = edge.data;
+                index++;
+            }
+            id++;
+        }
+    }
+
+    /**
+     * Constructor that takes the CSR arrays directly. The arrays are used as
+     * they are and must not be changed afterwards.
+     *
+     * @param nodeData the data stored in each node, indexed by node id
+     * @param offsets  the start of each node's row of edges, with one extra
+     *                 entry holding the total number of edges
+     * @param targets  the id of the successor node of each edge
+     * @param edgeData the weight of each edge
+     * @throws IllegalArgumentException if the array lengths do not match or
+     *                                  the node data contains duplicates
+     */
+    protected CSRGraph(NodeType[] nodeData, int[] offsets, int[] targets, EdgeType[] edgeData) {
+        if (offsets.length != nodeData.length + 1 || targets.length != edgeData.length
+                || offsets[nodeData.length] != targets.length)
+            throw new IllegalArgumentException("CSR arrays have inconsistent lengths");
+        this.nodeData = nodeData;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.edgeData = edgeData;
+        this.weights = new double[edgeData.length];
+        for (int i = 0; i < edgeData.length; i++)
+            weights[i] = edgeData[i].doubleValue();
+        ids = new OpenAddressingMap<>(nodeData.length);
+        for (int i = 0; i < nodeData.length; i++)
+            ids.put(nodeData[i], i); // throws IAE on duplicate node data
+    }
+
+    /**
+     * This graph cannot be modified.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean insertNode(NodeType data) {
+        throw new UnsupportedOperationException("CSRGraph is immutable");
+    }
+
+    /**
+     * This graph cannot be modified.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeNode(NodeType data) {
+        throw new UnsupportedOperationException("CSRGraph is immutable");
+    }
+
+    @Override
+    public boolean containsNode(NodeType data) {
+        return ids.containsKey(data);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeData.length;
+    }
+
+    /**
+     * This graph cannot be modified.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        throw new UnsupportedOperationException("CSRGraph is immutable");
+    }
+
+    /**
+     * This graph cannot be modified.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        throw new UnsupportedOperationException("CSRGraph is immutable");
+    }
+
+    @Override
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        return findEdge(pred, succ) >= 0;
+    }
+
+    @Override
+    public EdgeType getEdge(NodeType pred, NodeType succ) {
+        int index = findEdge(pred, succ);
+        if (index < 0)
+            throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                    succ.toString());
+        return edgeData[index];
+    }
+
+    /**
+     * Finds the index of the edge between two nodes in the targets array.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the index of that edge, or -1 if either node or the edge is
+     *         not in this graph
+     */
+    protected int findEdge(NodeType pred, NodeType succ) {
+        if (!ids.containsKey(pred) || !ids.containsKey(succ))
+            return -1;
+        int from = ids.get(pred);
+        int to = ids.get(succ);
+        for (int i = offsets[from]; i < offsets[from + 1]; i++)
+            if (targets[i] == to)
+                return i;
+        return -1;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from start until end is settled. The result
+     * is left in the provided arrays: dist[end] is the cost of the shortest
+     * path, and following pred[] back from end reaches start.
+     *
+     * @param start the id of the starting node
+     * @param end   the id of the destination node
+     * @param dist  array that receives the distance to each settled node
+     * @param pred  array that receives the predecessor id of each node
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    protected void computeShortestPath(int start, int end, double[] dist, int[] pred) {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[nodeData.length];
+        IndexedPriorityQueue queue = queueFactory.get();
+        queue.reset(nodeData.length);
+
+        dist[start] = 0;
+        pred[start] = -1;
+        queue.insertOrDecrease(start, 0);
+        while (!queue.isEmpty()) {
+            // remove the closest node, which is now settled
+            int current = queue.pollMin();
+            settled[current] = true;
+            if (current == end)
+                return;
+            // relax every edge leaving it
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int neighbor = targets[i];
+                double cost = dist[current] + weights[i];
+                if (!settled[neighbor] && cost < dist[neighbor]) {
+                    dist[neighbor] = cost;
+                    pred[neighbor] = current;
+                    queue.insertOrDecrease(neighbor, cost);
+                }
+            }
+        }
+        throw new NoSuchElementException("No path from start to end node");
+    }
+
+    /**
+     * Looks up the id of a node, checking that it is in this graph.
+     *
+     * @param data the data item in the node
+     * @return the id of that node
+     * @throws NoSuchElementException if there is no such node
+     */
+    protected int idOf(NodeType data) {
+        if (!ids.containsKey(data))
+            throw new NoSuchElementException("There is no start or end node");
+        return ids.get(data);
+    }
+
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        int from = idOf(start);
+        int to = idOf(end);
+        double[] dist = new double[nodeData.length];
+        int[] pred = new int[nodeData.length];
+        computeShortestPath(from, to, dist, pred);
+        // follow the predecessor ids back from the end node
+        LinkedList<NodeType> shortestPath = new LinkedList<>();
+        for (int node = to; node != -1; node = pred[node])
+            shortestPath.addFirst(nodeData[node]);
+        return shortestPath;
+    }
+
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        int from = idOf(start);
+        int to = idOf(end);
+        double[] dist = new double[nodeData.length];
+        int[] pred = new int[nodeData.length];
+        computeShortestPath(from, to, dist, pred);
+        return dist[to];
+    }
+
+    @Override
+    public GraphPath<NodeType, EdgeType> shortestPath(NodeType start, NodeType end) {
+        int from = idOf(start);
+        int to = idOf(end);
+        double[] dist = new double[nodeData.length];
+        int[] pred = new int[nodeData.length];
+        computeShortestPath(from, to, dist, pred);
+        // follow the predecessor ids back from the end node, finding the
+        // cheapest edge between each pair in the predecessor's row
+        LinkedList<NodeType> pathNodes = new LinkedList<>();
+        LinkedList<EdgeType> pathEdges = new LinkedList<>();
+        pathNodes.addFirst(nodeData[to]);
+        for (int node = to; pred[node] != -1; node = pred[node]) {
+            int edge = -1;
+            for (int i = offsets[pred[node]]; i < offsets[pred[node] + 1]; i++)
+                if (targets[i] == node && (edge < 0 || weights[i] < weights[edge]))
+                    edge = i;
+            pathNodes.addFirst(nodeData[pred[node]]);
+            pathEdges.addFirst(edgeData[edge]);
+        }
+        return new GraphPath<>(pathNodes, pathEdges, dist[to]);
+    }
+}
@@ -0,0 +1,649 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+
+/**
+ * This class extends DijkstraGraph with contraction hierarchies (CH), which
+ * answer shortest path queries on a graph that rarely changes by searching
+ * only a small part of it. Preprocessing contracts the nodes one at a time,
+ * from least to most important: whenever the only shortest path between two
+ * remaining neighbors of a node goes through that node, a shortcut edge is
+ * added between them. Every node gets a rank from this order, and a query
+ * runs a bidirectional search in which both searches only follow edges
+ * towards higher ranked nodes. Shortcuts remember the two edges they replace,
+ * so found paths are unpacked back into the graph's real edges.
+ *
+ * The hierarchy is built the first time a path is searched for, and again
+ * after any change to the graph's nodes or edges.
+ */
+public class ContractionHierarchyGraph<NodeType, EdgeType extends Number>
+        extends DijkstraGraph<NodeType, EdgeType> {
+
+    // Number of nodes a witness search may settle before assuming that no
+    // other path is shorter than the one through the node being contracted
+    protected static final int WITNESS_SETTLE_LIMIT = 100;
+
+    /**
+     * A growable list of ints, used for the edges at each node while
+     * contracting.
+     */
+    protected static class IntList {
+        public int[] items = new int[4];
+        public int size = 0;
+
+        public void add(int item) {
+            if (size == items.length)
+                items = Arrays.copyOf(items, size * 2);
+            items[size++] = item;
+        }
+
+        public void removeIf(IntPredicate filter) {
+            int kept = 0;
+            for (int i = 0; i < size; i++)
+                if (!filter.test(items[i]))
+                    items[kept++] = items[i];
+            size = kept;
+        }
+    }
+
+    /**
+     * The arrays and queues used by one query, which each thread keeps and
+     * reuses. Entries only count when their stamp holds the current epoch.
+     */
+    protected static class QueryWorkspace {
+        public double[] forwardDist = new double[0];
+        public double[] backwardDist = new double[0];
+        // the hierarchy edge each node was reached by in each search
+        public int[] forwardEdge = new int[0];
+        public int[] backwardEdge = new int[0];
+        public int[] forwardStamp = new int[0];
+        public int[] backwardStamp = new int[0];
+        public int epoch = 0;
+        public int settledCount = 0;
+        public DaryHeap forwardQueue = new DaryHeap();
+        public DaryHeap backwardQueue = new DaryHeap();
+
+        public void prepare(int capacity) {
+            if (forwardDist.length < capacity) {
+                forwardDist = new double[capacity];
+                backwardDist = new double[capacity];
+                forwardEdge = new int[capacity];
+                backwardEdge = new int[capacity];
+                forwardStamp = new int[capacity];
+                backwardStamp = new int[capacity];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(forwardStamp, 0);
+                Arrays.fill(backwardStamp, 0);
+                epoch = 1;
+            }
+            forwardQueue.reset(capacity);
+            backwardQueue.reset(capacity);
+            settledCount = 0;
+        }
+    }
+
+    /**
+     * A finished hierarchy, which queries read. Each time the hierarchy is
+     * rebuilt, it is built in fresh arrays and then published in a single
+     * assignment, so queries running on other threads never see it half
+     * done. This takes the arrays of the hierarchy just built.
+     */
+    protected class Hierarchy {
+        public final int nodeCount = nodeByIndex.length;
+        public final int[] indexById = ContractionHierarchyGraph.this.indexById;
+        public final int shortcutCount = ContractionHierarchyGraph.this.shortcutCount;
+        public final int[] edgeFrom = ContractionHierarchyGraph.this.edgeFrom;
+        public final int[] edgeTo = ContractionHierarchyGraph.this.edgeTo;
+        public final double[] edgeWeight = ContractionHierarchyGraph.this.edgeWeight;
+        public final Edge[] edgeOriginal = ContractionHierarchyGraph.this.edgeOriginal;
+        public final int[] edgeFirst = ContractionHierarchyGraph.this.edgeFirst;
+        public final int[] edgeSecond = ContractionHierarchyGraph.this.edgeSecond;
+        public final int[] upOffsets = ContractionHierarchyGraph.this.upOffsets;
+        public final int[] upEdges = ContractionHierarchyGraph.this.upEdges;
+        public final int[] downOffsets = ContractionHierarchyGraph.this.downOffsets;
+        public final int[] downEdges = ContractionHierarchyGraph.this.downEdges;
+    }
+
+    // Whether the graph has changed since the hierarchy was built
+    protected volatile boolean stale = true;
+    // The hierarchy that queries search, or null before it is first built
+    protected volatile Hierarchy hierarchy = null;
+    // Time taken by the last preprocessing, in nanoseconds
+    protected long preprocessingNanos = 0;
+
+    // The fields below hold the hierarchy while preprocess() builds it;
+    // queries only read the Hierarchy made from them once it is done.
+    // The number of shortcuts in the hierarchy
+    protected int shortcutCount = 0;
+
+    // Nodes are numbered with dense indexes while preprocessing; these map
+    // between those indexes and the nodes
+    protected Node[] nodeByIndex;
+    protected int[] indexById;
+    // The rank of each node in the contraction order
+    protected int[] rank;
+
+    // Every edge of the hierarchy: the graph's own edges and the shortcuts.
+    // An edge's original is the graph edge it stands for, or null for a
+    // shortcut, which instead replaces the hierarchy edges first and second.
+    protected int hierarchyEdgeCount = 0;
+    protected int[] edgeFrom = new int[0];
+    protected int[] edgeTo = new int[0];
+    protected double[] edgeWeight = new double[0];
+    protected Edge[] edgeOriginal = newEdgeArray(0);
+    protected int[] edgeFirst = new int[0];
+    protected int[] edgeSecond = new int[0];
+
+    // The hierarchy edges leaving each node towards higher ranked nodes are at
+    // upEdges[upOffsets[i]] until upEdges[upOffsets[i+1]], and those entering
+    // each node from higher ranked nodes are stored the same way in downEdges
+    protected int[] upOffsets;
+    protected int[] upEdges;
+    protected int[] downOffsets;
+    protected int[] downEdges;
+
+    protected ThreadLocal<QueryWorkspace> queryWorkspaces = ThreadLocal.withInitial(QueryWorkspace::new);
+
+    // Arrays used by witness searches while preprocessing
+    private double[] witnessDist;
+    private int[] witnessStamp;
+    private int witnessEpoch;
+    private DaryHeap witnessQueue;
+
+    /**
+     * Constructor that sets the map that the graph uses.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     */
+    public ContractionHierarchyGraph(MapADT<NodeType, Node> map) {
+        super(map);
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        boolean inserted = super.insertNode(data);
+        stale |= inserted;
+        return inserted;
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        boolean removed = super.removeNode(data);
+        stale |= removed;
+        return removed;
+    }
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        boolean inserted = super.insertEdge(pred, succ, weight);
+        stale |= inserted;
+        return inserted;
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        boolean removed = super.removeEdge(pred, succ);
+        stale |= removed;
+        return removed;
+    }
+
+    @Override
+    protected void closuresChanged() {
+        stale = true;
+    }
+
+    /**
+     * Builds the hierarchy, if the graph has changed since it was last built.
+     * Nodes are contracted in order of their edge difference (the shortcuts
+     * contracting them would add minus the edges it would remove) plus the
+     * number of their neighbors already contracted and their depth in the
+     * hierarchy so far, which keep the order spread evenly over the graph.
+     * Priorities are updated lazily: a node
+     * taken from the queue is only contracted if its updated priority is
+     * still the lowest. When several threads query a changed graph at once,
+     * one of them builds the hierarchy while the others wait for it.
+     */
+    public void preprocess() {
+        if (stale)
+            rebuild();
+    }
+
+    // builds the hierarchy, unless another thread did while this one waited
+    // for the lock
+    private synchronized void rebuild() {
+        if (!stale)
+            return;
+        long start = System.nanoTime();
+        int count = nodeSet.size();
+        nodeByIndex = newNodeArray(count);
+        indexById = new int[nextNodeId];
+        int index = 0;
+        for (Node node : nodeSet) {
+            nodeByIndex[index] = node;
+            indexById[node.id] = index++;
+        }
+
+        // the hierarchy starts out with the graph's own edges, in new arrays
+        // rather than those of the hierarchy that queries may still be using
+        hierarchyEdgeCount = 0;
+        shortcutCount = 0;
+        edgeFrom = new int[0];
+        edgeTo = new int[0];
+        edgeWeight = new double[0];
+        edgeOriginal = newEdgeArray(0);
+        edgeFirst = new int[0];
+        edgeSecond = new int[0];
+        IntList[] out = new IntList[count];
+        IntList[] in = new IntList[count];
+        for (int i = 0; i < count; i++) {
+            out[i] = new IntList();
+            in[i] = new IntList();
+        }
+        for (int i = 0; i < count; i++)
+            for (Edge edge : nodeByIndex[i].edgesLeaving) {
+                int to = indexById[edge.successor.id];
+                if (to == i)
+                    continue; // a loop is never part of a shortest path
+                if (edge.closed || edge.predecessor.closed || edge.successor.closed)
+                    continue;
+                int added = addHierarchyEdge(i, to, edge.data.doubleValue(), edge, -1, -1);
+                out[i].add(added);
+                in[to].add(added);
+            }
+
+        // contract the nodes in order of priority
+        witnessDist = new double[count];
+        witnessStamp = new int[count];
+        witnessEpoch = 0;
+        witnessQueue = new DaryHeap();
+        witnessQueue.reset(count);
+        boolean[] contracted = new boolean[count];
+        int[] contractedNeighbors = new int[count];
+        int[] depth = new int[count];
+        rank = new int[count];
+        DaryHeap order = new DaryHeap();
+        order.reset(count);
+        for (int i = 0; i < count; i++)
+            order.insertOrDecrease(i, priority(i, out, in, contracted, contractedNeighbors, depth));
+        int nextRank = 0;
+        while (!order.isEmpty()) {
+            int node = order.pollMin();
+            double priority = priority(node, out, in, contracted, contractedNeighbors, depth);
+            if (!order.isEmpty() && priority > order.minPriority()) {
+                order.insertOrDecrease(node, priority);
+                continue;
+            }
+            shortcutCount += contract(node, out, in, contracted, true);
+            contracted[node] = true;
+            rank[node] = nextRank++;
+            // the neighbors drop their edges to and from the contracted node,
+            // so that later witness searches do not keep skipping them
+            for (int i = 0; i < out[node].size; i++) {
+                int neighbor = edgeTo[out[node].items[i]];
+                if (contracted[neighbor])
+                    continue;
+                contractedNeighbors[neighbor]++;
+                depth[neighbor] = Math.max(depth[neighbor], depth[node] + 1);
+                in[neighbor].removeIf(edge -> edgeFrom[edge] == node);
+            }
+            for (int i = 0; i < in[node].size; i++) {
+                int neighbor = edgeFrom[in[node].items[i]];
+                if (contracted[neighbor])
+                    continue;
+                contractedNeighbors[neighbor]++;
+                depth[neighbor] = Math.max(depth[neighbor], depth[node] + 1);
+                out[neighbor].removeIf(edge -> edgeTo[edge] == node);
+            }
+        }
+        witnessDist = null;
+        witnessStamp = null;
+        witnessQueue = null;
+
+        buildSearchGraphs(count);
+        preprocessingNanos = System.nanoTime() - start;
+        hierarchy = new Hierarchy();
+        stale = false;
+    }
+
+    // the priority of contracting a node next; lower is sooner
+    private double priority(int node, IntList[] out, IntList[] in, boolean[] contracted,
+            int[] contractedNeighbors, int[] depth) {
+        int removed = 0;
+        for (int i = 0; i < out[node].size; i++)
+            if (!contracted[edgeTo[out[node].items[i]]])
+                removed++;
+        for (int i = 0; i < in[node].size; i++)
+            if (!contracted[edgeFrom[in[node].items[i]]])
+                removed++;
+        int added = contract(node, out, in, contracted, false);
+        return added - removed + contractedNeighbors[node] + depth[node];
+    }
+
+    /**
+     * Finds the shortcuts needed to contract a node: for every pair of
+     * remaining neighbors u and w with edges u->node->w, a shortcut u->w is
+     * needed unless a witness search from u finds a path to w that avoids
+     * node and costs no more.
+     *
+     * @param node       the node to contract
+     * @param add        whether to add the shortcuts, or only count them
+     * @return the number of shortcuts needed
+     */
+    private int contract(int node, IntList[] out, IntList[] in, boolean[] contracted, boolean add) {
+        int shortcuts = 0;
+        int inCount = in[node].size;
+        for (int i = 0; i < inCount; i++) {
+            int inEdge = in[node].items[i];
+            int from = edgeFrom[inEdge];
+            if (contracted[from])
+                continue;
+            double maxCost = -1;
+            for (int j = 0; j < out[node].size; j++) {
+                int outEdge = out[node].items[j];
+                int to = edgeTo[outEdge];
+                if (!contracted[to] && to != from)
+                    maxCost = Math.max(maxCost, edgeWeight[inEdge] + edgeWeight[outEdge]);
+            }
+            if (maxCost < 0)
+                continue;
+            witnessSearch(from, node, maxCost, out, contracted);
+            int outCount = out[node].size;
+            for (int j = 0; j < outCount; j++) {
+                int outEdge = out[node].items[j];
+                int to = edgeTo[outEdge];
+                if (contracted[to] || to == from)
+                    continue;
+                double cost = edgeWeight[inEdge] + edgeWeight[outEdge];
+                if (witnessStamp[to] == witnessEpoch && witnessDist[to] <= cost)
+                    continue;
+                shortcuts++;
+                if (add) {
+                    int shortcut = addHierarchyEdge(from, to, cost, null, inEdge, outEdge);
+                    out[from].add(shortcut);
+                    in[to].add(shortcut);
+                    // later pairs from the same node can use this shortcut as a witness
+                    witnessStamp[to] = witnessEpoch;
+                    witnessDist[to] = cost;
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    // runs a limited Dijkstra search from source over the remaining nodes,
+    // skipping the node being contracted, leaving results in witnessDist
+    private void witnessSearch(int source, int skipped, double maxCost, IntList[] out, boolean[] contracted) {
+        if (++witnessEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(witnessStamp, 0);
+            witnessEpoch = 1;
+        }
+        witnessQueue.reset(witnessDist.length);
+        witnessDist[source] = 0;
+        witnessStamp[source] = witnessEpoch;
+        witnessQueue.insertOrDecrease(source, 0);
+        int settled = 0;
+        while (!witnessQueue.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT
+                && witnessQueue.minPriority() <= maxCost) {
+            int current = witnessQueue.pollMin();
+            for (int i = 0; i < out[current].size; i++) {
+                int edge = out[current].items[i];
+                int to = edgeTo[edge];
+                if (to == skipped || contracted[to])
+                    continue;
+                double cost = witnessDist[current] + edgeWeight[edge];
+                if (witnessStamp[to] != witnessEpoch || cost < witnessDist[to]) {
+                    witnessStamp[to] = witnessEpoch;
+                    witnessDist[to] = cost;
+                    witnessQueue.insertOrDecrease(to, cost);
+                }
+            }
+        }
+    }
+
+    // adds an edge to the hierarchy and returns its index
+    private int addHierarchyEdge(int from, int to, double weight, Edge original, int first, int second) {
+        if (hierarchyEdgeCount == edgeFrom.length) {
+            int length = Math.max(16, edgeFrom.length * 2);
+            edgeFrom = Arrays.copyOf(edgeFrom, length);
+            edgeTo = Arrays.copyOf(edgeTo, length);
+            edgeWeight = Arrays.copyOf(edgeWeight, length);
+            edgeOriginal = Arrays.copyOf(edgeOriginal, length);
+            edgeFirst = Arrays.copyOf(edgeFirst, length);
+            edgeSecond = Arrays.copyOf(edgeSecond, length);
+        }
+        edgeFrom[hierarchyEdgeCount] = from;
+        edgeTo[hierarchyEdgeCount] = to;
+        edgeWeight[hierarchyEdgeCount] = weight;
+        edgeOriginal[hierarchyEdgeCount] = original;
+        edgeFirst[hierarchyEdgeCount] = first;
+        edgeSecond[hierarchyEdgeCount] = second;
+        return hierarchyEdgeCount++;
+    }
+
+    // sorts the hierarchy edges into the upward and downward search graphs
+    private void buildSearchGraphs(int count) {
+        upOffsets = new int[count + 1];
+        downOffsets = new int[count + 1];
+        for (int e = 0; e < hierarchyEdgeCount; e++)
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]])
+                upOffsets[edgeFrom[e] + 1]++;
+            else
+                downOffsets[edgeTo[e] + 1]++;
+        for (int i = 0; i < count; i++) {
+            upOffsets[i + 1] += upOffsets[i];
+            downOffsets[i + 1] += downOffsets[i];
+        }
+        upEdges = new int[upOffsets[count]];
+        downEdges = new int[downOffsets[count]];
+        int[] upNext = Arrays.copyOf(upOffsets, count);
+        int[] downNext = Arrays.copyOf(downOffsets, count);
+        for (int e = 0; e < hierarchyEdgeCount; e++)
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]])
+                upEdges[upNext[edgeFrom[e]]++] = e;
+            else
+                downEdges[downNext[edgeTo[e]]++] = e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newNodeArray(int length) {
+        return (Node[]) new BaseGraph.Node[length];
+    }
+
+    /**
+     * Answers a query with a bidirectional search over the hierarchy, and
+     * unpacks the path found into the graph's own edges. The path is left in
+     * the workspace, so that following workspace.predEdge back from the end
+     * node leads to the start node, just like after a forward search.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param workspace the calling thread's workspace
+     * @return the end node
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    @Override
+    protected Node search(NodeType start, NodeType end, SearchWorkspace workspace) {
+        if (!containsNode(start) || !containsNode(end))
+            throw new NoSuchElementException("There is no start or end node");
+        preprocess();
+        Hierarchy hierarchy = this.hierarchy;
+        Node startNode = nodes.get(start);
+        Node endNode = nodes.get(end);
+        if (startNode.closed || endNode.closed)
+            throw new NoSuchElementException("No path from start to end node");
+        int source = hierarchy.indexById[startNode.id];
+        int target = hierarchy.indexById[endNode.id];
+
+        QueryWorkspace query = queryWorkspaces.get();
+        query.prepare(hierarchy.nodeCount);
+        int epoch = query.epoch;
+        query.forwardDist[source] = 0;
+        query.forwardEdge[source] = -1;
+        query.forwardStamp[source] = epoch;
+        query.forwardQueue.insertOrDecrease(source, 0);
+        query.backwardDist[target] = 0;
+        query.backwardEdge[target] = -1;
+        query.backwardStamp[target] = epoch;
+        query.backwardQueue.insertOrDecrease(target, 0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        while (true) {
+            // each search is done once its closest unsettled node is no
+            // closer than the best path found
+            boolean forwardDone = query.forwardQueue.isEmpty() || query.forwardQueue.minPriority() >= best;
+            boolean backwardDone = query.backwardQueue.isEmpty() || query.backwardQueue.minPriority() >= best;
+            if (forwardDone && backwardDone)
+                break;
+            boolean forward = backwardDone
+                    || (!forwardDone && query.forwardQueue.minPriority() <= query.backwardQueue.minPriority());
+            if (forward) {
+                int current = query.forwardQueue.pollMin();
+                query.settledCount++;
+                double dist = query.forwardDist[current];
+                if (query.backwardStamp[current] == epoch && dist + query.backwardDist[current] < best) {
+                    best = dist + query.backwardDist[current];
+                    meeting = current;
+                }
+                if (stalled(hierarchy, current, dist, hierarchy.downOffsets, hierarchy.downEdges,
+                        hierarchy.edgeFrom, query.forwardDist, query.forwardStamp, epoch))
+                    continue;
+                for (int i = hierarchy.upOffsets[current]; i < hierarchy.upOffsets[current + 1]; i++) {
+                    int edge = hierarchy.upEdges[i];
+                    int to = hierarchy.edgeTo[edge];
+                    double cost = dist + hierarchy.edgeWeight[edge];
+                    if (query.forwardStamp[to] != epoch || cost < query.forwardDist[to]) {
+                        query.forwardStamp[to] = epoch;
+                        query.forwardDist[to] = cost;
+                        query.forwardEdge[to] = edge;
+                        query.forwardQueue.insertOrDecrease(to, cost);
+                    }
+                }
+            } else {
+                int current = query.backwardQueue.pollMin();
+                query.settledCount++;
+                double dist = query.backwardDist[current];
+                if (query.forwardStamp[current] == epoch && dist + query.forwardDist[current] < best) {
+                    best = dist + query.forwardDist[current];
+                    meeting = current;
+                }
+                if (stalled(hierarchy, current, dist, hierarchy.upOffsets, hierarchy.upEdges,
+                        hierarchy.edgeTo, query.backwardDist, query.backwardStamp, epoch))
+                    continue;
+                for (int i = hierarchy.downOffsets[current]; i < hierarchy.downOffsets[current + 1]; i++) {
+                    int edge = hierarchy.downEdges[i];
+                    int from = hierarchy.edgeFrom[edge];
+                    double cost = dist + hierarchy.edgeWeight[edge];
+                    if (query.backwardStamp[from] != epoch || cost < query.backwardDist[from]) {
+                        query.backwardStamp[from] = epoch;
+                        query.backwardDist[from] = cost;
+                        query.backwardEdge[from] = edge;
+                        query.backwardQueue.insertOrDecrease(from, cost);
+                    }
+                }
+            }
+        }
+        if (meeting < 0)
+            throw new NoSuchElementException("No path from start to end node");
+
+        // collect the hierarchy edges from the start to the meeting node, and
+        // then on to the end node, and unpack them into the graph's edges
+        List<Integer> hierarchyPath = new ArrayList<>();
+        for (int node = meeting; query.forwardEdge[node] >= 0;
+                node = hierarchy.edgeFrom[query.forwardEdge[node]])
+            hierarchyPath.add(0, query.forwardEdge[node]);
+        for (int node = meeting; query.backwardEdge[node] >= 0;
+                node = hierarchy.edgeTo[query.backwardEdge[node]])
+            hierarchyPath.add(query.backwardEdge[node]);
+        List<Edge> path = new ArrayList<>();
+        for (int edge : hierarchyPath)
+            unpack(hierarchy, edge, path);
+
+        workspace.prepare(nextNodeId);
+        workspace.dist[startNode.id] = 0;
+        workspace.predEdge[startNode.id] = null;
+        workspace.reached[startNode.id] = workspace.epoch;
+        for (Edge edge : path) {
+            Node next = edge.successor;
+            workspace.dist[next.id] = workspace.dist[edge.predecessor.id] + edge.data.doubleValue();
+            workspace.predEdge[next.id] = edge;
+            workspace.reached[next.id] = workspace.epoch;
+        }
+        return endNode;
+    }
+
+    /**
+     * Checks whether a node that a search has just settled can be stalled: if
+     * the search reached a higher ranked neighbor that is closer than this
+     * node's distance through it, then the distance this upward search found
+     * for the node is not its real distance, and no shortest path goes on
+     * from it, so its edges do not need to be followed.
+     *
+     * @param hierarchy the hierarchy searched
+     * @param node      the settled node
+     * @param dist      the distance the search found for node
+     * @param offsets   the offsets of the edges between node and higher
+     *                  ranked neighbors in the direction opposite the search
+     * @param edges     those edges
+     * @param neighbors the array giving the neighbor at the far end of each
+     *                  of those edges
+     * @param searchDist the search's distances
+     * @param stamp     the search's stamps
+     * @param epoch     the current epoch
+     * @return true if the node's edges can be skipped
+     */
+    private boolean stalled(Hierarchy hierarchy, int node, double dist, int[] offsets, int[] edges,
+            int[] neighbors, double[] searchDist, int[] stamp, int epoch) {
+        for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+            int edge = edges[i];
+            int neighbor = neighbors[edge];
+            if (stamp[neighbor] == epoch && searchDist[neighbor] + hierarchy.edgeWeight[edge] < dist)
+                return true;
+        }
+        return false;
+    }
+
+    // appends the graph edges that a hierarchy edge stands for to path
+    private void unpack(Hierarchy hierarchy, int edge, List<Edge> path) {
+        if (hierarchy.edgeOriginal[edge] != null) {
+            path.add(hierarchy.edgeOriginal[edge]);
+        } else {
+            unpack(hierarchy, hierarchy.edgeFirst[edge], path);
+            unpack(hierarchy, hierarchy.edgeSecond[edge], path);
+        }
+    }
+
+    /**
+     * Returns the number of nodes that the calling thread's last query
+     * settled in the hierarchy, counting both directions.
+     *
+     * @return the number of nodes settled by the last search on this thread
+     */
+    @Override
+    public int getLastSettledCount() {
+        return queryWorkspaces.get().settledCount;
+    }
+
+    /**
+     * @return the number of shortcut edges in the hierarchy, building it
+     *         first if needed
+     */
+    public int getShortcutCount() {
+        preprocess();
+        return hierarchy.shortcutCount;
+    }
+
+    /**
+     * @return the time taken to build the hierarchy the last time it was
+     *         built, in milliseconds
+     */
+    public double getPreprocessingMillis() {
+        return preprocessingNanos / 1e6;
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements IndexedPriorityQueue as an array-based d-ary min heap. The heap
+ * index of every item is tracked so that lowering an item's priority moves
+ * it up the heap in place.
+ */
+public class DaryHeap implements IndexedPriorityQueue {
+
+    // number of children of each heap node
+    protected int arity;
+    // items in heap order
+    protected int[] heap = new int[0];
+    // index of each item within heap, or -1 when the item is not in the heap
+    protected int[] position = new int[0];
+    // priority of each item
+    protected double[] priority = new double[0];
+    protected int size = 0;
+
+    /**
+     * Creates a 4-ary heap, which is usually faster than a binary heap for
+     * Dijkstra's algorithm since it is shallower.
+     */
+    public DaryHeap() {
+        this(4);
+    }
+
+    /**
+     * Creates a heap in which every node has the given number of children.
+     * @param arity the number of children per heap node
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public DaryHeap(int arity) {
+        if (arity < 2)
+            throw new IllegalArgumentException("heap arity must be at least 2");
+        this.arity = arity;
+    }
+
+    @Override
+    public void reset(int capacity) {
+        if (position.length < capacity) {
+            heap = new int[capacity];
+            position = new int[capacity];
+            priority = new double[capacity];
+            Arrays.fill(position, -1);
+        } else {
+            // only the items still in the heap need to be cleared
+            for (int i = 0; i < size; i++)
+                position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int item) {
+        return position[item] >= 0;
+    }
+
+    @Override
+    public void insertOrDecrease(int item, double newPriority) {
+        if (position[item] >= 0) {
+            if (newPriority > priority[item])
+                throw new IllegalArgumentException("priority of item " + item + " cannot increase");
+        } else {
+            heap[size] = item;
+            position[item] = size++;
+        }
+        priority[item] = newPriority;
+        siftUp(position[item]);
+    }
+
+    @Override
+    public double minPriority() throws NoSuchElementException {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        return priority[heap[0]];
+    }
+
+    @Override
+    public int pollMin() throws NoSuchElementException {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        int min = heap[0];
+        position[min] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    // moves the item at index up until its parent has a lower priority
+    private void siftUp(int index) {
+        int item = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / arity;
+            if (priority[heap[parent]] <= priority[item])
+                break;
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = item;
+        position[item] = index;
+    }
+
+    // moves the item at index down until all of its children have higher priorities
+    private void siftDown(int index) {
+        int item = heap[index];
+        while (true) {
+            int first = index * arity + 1;
+            if (first >= size)
+                break;
+            int last = Math.min(first + arity, size);
+            int child = first;
+            for (int i = first + 1; i < last; i++)
+                if (priority[heap[i]] < priority[heap[child]])
+                    child = i;
+            if (priority[item] <= priority[heap[child]])
+                break;
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = item;
+        position[item] = index;
+    }
+}
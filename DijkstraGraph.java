@@ -2,11 +2,18 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -30,8 +37,8 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * field (this field is null within the SearchNode containing the starting
      * node in its node field).
      *
-     * SearchNodes are Comparable and are sorted by cost so that the lowest cost
-     * SearchNode has the highest priority within a java.util.PriorityQueue.
+     * SearchNodes are Comparable and are sorted by cost, so that the lowest
+     * cost SearchNode comes first.
      */
     protected class SearchNode implements Comparable<SearchNode> {
         public Node node;
@@ -53,18 +60,546 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         }
     }
 
+    /**
+     * The arrays and priority queue used by one search. Each thread that
+     * searches this graph keeps one SearchWorkspace and reuses it for all of
+     * its searches, so that a search does not allocate anything. Instead of
+     * clearing the arrays before each search, every search gets a new epoch
+     * number, and an entry in dist or predEdge only counts when the matching
+     * entry in reached holds the current epoch.
+     */
+    protected class SearchWorkspace {
+        // lowest known cost to reach each node, indexed by node id
+        public double[] dist = new double[0];
+        // the edge that the lowest cost path to each node arrives by
+        public Edge[] predEdge = newEdgeArray(0);
+        // the epoch in which each node was last reached, and last settled
+        public int[] reached = new int[0];
+        public int[] settled = new int[0];
+        // the epoch of the search for which each node is an end node still to
+        // be settled, for searches with several end nodes
+        public int[] pending = new int[0];
+        public int epoch = 0;
+        // the number of nodes settled by the current search
+        public int settledCount = 0;
+        // priority queue of node ids, keyed by their lowest known cost
+        public IndexedPriorityQueue queue = queueFactory.get();
+        // the paused searches of this thread by start node, from least to
+        // most recently used, when searches are retained
+        public LinkedHashMap<Node, ResumableSearch> paused = new LinkedHashMap<>(16, 0.75f, true);
+
+        /**
+         * Starts a new search, making sure there is room for every node id.
+         * @param capacity one more than the largest node id in the graph
+         */
+        public void prepare(int capacity) {
+            if (dist.length < capacity) {
+                int length = Math.max(capacity, dist.length + dist.length / 2);
+                dist = Arrays.copyOf(dist, length);
+                predEdge = Arrays.copyOf(predEdge, length);
+                reached = Arrays.copyOf(reached, length);
+                settled = Arrays.copyOf(settled, length);
+                pending = Arrays.copyOf(pending, length);
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                //Stamps from earlier searches could be mistaken for new ones after wrapping
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                Arrays.fill(pending, 0);
+                epoch = 1;
+            }
+            queue.reset(dist.length);
+            settledCount = 0;
+        }
+
+        /**
+         * Records a path to a node, which is cheaper than any found before.
+         * @param node the node reached
+         * @param cost the cost of the path to it
+         * @param edge the last edge of the path, or null for the start node
+         */
+        public void reach(Node node, double cost, Edge edge) {
+            reach(node, cost, edge, cost);
+        }
+
+        /**
+         * Records a path to a node, which is cheaper than any found before,
+         * and queues the node with a priority other than its cost.
+         * @param node     the node reached
+         * @param cost     the cost of the path to it
+         * @param edge     the last edge of the path, or null for the start node
+         * @param priority the priority of the node in the queue
+         */
+        public void reach(Node node, double cost, Edge edge, double priority) {
+            dist[node.id] = cost;
+            predEdge[node.id] = edge;
+            reached[node.id] = epoch;
+            queue.insertOrDecrease(node.id, priority);
+        }
+
+        /**
+         * @return the lowest known cost to reach a node in this search, or
+         *         infinity if it has not been reached
+         */
+        public double distance(int id) {
+            return reached[id] == epoch ? dist[id] : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return true if the lowest cost path to a node is final in this search
+         */
+        public boolean isSettled(int id) {
+            return settled[id] == epoch;
+        }
+
+        /**
+         * Marks the lowest cost path to a node as final.
+         * @param id the id of the node
+         */
+        public void settle(int id) {
+            settled[id] = epoch;
+            settledCount++;
+        }
+    }
+
+    /**
+     * A search from one start node that settles nodes one at a time, in
+     * order of their cost, and can be paused after any of them and resumed
+     * later to settle more. It keeps its frontier, costs and predecessors in
+     * a SearchWorkspace of its own, which no other search uses while it is
+     * paused. A reverse search follows edges backwards, so it settles nodes
+     * in order of the cost of their shortest path to the start node, and
+     * the edge it records for each node leads towards the start node.
+     */
+    protected class ResumableSearch {
+        public final Node startNode;
+        // the version of the graph that the search started on
+        public final long version;
+        public final SearchWorkspace workspace;
+        // whether the search follows edges from their successor to their
+        // predecessor, through edgesEntering
+        public final boolean reverse;
+
+        /**
+         * Starts a search from a node that is open.
+         * @param startNode the start node of the search
+         * @param workspace a workspace that no other search is using
+         */
+        public ResumableSearch(Node startNode, SearchWorkspace workspace) {
+            this(startNode, workspace, false);
+        }
+
+        /**
+         * Starts a search from a node that is open, in either direction.
+         * @param startNode the start node of the search
+         * @param workspace a workspace that no other search is using
+         * @param reverse   true to follow edges backwards
+         */
+        public ResumableSearch(Node startNode, SearchWorkspace workspace, boolean reverse) {
+            this.startNode = startNode;
+            this.version = getVersion();
+            this.workspace = workspace;
+            this.reverse = reverse;
+            workspace.prepare(nextNodeId);
+            workspace.reach(startNode, 0, null);
+        }
+
+        /**
+         * Settles the cheapest node on the frontier, and reaches its open
+         * neighbors through open edges.
+         * @return the node settled, or null if every node that can be
+         *         reached from the start node is already settled
+         */
+        public Node settleNext() {
+            IndexedPriorityQueue priorityQueue = workspace.queue;
+            if (priorityQueue.isEmpty())
+                return null;
+            int currentId = priorityQueue.pollMin();
+            Node currentNode = currentId == startNode.id ? startNode
+                    : reachedBy(workspace.predEdge[currentId], currentId);
+            workspace.settle(currentId);
+            double currentCost = workspace.dist[currentId];
+            // the edges of an undirected graph are all in edgesLeaving
+            List<Edge> edges = reverse && !undirected ? currentNode.edgesEntering : currentNode.edgesLeaving;
+            for (int i = 0; i < edges.size(); i++) {
+                Edge edge = edges.get(i);
+                Node neighbor = otherEnd(edge, currentNode);
+                if (edge.closed || neighbor.closed)
+                    continue;
+                double lowestCost = currentCost + edge.data.doubleValue();
+                if (!workspace.isSettled(neighbor.id) && lowestCost < workspace.distance(neighbor.id))
+                    workspace.reach(neighbor, lowestCost, edge);
+            }
+            return currentNode;
+        }
+
+        /**
+         * @return the cost of the cheapest node on the frontier, which is the
+         *         next one settleNext() settles, or infinity if there is none
+         */
+        public double nextCost() {
+            // nodes are queued by their cost, with no estimate added
+            return workspace.queue.isEmpty() ? Double.POSITIVE_INFINITY : workspace.queue.minPriority();
+        }
+
+        /**
+         * @return true if the lowest cost path to node has been found
+         */
+        public boolean isSettled(Node node) {
+            return workspace.isSettled(node.id);
+        }
+
+        /**
+         * @return the number of nodes settled so far
+         */
+        public int getSettledCount() {
+            return workspace.settledCount;
+        }
+    }
+
+    /**
+     * The nodes that can be reached from a start node within a cost budget,
+     * or for a reverse search, the nodes that can reach an end node within
+     * it. The search runs lazily: each call to next() settles one more node,
+     * in increasing order of cost, so that a caller that stops early never
+     * pays for the rest. Settled nodes are kept in compact arrays, in the
+     * order they were settled, with their cost and the index of their parent,
+     * which is the node before them on their shortest path from the start
+     * node, or after them on their shortest path to the end node. Once no
+     * node is left within the budget, the search's own workspace is let go,
+     * and only those arrays are kept.
+     *
+     * A BoundedSearch must not be used after the graph changes, or from more
+     * than one thread at once.
+     */
+    public class BoundedSearch implements Iterator<NodeType> {
+        private final double budget;
+        private final boolean reverse;
+        // the search, until no node is left within the budget
+        private ResumableSearch search;
+        // the index of each settled node, by node id, while searching
+        private int[] indexOf;
+        // the data, cost and parent index of each settled node, by index
+        private Object[] settledData = new Object[16];
+        private double[] settledCost = new double[16];
+        private int[] settledParent = new int[16];
+        private int count = 0;
+
+        private BoundedSearch(Node startNode, double budget, boolean reverse) {
+            this.budget = budget;
+            this.reverse = reverse;
+            this.search = new ResumableSearch(startNode, new SearchWorkspace(), reverse);
+            this.indexOf = new int[nextNodeId];
+        }
+
+        /**
+         * @return true if another node is within the budget
+         */
+        @Override
+        public boolean hasNext() {
+            // an empty frontier's infinite cost is within an infinite budget
+            if (search != null && (search.workspace.queue.isEmpty() || search.nextCost() > budget)) {
+                // nothing is left within the budget, so the workspace can go
+                search = null;
+                indexOf = null;
+            }
+            return search != null;
+        }
+
+        /**
+         * Settles the next node within the budget.
+         * @return the data of that node, whose cost is getCost(i) and whose
+         *         parent is getParent(i), for i one less than getCount()
+         * @throws NoSuchElementException if no node is left within the budget
+         */
+        @Override
+        public NodeType next() {
+            if (!hasNext())
+                throw new NoSuchElementException("No more nodes within " + budget);
+            Node node = search.settleNext();
+            Edge edge = search.workspace.predEdge[node.id];
+            if (count == settledData.length) {
+                settledData = Arrays.copyOf(settledData, count * 2);
+                settledCost = Arrays.copyOf(settledCost, count * 2);
+                settledParent = Arrays.copyOf(settledParent, count * 2);
+            }
+            settledData[count] = node.data;
+            settledCost[count] = search.workspace.dist[node.id];
+            settledParent[count] = edge == null ? -1 : indexOf[otherEnd(edge, node).id];
+            indexOf[node.id] = count++;
+            return node.data;
+        }
+
+        /**
+         * Settles every node left within the budget.
+         * @return this search
+         */
+        public BoundedSearch settleAll() {
+            while (hasNext())
+                next();
+            return this;
+        }
+
+        /**
+         * @return a sequential stream of the nodes that this search has not
+         *         returned yet, which settles them as it is consumed
+         */
+        public Stream<NodeType> stream() {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+        }
+
+        /**
+         * @return the number of nodes settled so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @param index the index of a settled node, from 0 for the start node
+         * @return the data of that node
+         */
+        @SuppressWarnings("unchecked")
+        public NodeType getNode(int index) {
+            checkIndex(index);
+            return (NodeType) settledData[index];
+        }
+
+        /**
+         * @param index the index of a settled node, from 0 for the start node
+         * @return the cost of the shortest path between that node and the
+         *         start node, which never decreases with the index
+         */
+        public double getCost(int index) {
+            checkIndex(index);
+            return settledCost[index];
+        }
+
+        /**
+         * @param index the index of a settled node, from 0 for the start node
+         * @return the index of the node next to it on its shortest path to
+         *         or from the start node, which is always lower, or -1 for
+         *         the start node
+         */
+        public int getParent(int index) {
+            checkIndex(index);
+            return settledParent[index];
+        }
+
+        /**
+         * @param index the index of a settled node, from 0 for the start node
+         * @return the nodes on the shortest path between the start node and
+         *         that node, in the order they are travelled, which ends at
+         *         the start node for a reverse search
+         */
+        public List<NodeType> getPath(int index) {
+            checkIndex(index);
+            LinkedList<NodeType> path = new LinkedList<>();
+            for (int i = index; i >= 0; i = settledParent[i]) {
+                if (reverse)
+                    path.addLast(getNode(i));
+                else
+                    path.addFirst(getNode(i));
+            }
+            return path;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= count)
+                throw new IndexOutOfBoundsException("no settled node " + index);
+        }
+    }
+
+    /**
+     * A destination found by destinationsFrom(), with a handle to the
+     * shortest path to it, which is only built into a list when asked for.
+     */
+    public class Destination {
+        private final BoundedSearch search;
+        private final int index;
+
+        private Destination(BoundedSearch search, int index) {
+            this.search = search;
+            this.index = index;
+        }
+
+        /**
+         * @return the data item in the destination node
+         */
+        public NodeType getNode() {
+            return search.getNode(index);
+        }
+
+        /**
+         * @return the cost of the shortest path from the origin
+         */
+        public double getCost() {
+            return search.getCost(index);
+        }
+
+        /**
+         * @return the position of this destination in increasing order of
+         *         cost, from 1 for the nearest one
+         */
+        public int getRank() {
+            return index;
+        }
+
+        /**
+         * @return the data items of the nodes along the shortest path from
+         *         the origin to this destination, including both
+         */
+        public List<NodeType> getPath() {
+            return search.getPath(index);
+        }
+    }
+
+    /**
+     * Returns the destinations that can be reached from an origin, in
+     * increasing order of the cost of their shortest paths, found lazily:
+     * taking each destination from the stream settles just one more node, so
+     * a caller that takes the nearest 20 only pays for 20 settled nodes, not
+     * for a search of the whole graph. The origin itself is not included.
+     * The stream must be consumed before the graph changes, on one thread.
+     *
+     * @param start the data item in the origin node
+     * @return a sequential stream of the destinations
+     * @throws NoSuchElementException when start is not in the graph or is
+     *                                closed
+     */
+    public Stream<Destination> destinationsFrom(NodeType start) {
+        BoundedSearch search = reachableFrom(start, Double.POSITIVE_INFINITY);
+        search.next(); // settles the origin itself
+        Iterator<Destination> destinations = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return search.hasNext();
+            }
+
+            @Override
+            public Destination next() {
+                search.next();
+                return new Destination(search, search.getCount() - 1);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(destinations,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Starts a lazy search for the nodes that can be reached from start
+     * through open nodes and edges, at a cost of at most budget, such as the
+     * airports within 1,500 miles of ORD.
+     *
+     * @param start  the data item in the starting node
+     * @param budget the highest cost of a path to any node returned
+     * @return a search that settles the nodes in increasing order of cost,
+     *         starting with start itself
+     * @throws NoSuchElementException when start is not in the graph or is
+     *                                closed
+     */
+    public BoundedSearch reachableFrom(NodeType start, double budget) {
+        return new BoundedSearch(openNode(start), budget, false);
+    }
+
+    /**
+     * Starts a lazy search for the nodes that can reach end through open
+     * nodes and edges, at a cost of at most budget, following edges backwards
+     * from end through edgesEntering.
+     *
+     * @param end    the data item in the destination node
+     * @param budget the highest cost of a path from any node returned
+     * @return a search that settles the nodes in increasing order of the cost
+     *         of their path to end, starting with end itself
+     * @throws NoSuchElementException when end is not in the graph or is
+     *                                closed
+     */
+    public BoundedSearch reachableTo(NodeType end, double budget) {
+        return new BoundedSearch(openNode(end), budget, true);
+    }
+
+    // returns the open node holding data, or throws NoSuchElementException
+    private Node openNode(NodeType data) {
+        if (!containsNode(data) || nodes.get(data).closed)
+            throw new NoSuchElementException("There is no open node " + data);
+        return nodes.get(data);
+    }
+
+    // The estimated bytes that a SearchWorkspace uses for each node id: its
+    // five arrays, with 8-byte references, and a DaryHeap's three arrays
+    protected static final long WORKSPACE_BYTES_PER_NODE = 44;
+
+    // Creates the priority queue that each search keeps its frontier in
+    protected Supplier<IndexedPriorityQueue> queueFactory;
+    // The workspace of each thread that searches this graph
+    protected ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace());
+    // The number of paused searches each thread keeps, or 0 to start every
+    // search from scratch, and the most bytes that each may use
+    protected int retainedSearches = 0;
+    protected long retainedSearchBytes = 0;
+
     /**
      * Constructor that sets the map that the graph uses.
      * @param map the map that the graph uses to map a data object to the node
      *        object it is stored in
      */
     public DijkstraGraph(MapADT<NodeType, Node> map) {
-        super(map);
+        this(map, DaryHeap::new);
     }
 
     /**
-     * This helper method creates a network of SearchNodes while computing the
-     * shortest path between the provided start and end locations. The
+     * Constructor that sets the map that the graph uses, and the kind of
+     * priority queue that searches use.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     * @param queueFactory creates the priority queue used by each search; a
+     *        RadixHeap may only be used when all edge weights are integers
+     */
+    public DijkstraGraph(MapADT<NodeType, Node> map, Supplier<IndexedPriorityQueue> queueFactory) {
+        this(map, queueFactory, false);
+    }
+
+    /**
+     * Constructor that sets the map that the graph uses, the kind of priority
+     * queue that searches use, and whether the graph is undirected.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     * @param queueFactory creates the priority queue used by each search; a
+     *        RadixHeap may only be used when all edge weights are integers
+     * @param undirected true to store each edge once and let searches follow
+     *        it both ways
+     */
+    public DijkstraGraph(MapADT<NodeType, Node> map, Supplier<IndexedPriorityQueue> queueFactory,
+            boolean undirected) {
+        super(map, undirected);
+        this.queueFactory = queueFactory;
+    }
+
+    /**
+     * Makes each thread keep its most recent searches paused, so that a later
+     * search from the same start node can carry on from where they stopped
+     * instead of starting over. A destination that an earlier search already
+     * settled is then found without settling any more nodes. Paused searches
+     * are dropped once the graph changes. Each keeps a workspace of its own,
+     * of about WORKSPACE_BYTES_PER_NODE bytes for each node in the graph, so
+     * no searches are kept for graphs too large for that to fit in maxBytes.
+     * A paused search settles nodes in order of their cost alone, so graphs
+     * whose searches are guided by estimate() (see usesEstimate()) keep
+     * starting every search from scratch instead, to keep that guidance.
+     *
+     * @param searchesPerThread the most searches each thread keeps paused,
+     *        each from a different start node, or 0 to keep none
+     * @param maxBytes the most bytes that each paused search may use
+     */
+    public void setRetainedSearches(int searchesPerThread, long maxBytes) {
+        this.retainedSearches = searchesPerThread;
+        this.retainedSearchBytes = maxBytes;
+    }
+
+    /**
+     * This helper method computes the shortest path between the provided
+     * start and end locations, and returns it as a chain of SearchNodes. The
      * SearchNode that is returned by this method is represents the end of the
      * shortest path that is found: it's cost is the cost of that shortest path,
      * and the nodes linked together through predecessor references represent
@@ -78,48 +613,79 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      *                                correspond to a graph node
      */
     protected SearchNode computeShortestPath(NodeType start, NodeType end) {
+        SearchWorkspace workspace = workspaces.get();
+        Node endNode = search(start, end, workspace);
+        List<Node> path = new ArrayList<>();
+        for (Node node = endNode; node != null; node = previousNode(node, workspace))
+            path.add(node);
+        SearchNode searchNode = null;
+        for (int i = path.size() - 1; i >= 0; i--)
+            searchNode = new SearchNode(path.get(i), workspace.dist[path.get(i).id], searchNode);
+        return searchNode;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the start node until the end node is
+     * settled, guided by estimate() when a subclass provides one. The
+     * results are left in the workspace: the cost of the shortest path is
+     * workspace.dist[end id], and following workspace.predEdge back from the
+     * end node leads to the start node.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param workspace the calling thread's workspace
+     * @return the end node
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    protected Node search(NodeType start, NodeType end, SearchWorkspace workspace) {
         //If the graph does not contain the start or end node, path is impossible
         if (!containsNode(start) || !containsNode(end)){
             throw new NoSuchElementException("There is no start or end node");
         }
+        Node startNode = nodes.get(start);
+        Node endNode = nodes.get(end);
+        //Closed airports can neither be left nor reached
+        if (startNode.closed || endNode.closed){
+            throw new NoSuchElementException("No path from start to end node");
+        }
 
-        //Creates PlaceholderMap to keep track of visited nodes
-        PlaceholderMap<NodeType,Boolean> visitedNodes = new PlaceholderMap<>();
-        //Creates priorityQueue to greedily keep track of edges and nodes
-        PriorityQueue<SearchNode> priorityQueue = new PriorityQueue<>();
+        if (retainedSearches > 0 && !usesEstimate()
+                && (long) nextNodeId * WORKSPACE_BYTES_PER_NODE <= retainedSearchBytes){
+            return resumeSearch(startNode, endNode, workspace);
+        }
 
-        //Creates the initial start node and adds it to priority queue
-        Node initStartNode = nodes.get(start);
-        SearchNode startNode = new SearchNode(initStartNode,0,null);
-        priorityQueue.add(startNode);
+        workspace.prepare(nextNodeId);
+        workspace.reach(startNode, 0, null);
+        IndexedPriorityQueue priorityQueue = workspace.queue;
 
         //Iterates through priority queue, cheapest node is at beginning
         while (!priorityQueue.isEmpty()){
-            SearchNode currentNode = priorityQueue.poll();
-
-            //If the node in the path has already been visited, ignore and move to next
-            if (visitedNodes.containsKey(currentNode.node.data)){
-                continue;
-            }
-
-            //We visit the node and put it into map
-            visitedNodes.put(currentNode.node.data, true);
+            int currentId = priorityQueue.pollMin();
+            Node currentNode = currentId == startNode.id ? startNode
+                    : reachedBy(workspace.predEdge[currentId], currentId);
+            workspace.settle(currentId);
 
-            //If the node we just visited has the data for the end node, we found the path
-            if (currentNode.node.data.equals(end)){
-                return currentNode;
+            //If the node we just visited is the end node, we found the path
+            if (currentNode == endNode){
+                return endNode;
             }
 
-            //Traces through all neighboring nodes
-            for (Edge edge : currentNode.node.edgesLeaving){
-                Node neighbor = edge.successor;
-                //If we have not already visited
-                if (!visitedNodes.containsKey(neighbor.data)){
-                    //Keep track of cost to get to node
-                    double lowestCost = currentNode.cost + edge.data.doubleValue();
-                    //Add node to priority queue
-                    SearchNode neighborNode = new SearchNode(neighbor,lowestCost,currentNode);
-                    priorityQueue.add(neighborNode);
+            //Traces through all neighboring nodes, by index to avoid allocating an iterator
+            double currentCost = workspace.dist[currentId];
+            List<Edge> edgesLeaving = currentNode.edgesLeaving;
+            for (int i = 0; i < edgesLeaving.size(); i++){
+                Edge edge = edgesLeaving.get(i);
+                Node neighbor = otherEnd(edge, currentNode);
+                if (edge.closed || neighbor.closed){
+                    continue;
+                }
+                int neighborId = neighbor.id;
+                //Keep track of cost to get to node, if it is cheaper than any path so far
+                double lowestCost = currentCost + edge.data.doubleValue();
+                if (!workspace.isSettled(neighborId) && lowestCost < workspace.distance(neighborId)){
+                    workspace.reach(neighbor, lowestCost, edge, lowestCost + estimate(neighbor, endNode));
                 }
             }
 
@@ -129,6 +695,117 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         throw new NoSuchElementException("No path from start to end node");
     }
 
+    /**
+     * Finds the shortest path from an open start node to an open end node by
+     * carrying on with the calling thread's paused search from the start node,
+     * or a new one, until the end node is settled. The path is then copied
+     * into the workspace, as search() leaves it, and the search is paused
+     * again for later searches from the same start node.
+     *
+     * @param startNode the starting node for the path
+     * @param endNode   the destination node for the path
+     * @param workspace the calling thread's workspace
+     * @return the end node
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    protected Node resumeSearch(Node startNode, Node endNode, SearchWorkspace workspace) {
+        Map<Node, ResumableSearch> paused = workspace.paused;
+        //Searches from before the graph last changed may have wrong paths
+        paused.values().removeIf(search -> search.version != getVersion());
+        ResumableSearch search = paused.get(startNode);
+        if (search == null) {
+            //The least recently used search makes room, and gives up its workspace
+            SearchWorkspace searchWorkspace = null;
+            if (paused.size() >= retainedSearches) {
+                Iterator<ResumableSearch> eldest = paused.values().iterator();
+                searchWorkspace = eldest.next().workspace;
+                eldest.remove();
+            }
+            search = new ResumableSearch(startNode,
+                    searchWorkspace != null ? searchWorkspace : new SearchWorkspace());
+            paused.put(startNode, search);
+        }
+        int settledBefore = search.getSettledCount();
+        while (!search.isSettled(endNode) && search.settleNext() != null);
+
+        //The path is copied into the caller's workspace, where search() leaves its paths
+        workspace.prepare(nextNodeId);
+        workspace.settledCount = search.getSettledCount() - settledBefore;
+        if (!search.isSettled(endNode))
+            throw new NoSuchElementException("No path from start to end node");
+        for (Node node = endNode; node != null; node = previousNode(node, workspace)) {
+            workspace.dist[node.id] = search.workspace.dist[node.id];
+            workspace.predEdge[node.id] = search.workspace.predEdge[node.id];
+            workspace.reached[node.id] = workspace.epoch;
+            workspace.settled[node.id] = workspace.epoch;
+        }
+        return endNode;
+    }
+
+    /**
+     * Returns a lower bound on the cost of the shortest path from a node to
+     * the end node of a search. Nodes are searched in order of their cost
+     * plus this estimate, so better estimates steer the search towards the
+     * end node (the A* algorithm). The estimate must never be more than the
+     * cost of any path, and must not drop by more than an edge's weight
+     * along that edge. This implementation returns 0, which gives plain
+     * Dijkstra's algorithm.
+     *
+     * @param node    the node to estimate the remaining cost from
+     * @param endNode the end node of the search
+     * @return a lower bound on the cost of a path from node to endNode
+     */
+    protected double estimate(Node node, Node endNode) {
+        return 0;
+    }
+
+    /**
+     * Checks whether estimate() currently returns anything but 0, so that
+     * searches are guided by it. Subclasses that override estimate() must
+     * override this too. Paused searches are only resumed when it is false.
+     *
+     * @return true if searches are guided by estimate(), false otherwise
+     */
+    protected boolean usesEstimate() {
+        return false;
+    }
+
+    /**
+     * Returns the number of nodes that the calling thread's last search
+     * settled before it found its destination, which measures how much of the
+     * graph that search had to explore.
+     *
+     * @return the number of nodes settled by the last search on this thread
+     */
+    public int getLastSettledCount() {
+        return workspaces.get().settledCount;
+    }
+
+    /**
+     * Returns the node before the given one on the path found by the last
+     * search in a workspace.
+     *
+     * @param node      a node on that path
+     * @param workspace the workspace of that search
+     * @return the previous node, or null for the start node
+     */
+    protected Node previousNode(Node node, SearchWorkspace workspace) {
+        Edge edge = workspace.predEdge[node.id];
+        return edge == null ? null : otherEnd(edge, node);
+    }
+
+    /**
+     * Returns the node with the given id at one end of an edge, which is the
+     * edge's successor unless an undirected graph followed it backwards.
+     *
+     * @param edge an edge that a search arrived at a node by
+     * @param id   the id of that node
+     * @return the node of the edge with that id
+     */
+    protected Node reachedBy(Edge edge, int id) {
+        return edge.successor.id == id ? edge.successor : edge.predecessor;
+    }
+
     /**
      * Returns the list of data values from nodes along the shortest path
      * from the node with the provided start value through the node with the
@@ -142,23 +819,18 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @return list of data item from node along this shortest path
      */
     public List<NodeType> shortestPathData(NodeType start, NodeType end) {
-        try {
-            //Finds the nodes connected to end node
-            SearchNode endNode = computeShortestPath(start, end);
-            //Creates a new list to put path into
-            LinkedList<NodeType> shortestPath = new LinkedList<>();
-
-            //While the node is not null, we add its predecessor first into a linked list to keep
-            // track of path
-            while (endNode != null) {
-                shortestPath.addFirst(endNode.node.data);
-                endNode = endNode.predecessor;
-            }
-            return shortestPath;
-            //Catch exceptions from computeShortestPath and throw the same exception
-        }catch (NoSuchElementException e){
-            throw e;
+        SearchWorkspace workspace = workspaces.get();
+        //Finds the end node, or throws NoSuchElementException when there is no path
+        Node endNode = search(start, end, workspace);
+        //Creates a new list to put path into
+        LinkedList<NodeType> shortestPath = new LinkedList<>();
+
+        //While the node is not null, we add its predecessor first into a linked list to keep
+        // track of path
+        for (Node node = endNode; node != null; node = previousNode(node, workspace)) {
+            shortestPath.addFirst(node.data);
         }
+        return shortestPath;
     }
 
     /**
@@ -172,16 +844,110 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @return the cost of the shortest path between these nodes
      */
     public double shortestPathCost(NodeType start, NodeType end) {
-        try {
-            //Find path from start to end node
-            SearchNode endNode = computeShortestPath(start,end);
+        SearchWorkspace workspace = workspaces.get();
+        //Find path from start to end node, or throw NoSuchElementException when there is none
+        Node endNode = search(start, end, workspace);
+
+        //Returns cost of end node - is the total cost to get from start to end
+        return workspace.dist[endNode.id];
+    }
+
+    /**
+     * Returns the shortest path from start to end, with the data of each edge
+     * along it read from the edges that the search traversed, and its total
+     * cost, all from a single search.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the nodes, edges and cost of the shortest path
+     */
+    @Override
+    public GraphPath<NodeType, EdgeType> shortestPath(NodeType start, NodeType end) {
+        SearchWorkspace workspace = workspaces.get();
+        return pathTo(search(start, end, workspace), workspace);
+    }
+
+    /**
+     * Returns the shortest paths from one start node to each of several end
+     * nodes, all found by a single search, which stops once every end node
+     * is settled. This is much faster than searching for each path on its
+     * own when there are many end nodes, since the search settles each node
+     * only once however many paths go through it.
+     *
+     * @param start the data item in the starting node of every path
+     * @param ends  the data items in the destination nodes, which may repeat
+     * @return the shortest path to each end node, in the order of ends, with
+     *         null for end nodes that are not in the graph, are closed, or
+     *         cannot be reached from start
+     * @throws NoSuchElementException when start is not in the graph or is
+     *                                closed
+     */
+    public List<GraphPath<NodeType, EdgeType>> shortestPathsFrom(NodeType start, List<NodeType> ends) {
+        if (!containsNode(start) || nodes.get(start).closed)
+            throw new NoSuchElementException("There is no start node");
+        Node startNode = nodes.get(start);
+        SearchWorkspace workspace = workspaces.get();
+        workspace.prepare(nextNodeId);
+        int remaining = 0;
+        for (NodeType end : ends) {
+            if (!containsNode(end))
+                continue;
+            Node endNode = nodes.get(end);
+            if (!endNode.closed && workspace.pending[endNode.id] != workspace.epoch) {
+                workspace.pending[endNode.id] = workspace.epoch;
+                remaining++;
+            }
+        }
+        workspace.reach(startNode, 0, null);
+        IndexedPriorityQueue priorityQueue = workspace.queue;
+        while (remaining > 0 && !priorityQueue.isEmpty()) {
+            int currentId = priorityQueue.pollMin();
+            Node currentNode = currentId == startNode.id ? startNode
+                    : reachedBy(workspace.predEdge[currentId], currentId);
+            workspace.settle(currentId);
+            if (workspace.pending[currentId] == workspace.epoch) {
+                workspace.pending[currentId] = 0;
+                remaining--;
+            }
+            double currentCost = workspace.dist[currentId];
+            List<Edge> edgesLeaving = currentNode.edgesLeaving;
+            for (int i = 0; i < edgesLeaving.size(); i++) {
+                Edge edge = edgesLeaving.get(i);
+                Node neighbor = otherEnd(edge, currentNode);
+                if (edge.closed || neighbor.closed)
+                    continue;
+                double lowestCost = currentCost + edge.data.doubleValue();
+                if (!workspace.isSettled(neighbor.id) && lowestCost < workspace.distance(neighbor.id))
+                    workspace.reach(neighbor, lowestCost, edge);
+            }
+        }
 
-            //Returns cost of end node - is the total cost to get from start to end
-            return endNode.cost;
-            //Catch exceptions from computeShortestPath and throw the same exception
-        }catch (NoSuchElementException e){
-            throw e;
+        List<GraphPath<NodeType, EdgeType>> paths = new ArrayList<>(ends.size());
+        for (NodeType end : ends) {
+            Node endNode = containsNode(end) ? nodes.get(end) : null;
+            paths.add(endNode != null && workspace.isSettled(endNode.id) ? pathTo(endNode, workspace) : null);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the path to a node that the last search in a workspace found.
+     *
+     * @param endNode   a node settled by that search
+     * @param workspace the workspace of that search
+     * @return the nodes, edges and cost of the path to endNode
+     */
+    protected GraphPath<NodeType, EdgeType> pathTo(Node endNode, SearchWorkspace workspace) {
+        LinkedList<NodeType> pathNodes = new LinkedList<>();
+        LinkedList<EdgeType> pathEdges = new LinkedList<>();
+        pathNodes.addFirst(endNode.data);
+        Node node = endNode;
+        for (Edge edge = workspace.predEdge[node.id]; edge != null; edge = workspace.predEdge[node.id]) {
+            node = otherEnd(edge, node);
+            pathNodes.addFirst(node.data);
+            pathEdges.addFirst(edge.data);
         }
+        return new GraphPath<>(pathNodes, pathEdges, workspace.dist[endNode.id]);
     }
 
     @Test
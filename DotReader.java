@@ -0,0 +1,403 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class reads the airports and flights of a DOT file in a single pass.
+ * The file is read through a buffered channel, and each line is tokenized
+ * directly from its bytes, without creating a String for the line or running
+ * a regular expression on it. Lines are recognized exactly as Backend used to
+ * recognize them with these patterns:
+ *
+ *   airport: ^\s+"(\w+)"\s\[(.*)
+ *   flight:  ^\s+"(\w+)"\s--\s"(\w+)"\s\[miles=(\d+)\];
+ *
+ * and every other line is ignored. Lines may end with \n, \r\n or \r.
+ *
+ * A reader created with several threads splits large files into line-aligned
+ * chunks that are parsed in parallel, while the listener is still called on
+ * the calling thread, in file order.
+ */
+public class DotReader {
+
+    /**
+     * Receives the airports and flights of a file, in the order they appear.
+     */
+    public interface Listener {
+        /**
+         * Called for each airport line
+         * @param airport    the identifier of the airport
+         * @param attributes the rest of the line after the opening [
+         */
+        void airport(String airport, String attributes);
+
+        /**
+         * Called for each flight line
+         * @param from  the identifier of the first airport
+         * @param to    the identifier of the second airport
+         * @param miles the miles of the flight
+         */
+        void flight(String from, String to, int miles);
+    }
+
+    // Initial size of the read buffer, which grows to hold longer lines
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Files are only split into chunks of at least this many bytes
+    protected static final long MIN_CHUNK_BYTES = 1 << 20;
+    // The number of chunks per thread, so that threads finishing early can
+    // take more
+    protected static final int CHUNKS_PER_THREAD = 4;
+
+    // The number of threads that parse chunks of a file
+    private int threads;
+    // The number of lines read by the last call to read()
+    private long lineCount = 0;
+    // The time taken by the last call to read(), in nanoseconds
+    private long readNanos = 0;
+
+    /**
+     * Creates a reader that parses files on the calling thread.
+     */
+    public DotReader() {
+        this(1);
+    }
+
+    /**
+     * Creates a reader that splits files of a few MB or more into line-aligned
+     * chunks, and parses them in parallel.
+     *
+     * @param threads the number of threads that parse chunks
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public DotReader(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("thread count must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * Reads a DOT file and passes its airports and flights to a listener, in
+     * the order they appear in the file, on the calling thread.
+     *
+     * @param filePath the path to the DOT file
+     * @param listener receives each airport and flight
+     * @throws IOException if the file cannot be read
+     */
+    public void read(String filePath, Listener listener) throws IOException {
+        long start = System.nanoTime();
+        lineCount = 0;
+        try (FileInputStream input = new FileInputStream(new File(filePath));
+                FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            if (threads == 1 || size < 2 * MIN_CHUNK_BYTES)
+                lineCount = readRange(channel, 0, size, listener);
+            else
+                lineCount = readChunks(channel, size, listener);
+        }
+        readNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Splits a file into line-aligned chunks and parses them on a fork/join
+     * pool, each into its own buffer of airports and flights. The buffers are
+     * passed on to the listener in file order as soon as each one is ready, so
+     * the listener sees exactly what a single-threaded read would show it.
+     *
+     * @return the number of lines read
+     */
+    private long readChunks(FileChannel channel, long size, Listener listener) throws IOException {
+        int chunkCount = (int) Math.min((long) threads * CHUNKS_PER_THREAD, size / MIN_CHUNK_BYTES);
+        long[] bounds = new long[chunkCount + 1];
+        bounds[chunkCount] = size;
+        for (int i = 1; i < chunkCount; i++)
+            bounds[i] = Math.max(bounds[i - 1], lineStartAtOrAfter(channel, size / chunkCount * i, size));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<Chunk>> chunks = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                chunks.add(pool.submit(() -> {
+                    Chunk chunk = new Chunk();
+                    chunk.lineCount = readRange(channel, from, to, chunk);
+                    return chunk;
+                }));
+            }
+            long lines = 0;
+            for (Future<Chunk> future : chunks) {
+                Chunk chunk = future.get();
+                chunk.replay(listener);
+                lines += chunk.lineCount;
+            }
+            return lines;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading chunks");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the first position at or after a given one where a line starts,
+     * so that a \r\n pair is never split between chunks.
+     *
+     * @return the position where that line starts, or size if none does
+     */
+    private static long lineStartAtOrAfter(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        // a line starts at position if the byte before it ends a line,
+        // unless that byte is the \r of a \r\n pair
+        boolean afterCarriageReturn = false;
+        for (long offset = position - 1; offset < size; ) {
+            window.clear();
+            int read = channel.read(window, offset);
+            if (read < 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (afterCarriageReturn && b != '\n')
+                    return offset + i;
+                afterCarriageReturn = b == '\r';
+                if (b == '\n')
+                    return offset + i + 1;
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the lines between two positions of a file, which must be the
+     * start of a line and either the start of another line or the end of the
+     * file. Reads use explicit positions, so several threads can read ranges
+     * of the same channel at once.
+     *
+     * @return the number of lines read
+     */
+    private static long readRange(FileChannel channel, long from, long to, Listener listener) throws IOException {
+        long lines = 0;
+        long position = from;
+        byte[] bytes = new byte[(int) Math.min(BUFFER_SIZE, Math.max(1, to - from))];
+        // bytes[lineStart..end) holds data read but not yet parsed
+        int lineStart = 0;
+        int end = 0;
+        boolean lastWasCarriageReturn = false;
+        while (position < to) {
+            if (end == bytes.length) {
+                // keep the partial line, growing the buffer if it fills it
+                if (lineStart == 0)
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                else {
+                    System.arraycopy(bytes, lineStart, bytes, 0, end - lineStart);
+                    end -= lineStart;
+                    lineStart = 0;
+                }
+            }
+            int scanStart = end;
+            int length = (int) Math.min(bytes.length - end, to - position);
+            int read = channel.read(ByteBuffer.wrap(bytes, end, length), position);
+            if (read < 0)
+                break;
+            position += read;
+            end += read;
+            for (int i = scanStart; i < end; i++) {
+                byte b = bytes[i];
+                if (b == '\n' || b == '\r') {
+                    // the \n of a \r\n pair ends no new line
+                    if (!(b == '\n' && lastWasCarriageReturn && i == lineStart)) {
+                        parseLine(bytes, lineStart, i, listener);
+                        lines++;
+                    }
+                    lineStart = i + 1;
+                }
+                lastWasCarriageReturn = b == '\r';
+            }
+        }
+        if (lineStart < end) {
+            parseLine(bytes, lineStart, end, listener);
+            lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * The airports and flights of one chunk of a file, kept in the order they
+     * appear until they can be passed on to the real listener.
+     */
+    private static class Chunk implements Listener {
+        // true for each airport and false for each flight, in file order
+        private boolean[] isAirport = new boolean[64];
+        private int eventCount = 0;
+        private List<String> airports = new ArrayList<>();
+        private List<String> attributes = new ArrayList<>();
+        private List<String> flightEnds = new ArrayList<>();
+        private int[] miles = new int[64];
+        private int flightCount = 0;
+        private long lineCount = 0;
+
+        @Override
+        public void airport(String airport, String attributes) {
+            addEvent(true);
+            this.airports.add(airport);
+            this.attributes.add(attributes);
+        }
+
+        @Override
+        public void flight(String from, String to, int miles) {
+            addEvent(false);
+            flightEnds.add(from);
+            flightEnds.add(to);
+            if (flightCount == this.miles.length)
+                this.miles = Arrays.copyOf(this.miles, flightCount * 2);
+            this.miles[flightCount++] = miles;
+        }
+
+        private void addEvent(boolean airport) {
+            if (eventCount == isAirport.length)
+                isAirport = Arrays.copyOf(isAirport, eventCount * 2);
+            isAirport[eventCount++] = airport;
+        }
+
+        // passes the airports and flights on, in the order they were added
+        public void replay(Listener listener) {
+            int airport = 0;
+            int flight = 0;
+            for (int i = 0; i < eventCount; i++) {
+                if (isAirport[i]) {
+                    listener.airport(airports.get(airport), attributes.get(airport));
+                    airport++;
+                } else {
+                    listener.flight(flightEnds.get(2 * flight), flightEnds.get(2 * flight + 1), miles[flight]);
+                    flight++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses one line, and passes it to the listener if it is an airport or
+     * flight line.
+     *
+     * @param bytes    the bytes containing the line
+     * @param start    the index of the first byte of the line
+     * @param end      the index after the last byte of the line, excluding
+     *                 the line terminator
+     * @param listener receives the airport or flight
+     * @throws NumberFormatException if the miles of a flight do not fit in an
+     *                               int, as Integer.parseInt would
+     */
+    public static void parseLine(byte[] bytes, int start, int end, Listener listener) {
+        // ^\s+"(\w+)"\s
+        int i = start;
+        if (i >= end || !isSpace(bytes[i]))
+            return;
+        while (i < end && isSpace(bytes[i]))
+            i++;
+        int nameEnd = quotedWord(bytes, i, end);
+        if (nameEnd < 0 || nameEnd + 2 >= end || !isSpace(bytes[nameEnd + 1]))
+            return;
+        String first = ascii(bytes, i + 1, nameEnd);
+        i = nameEnd + 2;
+        // \[(.*) for an airport
+        if (bytes[i] == '[') {
+            listener.airport(first, new String(bytes, i + 1, end - i - 1, StandardCharsets.UTF_8));
+            return;
+        }
+        // --\s"(\w+)"\s\[miles=(\d+)\]; for a flight
+        if (end - i < 3 || bytes[i] != '-' || bytes[i + 1] != '-' || !isSpace(bytes[i + 2]))
+            return;
+        i += 3;
+        nameEnd = quotedWord(bytes, i, end);
+        if (nameEnd < 0 || nameEnd + 1 >= end || !isSpace(bytes[nameEnd + 1]))
+            return;
+        String second = ascii(bytes, i + 1, nameEnd);
+        i = nameEnd + 2;
+        if (!startsWith(bytes, i, end, "[miles="))
+            return;
+        i += "[miles=".length();
+        int digitsStart = i;
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9')
+            i++;
+        if (i == digitsStart || !startsWith(bytes, i, end, "];"))
+            return;
+        listener.flight(first, second, parseMiles(bytes, digitsStart, i));
+    }
+
+    // returns the index of the closing quote of a "(\w+)" token starting at
+    // start, or -1 if there is none
+    private static int quotedWord(byte[] bytes, int start, int end) {
+        if (start >= end || bytes[start] != '"')
+            return -1;
+        int i = start + 1;
+        while (i < end && isWordCharacter(bytes[i]))
+            i++;
+        if (i == start + 1 || i >= end || bytes[i] != '"')
+            return -1;
+        return i;
+    }
+
+    // the characters matched by \s
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    // the characters matched by \w
+    private static boolean isWordCharacter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_';
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, String prefix) {
+        if (end - start < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (bytes[start + i] != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static String ascii(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int parseMiles(byte[] bytes, int start, int end) {
+        long miles = 0;
+        for (int i = start; i < end; i++) {
+            miles = miles * 10 + (bytes[i] - '0');
+            if (miles > Integer.MAX_VALUE)
+                throw new NumberFormatException("For input string: \""
+                        + ascii(bytes, start, end) + "\"");
+        }
+        return (int) miles;
+    }
+
+    /**
+     * @return the number of lines read by the last call to read()
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the lines per second read by the last call to read()
+     */
+    public double getLinesPerSecond() {
+        return readNanos == 0 ? 0 : lineCount * 1e9 / readNanos;
+    }
+}
@@ -13,7 +13,8 @@ public class Frontend implements FrontendInterface {
     private Scanner scanner;
 
     public static void main(String[] args){
-        Backend backend = new Backend(new DijkstraGraph(new PlaceholderMap()));
+        //route tables for up to a few thousand airports fit in 256MB; larger data is searched
+        Backend backend = new Backend(new AStarGraph<>(new AirportCodeMap<>(), true), 256L * 1024 * 1024);
         Frontend frontend = new Frontend(backend, new Scanner(System.in));
 
         frontend.loadDataFile(backend,new Scanner(System.in));
@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -124,4 +125,28 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
      */
     public double shortestPathCost(NodeType start, NodeType end);
 
+    /**
+     * Returns the shortest path from the node with the provided start value
+     * to the node with the provided end value, including the data of every
+     * edge along it and its total cost. Unlike calling shortestPathData and
+     * shortestPathCost separately, this needs only one search.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the nodes, edges and cost of the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either node is not in the graph
+     */
+    public default GraphPath<NodeType, EdgeType> shortestPath(NodeType start, NodeType end) {
+        List<NodeType> nodes = shortestPathData(start, end);
+        List<EdgeType> edges = new ArrayList<>();
+        double cost = 0;
+        for (int i = 0; i < nodes.size() - 1; i++) {
+            EdgeType edge = getEdge(nodes.get(i), nodes.get(i + 1));
+            edges.add(edge);
+            cost += edge.doubleValue();
+        }
+        return new GraphPath<>(nodes, edges, cost);
+    }
+
 }
@@ -0,0 +1,1311 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class generates large synthetic route networks and measures the
+ * performance of the GraphADT implementations and search engines on them.
+ * Run it with the names of the benchmarks to run as arguments, or with no
+ * arguments to run all of them.
+ */
+public class GraphBenchmark {
+
+    // Bounding box that synthetic airports are placed in (roughly the continental US)
+    private static final double MIN_LATITUDE = 25.0;
+    private static final double MAX_LATITUDE = 49.0;
+    private static final double MIN_LONGITUDE = -124.0;
+    private static final double MAX_LONGITUDE = -67.0;
+
+    public static void main(String[] args) {
+        if (selected(args, "csr"))
+            benchmarkCSR();
+        if (selected(args, "queues"))
+            benchmarkQueues();
+        if (selected(args, "allocation"))
+            benchmarkAllocation();
+        if (selected(args, "route"))
+            benchmarkRoute();
+        if (selected(args, "bidirectional"))
+            benchmarkBidirectional();
+        if (selected(args, "astar"))
+            benchmarkAStar();
+        if (selected(args, "landmarks"))
+            benchmarkLandmarks();
+        if (selected(args, "ch"))
+            benchmarkContractionHierarchy();
+        if (selected(args, "allpairs"))
+            benchmarkAllPairs();
+        if (selected(args, "loader"))
+            benchmarkLoader();
+        if (selected(args, "chunks"))
+            benchmarkChunkedLoader();
+        if (selected(args, "snapshot"))
+            benchmarkSnapshot();
+        if (selected(args, "maps"))
+            benchmarkMaps();
+        if (selected(args, "codes"))
+            benchmarkAirportCodes();
+        if (selected(args, "hubs"))
+            benchmarkHubs();
+        if (selected(args, "builder"))
+            benchmarkBuilder();
+        if (selected(args, "undirected"))
+            benchmarkUndirected();
+        if (selected(args, "closures"))
+            benchmarkClosures();
+        if (selected(args, "versions"))
+            benchmarkVersions();
+        if (selected(args, "batch"))
+            benchmarkBatch();
+        if (selected(args, "cache"))
+            benchmarkCache();
+        if (selected(args, "resume"))
+            benchmarkResume();
+        if (selected(args, "bounded"))
+            benchmarkBounded();
+        if (selected(args, "destinations"))
+            benchmarkDestinations();
+    }
+
+    /**
+     * Checks whether a benchmark was requested on the command line
+     * @param args the command line arguments
+     * @param name the name of the benchmark
+     * @return true if args is empty or contains name
+     */
+    private static boolean selected(String[] args, String name) {
+        if (args.length == 0)
+            return true;
+        for (String arg : args)
+            if (arg.equals(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns unique airport-like codes for a synthetic network: three uppercase letters
+     * for the first 17576 airports, and four letters after that
+     * @param count the number of airports
+     * @return array of count distinct codes
+     */
+    public static String[] airportNames(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            int value = i < 26 * 26 * 26 ? i : i - 26 * 26 * 26;
+            int length = i < 26 * 26 * 26 ? 3 : 4;
+            char[] code = new char[length];
+            for (int j = length - 1; j >= 0; j--) {
+                code[j] = (char) ('A' + value % 26);
+                value /= 26;
+            }
+            names[i] = new String(code);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the latitude and longitude of each airport in a synthetic network. Airports
+     * are placed on a jittered grid, so that neighboring ids are close to each other.
+     * @param count the number of airports
+     * @param seed  seed for the random jitter
+     * @return array of {latitude, longitude} pairs, indexed like airportNames(count)
+     */
+    public static double[][] airportCoordinates(int count, long seed) {
+        Random random = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(count));
+        double[][] coordinates = new double[count][];
+        for (int i = 0; i < count; i++) {
+            double row = i / side + random.nextDouble() * 0.8;
+            double column = i % side + random.nextDouble() * 0.8;
+            coordinates[i] = new double[] {
+                    MIN_LATITUDE + row * (MAX_LATITUDE - MIN_LATITUDE) / side,
+                    MIN_LONGITUDE + column * (MAX_LONGITUDE - MIN_LONGITUDE) / side};
+        }
+        return coordinates;
+    }
+
+    /**
+     * Builds a connected synthetic route network the same way Backend builds one from a
+     * DOT file: every route is inserted in both directions with integer miles. Each airport
+     * has routes to its grid neighbors and to a few random nearby airports, and every 50th
+     * airport is a hub with long-haul routes to other hubs. Route miles are the great-circle
+     * distance between the airports rounded up.
+     * @param count  the number of airports
+     * @param degree the approximate number of routes per airport
+     * @param seed   seed for the random placement and routes
+     * @return the synthetic network
+     */
+    public static DijkstraGraph<String, Integer> syntheticNetwork(int count, int degree, long seed) {
+        return fillNetwork(new DijkstraGraph<>(new PlaceholderMap<>()), count, degree, seed);
+    }
+
+    /**
+     * Generates the undirected routes of the synthetic network described in
+     * syntheticNetwork()
+     * @return array of {from, to, miles} routes between airport indexes
+     */
+    public static int[][] syntheticRoutes(int count, int degree, long seed) {
+        double[][] coordinates = airportCoordinates(count, seed);
+        Random random = new Random(seed + 1);
+        int side = (int) Math.ceil(Math.sqrt(count));
+        List<int[]> routes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // grid neighbors to the right and below keep the network connected
+            if ((i + 1) % side != 0 && i + 1 < count)
+                routes.add(route(coordinates, i, i + 1));
+            if (i + side < count)
+                routes.add(route(coordinates, i, i + side));
+            // a few random routes to airports within three grid cells
+            for (int j = 2; j < degree; j += 2) {
+                int row = i / side + random.nextInt(7) - 3;
+                int column = i % side + random.nextInt(7) - 3;
+                int other = row * side + column;
+                if (row >= 0 && column >= 0 && column < side && other < count && other > i)
+                    routes.add(route(coordinates, i, other));
+            }
+            // long-haul routes between hubs
+            if (i % 50 == 0)
+                for (int j = 0; j < 5; j++) {
+                    int other = random.nextInt((count + 49) / 50) * 50;
+                    if (other > i && other < count)
+                        routes.add(route(coordinates, i, other));
+                }
+        }
+        return routes.toArray(new int[0][]);
+    }
+
+    private static int[] route(double[][] coordinates, int from, int to) {
+        int miles = (int) Math.ceil(AStarGraph.greatCircleMiles(
+                Math.toRadians(coordinates[from][0]), Math.toRadians(coordinates[from][1]),
+                Math.toRadians(coordinates[to][0]), Math.toRadians(coordinates[to][1])));
+        return new int[] {from, to, Math.max(1, miles)};
+    }
+
+    /**
+     * Writes a synthetic network to a DOT file in the same format as the flight data that
+     * Backend.readDataFromFile reads: one line per airport with its coordinates, then one line
+     * per route.
+     * @param path   the file to write
+     * @param count  the number of airports
+     * @param degree the approximate number of routes per airport
+     * @param seed   seed for the random placement and routes
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeDotFile(String path, int count, int degree, long seed) throws IOException {
+        String[] names = airportNames(count);
+        double[][] coordinates = airportCoordinates(count, seed);
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(path)))) {
+            out.println("graph flights {");
+            for (int i = 0; i < count; i++)
+                out.printf("    \"%s\" [label=\"%s\", lat=%.6f, lon=%.6f];%n", names[i], names[i],
+                        coordinates[i][0], coordinates[i][1]);
+            for (int[] route : syntheticRoutes(count, degree, seed))
+                out.println("    \"" + names[route[0]] + "\" -- \"" + names[route[1]]
+                        + "\" [miles=" + route[2] + "];");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Returns random (start, end) query pairs over the airports of a synthetic network
+     */
+    private static String[][] randomQueries(int airportCount, int queryCount, long seed) {
+        String[] names = airportNames(airportCount);
+        Random random = new Random(seed);
+        String[][] queries = new String[queryCount][];
+        for (int i = 0; i < queryCount; i++)
+            queries[i] = new String[] {names[random.nextInt(airportCount)],
+                    names[random.nextInt(airportCount)]};
+        return queries;
+    }
+
+    /**
+     * Times shortestPathCost over a list of queries, after running them once to warm up
+     * @return the number of queries answered per second
+     */
+    private static double queriesPerSecond(GraphADT<String, Integer> graph, String[][] queries) {
+        double checksum = 0;
+        for (String[] query : queries)
+            checksum += graph.shortestPathCost(query[0], query[1]);
+        long start = System.nanoTime();
+        for (String[] query : queries)
+            checksum -= graph.shortestPathCost(query[0], query[1]);
+        long elapsed = System.nanoTime() - start;
+        if (checksum != 0)
+            throw new IllegalStateException("inconsistent results between runs");
+        return queries.length / (elapsed / 1e9);
+    }
+
+    /**
+     * Compares query throughput of DijkstraGraph and CSRGraph on a large synthetic network
+     */
+    public static void benchmarkCSR() {
+        int count = 50000;
+        DijkstraGraph<String, Integer> graph = syntheticNetwork(count, 8, 42);
+        long start = System.nanoTime();
+        CSRGraph<String, Integer> csr = new CSRGraph<>(graph);
+        long buildNanos = System.nanoTime() - start;
+        String[][] queries = randomQueries(count, 200, 7);
+
+        System.out.println("CSR benchmark: " + graph.getNodeCount() + " airports, "
+                + graph.getEdgeCount() + " directed edges, " + queries.length + " random queries");
+        System.out.printf("  CSRGraph build time:  %.1f ms%n", buildNanos / 1e6);
+        System.out.printf("  DijkstraGraph:        %.1f queries/s%n", queriesPerSecond(graph, queries));
+        System.out.printf("  CSRGraph:             %.1f queries/s%n", queriesPerSecond(csr, queries));
+    }
+
+    /**
+     * Wraps a priority queue to record the largest size it reaches and the number of
+     * insertOrDecrease calls made on it
+     */
+    private static class CountingQueue implements IndexedPriorityQueue {
+        private final IndexedPriorityQueue queue;
+        private long peakSize = 0;
+        private long inserts = 0;
+
+        private CountingQueue(IndexedPriorityQueue queue) {
+            this.queue = queue;
+        }
+
+        public void reset(int capacity) { queue.reset(capacity); }
+        public boolean isEmpty() { return queue.isEmpty(); }
+        public int size() { return queue.size(); }
+        public boolean contains(int item) { return queue.contains(item); }
+        public double minPriority() { return queue.minPriority(); }
+        public int pollMin() { return queue.pollMin(); }
+        public void insertOrDecrease(int item, double priority) {
+            queue.insertOrDecrease(item, priority);
+            peakSize = Math.max(peakSize, queue.size());
+            inserts++;
+        }
+    }
+
+    /**
+     * Compares query latency and queue size of DijkstraGraph with each kind of priority queue
+     */
+    public static void benchmarkQueues() {
+        int count = 50000;
+        int[][] routes = syntheticRoutes(count, 8, 42);
+        String[] names = airportNames(count);
+        String[][] queries = randomQueries(count, 100, 7);
+        String[] labels = {"4-ary heap", "binary heap", "pairing heap", "radix heap"};
+        List<Supplier<IndexedPriorityQueue>> factories =
+                List.of(DaryHeap::new, () -> new DaryHeap(2), PairingHeap::new, RadixHeap::new);
+
+        System.out.println("Priority queue benchmark: " + count + " airports, " + queries.length
+                + " random queries");
+        for (int i = 0; i < labels.length; i++) {
+            List<CountingQueue> created = new ArrayList<>();
+            Supplier<IndexedPriorityQueue> factory = factories.get(i);
+            DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>(), () -> {
+                CountingQueue queue = new CountingQueue(factory.get());
+                created.add(queue);
+                return queue;
+            });
+            for (String name : names)
+                graph.insertNode(name);
+            for (int[] route : routes) {
+                graph.insertEdge(names[route[0]], names[route[1]], route[2]);
+                graph.insertEdge(names[route[1]], names[route[0]], route[2]);
+            }
+            double rate = queriesPerSecond(graph, queries);
+            long peak = 0;
+            long inserts = 0;
+            for (CountingQueue queue : created) {
+                peak = Math.max(peak, queue.peakSize);
+                inserts += queue.inserts;
+            }
+            System.out.printf("  %-13s %7.2f ms/query, peak queue size %d, %d insert/decrease calls per query%n",
+                    labels[i], 1000 / rate, peak, inserts / (2 * queries.length));
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the calling thread, or -1 if the JVM
+     * cannot measure it
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        return -1;
+    }
+
+    /**
+     * Returns the total number of garbage collections so far, over all collectors
+     */
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    /**
+     * Measures the bytes allocated per query and the garbage collections caused by a long run
+     * of shortestPathCost and shortestPathData queries on DijkstraGraph
+     */
+    public static void benchmarkAllocation() {
+        int count = 50000;
+        DijkstraGraph<String, Integer> graph = syntheticNetwork(count, 8, 42);
+        String[][] queries = randomQueries(count, 300, 11);
+        queriesPerSecond(graph, queries); // warm up
+
+        System.out.println("Allocation benchmark: " + count + " airports, " + queries.length
+                + " random queries");
+        long collections = collectionCount();
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (String[] query : queries)
+            graph.shortestPathCost(query[0], query[1]);
+        long costBytes = allocatedBytes() - bytes;
+        bytes = allocatedBytes();
+        long pathNodes = 0;
+        for (String[] query : queries)
+            pathNodes += graph.shortestPathData(query[0], query[1]).size();
+        long dataBytes = allocatedBytes() - bytes;
+        long elapsed = System.nanoTime() - start;
+        long allocationRate = (long) ((costBytes + dataBytes) / (elapsed / 1e9));
+        System.out.printf("  shortestPathCost: %d bytes/query%n", costBytes / queries.length);
+        System.out.printf("  shortestPathData: %d bytes/query (average path %.1f airports)%n",
+                dataBytes / queries.length, (double) pathNodes / queries.length);
+        System.out.printf("  allocation rate:  %.1f MB/s, %d garbage collections%n",
+                allocationRate / 1e6, collectionCount() - collections);
+    }
+
+    /**
+     * Compares Backend.getShortestRoute, which now runs one search per route, with the previous
+     * approach of one search for the route, one for its cost and one per leg
+     */
+    public static void benchmarkRoute() {
+        int count = 20000;
+        String[][] queries = randomQueries(count, 100, 13);
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        Backend backend = new Backend(graph);
+        try {
+            File file = File.createTempFile("synthetic", ".dot");
+            file.deleteOnExit();
+            writeDotFile(file.getPath(), count, 8, 42);
+            backend.readDataFromFile(file.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long legs = 0;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long start = System.nanoTime();
+            for (String[] query : queries) {
+                List<String> route = graph.shortestPathData(query[0], query[1]);
+                graph.shortestPathCost(query[0], query[1]);
+                for (int i = 0; i < route.size() - 1; i++)
+                    graph.shortestPathCost(route.get(i), route.get(i + 1));
+                legs += route.size() - 1;
+            }
+            long perLeg = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String[] query : queries)
+                backend.getShortestRoute(query[0], query[1]);
+            long singlePass = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.println("Route benchmark: " + count + " airports, " + queries.length
+                        + " random routes averaging " + legs / (2 * queries.length) + " legs");
+                System.out.printf("  search per leg:   %.2f ms/route%n", perLeg / 1e6 / queries.length);
+                System.out.printf("  single search:    %.2f ms/route%n", singlePass / 1e6 / queries.length);
+            }
+        }
+    }
+
+    /**
+     * Returns query pairs between airports in opposite corners of a synthetic network, which
+     * are the longest routes in it
+     */
+    private static String[][] longHaulQueries(int airportCount, int queryCount, long seed) {
+        String[] names = airportNames(airportCount);
+        int side = (int) Math.ceil(Math.sqrt(airportCount));
+        int corner = Math.max(1, side / 10);
+        Random random = new Random(seed);
+        String[][] queries = new String[queryCount][];
+        for (int i = 0; i < queryCount; i++) {
+            int start = random.nextInt(corner) * side + random.nextInt(corner);
+            int end = (airportCount - 1) - (random.nextInt(corner) * side + random.nextInt(corner));
+            queries[i] = new String[] {names[start], names[end]};
+        }
+        return queries;
+    }
+
+    /**
+     * Runs queries on a graph and returns the average number of nodes settled per query
+     */
+    private static double averageSettled(DijkstraGraph<String, Integer> graph, String[][] queries) {
+        long settled = 0;
+        for (String[] query : queries) {
+            graph.shortestPathCost(query[0], query[1]);
+            settled += graph.getLastSettledCount();
+        }
+        return (double) settled / queries.length;
+    }
+
+    /**
+     * Inserts the airports and routes of a synthetic network into a graph, inserting each route
+     * in both directions
+     * @return the graph
+     */
+    private static <G extends GraphADT<String, Integer>> G fillNetwork(G graph, int count, int degree,
+            long seed) {
+        String[] names = airportNames(count);
+        for (String name : names)
+            graph.insertNode(name);
+        for (int[] route : syntheticRoutes(count, degree, seed)) {
+            graph.insertEdge(names[route[0]], names[route[1]], route[2]);
+            graph.insertEdge(names[route[1]], names[route[0]], route[2]);
+        }
+        return graph;
+    }
+
+    /**
+     * Compares the nodes settled and query rate of forward and bidirectional Dijkstra, on random
+     * and on long-haul queries
+     */
+    public static void benchmarkBidirectional() {
+        int count = 50000;
+        DijkstraGraph<String, Integer> forward = syntheticNetwork(count, 8, 42);
+        BidirectionalDijkstraGraph<String, Integer> bidirectional =
+                fillNetwork(new BidirectionalDijkstraGraph<>(new PlaceholderMap<>()), count, 8, 42);
+        String[][] random = randomQueries(count, 200, 7);
+        String[][] longHaul = longHaulQueries(count, 200, 8);
+
+        System.out.println("Bidirectional benchmark: " + count + " airports, 200 queries of each kind");
+        System.out.printf("  random queries:    forward %.0f settled, %.1f q/s; bidirectional %.0f settled, %.1f q/s%n",
+                averageSettled(forward, random), queriesPerSecond(forward, random),
+                averageSettled(bidirectional, random), queriesPerSecond(bidirectional, random));
+        System.out.printf("  long-haul queries: forward %.0f settled, %.1f q/s; bidirectional %.0f settled, %.1f q/s%n",
+                averageSettled(forward, longHaul), queriesPerSecond(forward, longHaul),
+                averageSettled(bidirectional, longHaul), queriesPerSecond(bidirectional, longHaul));
+    }
+
+    /**
+     * Runs queries on a graph, once to warm up and then timing each one
+     * @return the sorted latency of each query in nanoseconds
+     */
+    private static long[] latencies(GraphADT<String, Integer> graph, String[][] queries) {
+        for (String[] query : queries)
+            graph.shortestPathCost(query[0], query[1]);
+        long[] latencies = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            long start = System.nanoTime();
+            graph.shortestPathCost(queries[i][0], queries[i][1]);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /**
+     * Formats the 50th and 99th percentiles of sorted latencies
+     */
+    private static String percentiles(long[] sorted) {
+        return String.format("p50 %.2f ms, p99 %.2f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * 0.99) - 1)] / 1e6);
+    }
+
+    /**
+     * Compares settled nodes and latency percentiles of Dijkstra and A* on cross-network queries
+     */
+    public static void benchmarkAStar() {
+        int count = 50000;
+        DijkstraGraph<String, Integer> dijkstra = syntheticNetwork(count, 8, 42);
+        AStarGraph<String, Integer> aStar = fillNetwork(new AStarGraph<>(new PlaceholderMap<>()), count, 8, 42);
+        String[] names = airportNames(count);
+        double[][] coordinates = airportCoordinates(count, 42);
+        for (int i = 0; i < count; i++)
+            aStar.setCoordinates(names[i], coordinates[i][0], coordinates[i][1]);
+        String[][] longHaul = longHaulQueries(count, 300, 8);
+        String[][] random = randomQueries(count, 300, 7);
+
+        System.out.println("A* benchmark: " + count + " airports, 300 queries of each kind");
+        System.out.printf("  cross-network Dijkstra: %.0f settled, %s%n", averageSettled(dijkstra, longHaul),
+                percentiles(latencies(dijkstra, longHaul)));
+        System.out.printf("  cross-network A*:       %.0f settled, %s%n", averageSettled(aStar, longHaul),
+                percentiles(latencies(aStar, longHaul)));
+        System.out.printf("  random Dijkstra:        %.0f settled, %s%n", averageSettled(dijkstra, random),
+                percentiles(latencies(dijkstra, random)));
+        System.out.printf("  random A*:              %.0f settled, %s%n", averageSettled(aStar, random),
+                percentiles(latencies(aStar, random)));
+    }
+
+    /**
+     * Measures landmark preprocessing time and memory, and the settled nodes and latency of ALT
+     * queries, for increasing numbers of landmarks
+     */
+    public static void benchmarkLandmarks() {
+        int count = 50000;
+        DijkstraGraph<String, Integer> dijkstra = syntheticNetwork(count, 8, 42);
+        String[][] random = randomQueries(count, 300, 7);
+        System.out.println("Landmark benchmark: " + count + " airports, " + random.length + " random queries");
+        System.out.printf("  Dijkstra:      %.0f settled, %s%n", averageSettled(dijkstra, random),
+                percentiles(latencies(dijkstra, random)));
+        for (int landmarks : new int[] {4, 8, 16}) {
+            LandmarkGraph<String, Integer> graph =
+                    fillNetwork(new LandmarkGraph<>(new PlaceholderMap<>(), landmarks), count, 8, 42);
+            graph.preprocess();
+            System.out.printf("  %2d landmarks:  %.0f settled, %s, preprocessing %.0f ms, %d KB per landmark%n",
+                    landmarks, averageSettled(graph, random), percentiles(latencies(graph, random)),
+                    graph.getPreprocessingMillis(), graph.getBytesPerLandmark() / 1024);
+        }
+    }
+
+    /**
+     * Measures contraction hierarchy preprocessing time and shortcut count, and compares the
+     * settled nodes and latency of its queries with DijkstraGraph
+     */
+    public static void benchmarkContractionHierarchy() {
+        for (int count : new int[] {2000, 5000, 10000}) {
+            DijkstraGraph<String, Integer> dijkstra = syntheticNetwork(count, 8, 42);
+            ContractionHierarchyGraph<String, Integer> hierarchy =
+                    fillNetwork(new ContractionHierarchyGraph<>(new PlaceholderMap<>()), count, 8, 42);
+            hierarchy.preprocess();
+            String[][] random = randomQueries(count, 300, 7);
+            long[] dijkstraLatencies = latencies(dijkstra, random);
+            long[] hierarchyLatencies = latencies(hierarchy, random);
+            System.out.println("Contraction hierarchy benchmark: " + count + " airports, "
+                    + dijkstra.getEdgeCount() + " edges, " + random.length + " random queries");
+            System.out.printf("  preprocessing %.0f ms, %d shortcuts%n", hierarchy.getPreprocessingMillis(),
+                    hierarchy.getShortcutCount());
+            System.out.printf("  Dijkstra: %.0f settled, %s, %.1f q/s%n", averageSettled(dijkstra, random),
+                    percentiles(dijkstraLatencies), queriesPerSecond(dijkstra, random));
+            System.out.printf("  CH:       %.0f settled, %s, %.1f q/s%n", averageSettled(hierarchy, random),
+                    percentiles(hierarchyLatencies), queriesPerSecond(hierarchy, random));
+            System.out.printf("  speedup at p50: %.1fx%n", (double) dijkstraLatencies[dijkstraLatencies.length / 2]
+                    / hierarchyLatencies[hierarchyLatencies.length / 2]);
+        }
+    }
+
+    /**
+     * Compares the time to compute all-pairs tables with blocked Floyd-Warshall and with Dijkstra
+     * from every node, on sparse and denser networks, and the latency of table lookups against
+     * searching with DijkstraGraph
+     */
+    public static void benchmarkAllPairs() {
+        System.out.println("All-pairs benchmark: " + Runtime.getRuntime().availableProcessors() + " cores");
+        for (int count : new int[] {1000, 2000, 4000}) {
+            for (int degree : new int[] {8, 40}) {
+                DijkstraGraph<String, Integer> dijkstra = syntheticNetwork(count, degree, 42);
+                AllPairsGraph<String, Integer> floydWarshall = new AllPairsGraph<>(dijkstra, true);
+                AllPairsGraph<String, Integer> perSource = new AllPairsGraph<>(dijkstra, false);
+                System.out.printf("  %d airports, %d edges, %d MB tables: Floyd-Warshall %.0f ms, "
+                        + "Dijkstra per source %.0f ms, automatic choice %s%n", count, dijkstra.getEdgeCount(),
+                        AllPairsGraph.tableBytes(count) >> 20, floydWarshall.getComputeMillis(),
+                        perSource.getComputeMillis(),
+                        AllPairsGraph.isDense(count, dijkstra.getEdgeCount()) ? "Floyd-Warshall" : "Dijkstra");
+                if (degree == 8) {
+                    String[][] random = randomQueries(count, 1000, 7);
+                    long[] searched = routeLatencies(dijkstra, random);
+                    long[] looked = routeLatencies(perSource, random);
+                    System.out.printf("    routes: Dijkstra p50 %.1f us, p99 %.1f us; tables p50 %.1f us, p99 %.1f us%n",
+                            searched[searched.length / 2] / 1e3, searched[searched.length * 99 / 100] / 1e3,
+                            looked[looked.length / 2] / 1e3, looked[looked.length * 99 / 100] / 1e3);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds whole routes with GraphADT.shortestPath, as Backend does, once to warm up and then
+     * timing each one
+     * @return the sorted latency of each query in nanoseconds
+     */
+    private static long[] routeLatencies(GraphADT<String, Integer> graph, String[][] queries) {
+        for (String[] query : queries)
+            graph.shortestPath(query[0], query[1]);
+        long[] latencies = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            long start = System.nanoTime();
+            graph.shortestPath(queries[i][0], queries[i][1]);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /**
+     * Compares the lines per second of the original two Scanner and regex passes with the
+     * single-pass DotReader, both for parsing alone and for loading a Backend
+     */
+    public static void benchmarkLoader() {
+        int count = 50000;
+        try {
+            File file = File.createTempFile("loader", ".dot");
+            file.deleteOnExit();
+            writeDotFile(file.getPath(), count, 8, 42);
+            DotReader reader = new DotReader();
+            DotReader.Listener ignore = new DotReader.Listener() {
+                public void airport(String airport, String attributes) {}
+                public void flight(String from, String to, int miles) {}
+            };
+            for (int i = 0; i < 3; i++) {
+                // warm up both parsers
+                twoPassParse(file);
+                reader.read(file.getPath(), ignore);
+            }
+            long start = System.nanoTime();
+            long lines = twoPassParse(file);
+            double regexRate = lines * 1e9 / (System.nanoTime() - start);
+            reader.read(file.getPath(), ignore);
+            System.out.println("Loader benchmark: " + count + " airports, " + lines + " lines, "
+                    + file.length() / 1024 + " KB");
+            System.out.printf("  parsing only:     two regex passes %.0f lines/s, single pass %.0f lines/s%n",
+                    regexRate, reader.getLinesPerSecond());
+            start = System.nanoTime();
+            Backend backend = new Backend(new DijkstraGraph<>(new PlaceholderMap<>()));
+            backend.readDataFromFile(file.getPath());
+            System.out.printf("  loading Backend:  %.0f lines/s, %.0f ms%n", backend.getLinesPerSecond(),
+                    (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses a DOT file the way Backend originally did, with two Scanner passes running a regex on
+     * every line, without building a graph
+     * @return the number of lines in the file
+     */
+    private static long twoPassParse(File file) throws IOException {
+        long lines = 0;
+        Scanner scanner = new Scanner(file);
+        Pattern pattern = Pattern.compile("^\\s+\"(\\w+)\"\\s\\[(.*)");
+        while (scanner.hasNextLine()) {
+            Matcher matcher = pattern.matcher(scanner.nextLine());
+            if (matcher.find())
+                matcher.group(1);
+            lines++;
+        }
+        scanner = new Scanner(file);
+        pattern = Pattern.compile("^\\s+\"(\\w+)\"\\s--\\s\"(\\w+)\"\\s\\[miles=(\\d+)\\];");
+        while (scanner.hasNextLine()) {
+            Matcher matcher = pattern.matcher(scanner.nextLine());
+            if (matcher.find()) {
+                // the miles were parsed once for each direction and once for the total
+                for (int i = 0; i < 3; i++)
+                    Integer.parseInt(matcher.group(3));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Measures the throughput of reading a large DOT file in parallel chunks at 1, 2, 4 and 8
+     * threads, both for parsing alone and for loading the airports and flights into a graph
+     */
+    public static void benchmarkChunkedLoader() {
+        int count = 300000;
+        try {
+            File file = File.createTempFile("chunks", ".dot");
+            file.deleteOnExit();
+            writeDotFile(file.getPath(), count, 8, 42);
+            System.out.println("Chunked loader benchmark: " + count + " airports, " + file.length() / (1 << 20)
+                    + " MB, " + Runtime.getRuntime().availableProcessors() + " cores");
+            DotReader.Listener ignore = new DotReader.Listener() {
+                public void airport(String airport, String attributes) {}
+                public void flight(String from, String to, int miles) {}
+            };
+            for (int threads : new int[] {1, 2, 4, 8}) {
+                DotReader reader = new DotReader(threads);
+                for (int i = 0; i < 3; i++)
+                    reader.read(file.getPath(), ignore); // warm up
+                reader.read(file.getPath(), ignore);
+                double parseRate = reader.getLinesPerSecond();
+                DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+                reader.read(file.getPath(), new DotReader.Listener() {
+                    public void airport(String airport, String attributes) {
+                        graph.insertNode(airport);
+                    }
+
+                    public void flight(String from, String to, int miles) {
+                        graph.insertEdge(from, to, miles);
+                        graph.insertEdge(to, from, miles);
+                    }
+                });
+                System.out.printf("  %d threads: parsing %.2fM lines/s, loading a graph %.2fM lines/s%n", threads,
+                        parseRate / 1e6, reader.getLinesPerSecond() / 1e6);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compares the startup time of loading a Backend from a large DOT file and from a binary
+     * snapshot of it
+     */
+    public static void benchmarkSnapshot() {
+        int count = 200000;
+        try {
+            File file = File.createTempFile("startup", ".dot");
+            File snapshot = File.createTempFile("startup", ".bin");
+            file.deleteOnExit();
+            snapshot.deleteOnExit();
+            writeDotFile(file.getPath(), count, 8, 42);
+            Backend backend = new Backend(new AStarGraph<>(new PlaceholderMap<>()));
+            backend.readDataFromFile(file.getPath());
+            long start = System.nanoTime();
+            backend.writeSnapshot(snapshot.getPath());
+            double writeMillis = (System.nanoTime() - start) / 1e6;
+            System.out.println("Snapshot benchmark: " + count + " airports, DOT file " + file.length() / (1 << 20)
+                    + " MB, snapshot " + snapshot.length() / (1 << 20) + " MB, written in "
+                    + Math.round(writeMillis) + " ms");
+            for (int i = 0; i < 3; i++) {
+                start = System.nanoTime();
+                new Backend(new AStarGraph<>(new PlaceholderMap<>())).readDataFromFile(file.getPath());
+                double dotMillis = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                boolean loaded = new Backend(new AStarGraph<>(new PlaceholderMap<>()))
+                        .readDataFromSnapshot(snapshot.getPath(), file.getPath());
+                double snapshotMillis = (System.nanoTime() - start) / 1e6;
+                System.out.printf("  run %d: DOT %.0f ms, snapshot %.0f ms%s%n", i + 1, dotMillis, snapshotMillis,
+                        loaded ? "" : " (fell back to DOT)");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compares the time per put, get, missing containsKey and remove of OpenAddressingMap and
+     * PlaceholderMap on airport names, and the time to build a route network on each of them
+     */
+    public static void benchmarkMaps() {
+        int count = 400000;
+        String[] names = airportNames(count);
+        String[] missing = new String[count];
+        for (int i = 0; i < count; i++)
+            missing[i] = names[i] + "X";
+        // names in a random order, for lookups that do not follow the insertion order
+        String[] shuffled = names.clone();
+        Random random = new Random(3);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        List<String> labels = List.of("PlaceholderMap", "OpenAddressingMap", "pre-sized");
+        List<Supplier<MapADT<String, Integer>>> factories = List.of(PlaceholderMap::new,
+                OpenAddressingMap::new, () -> new OpenAddressingMap<>(count));
+
+        System.out.println("Map benchmark: " + count + " airport names, best of 5 runs, ns per operation");
+        for (int i = 0; i < labels.size(); i++) {
+            double[] best = new double[5];
+            Arrays.fill(best, Double.MAX_VALUE);
+            long found = 0;
+            for (int run = 0; run < 5; run++) {
+                MapADT<String, Integer> map = factories.get(i).get();
+                long start = System.nanoTime();
+                for (int j = 0; j < count; j++)
+                    map.put(names[j], j);
+                long put = System.nanoTime();
+                for (String name : names)
+                    found += map.get(name);
+                long get = System.nanoTime();
+                for (String name : shuffled)
+                    found += map.get(name);
+                long shuffledGet = System.nanoTime();
+                for (String name : missing)
+                    if (map.containsKey(name))
+                        found++;
+                long miss = System.nanoTime();
+                for (String name : names)
+                    found += map.remove(name);
+                long remove = System.nanoTime();
+                best[0] = Math.min(best[0], (double) (put - start) / count);
+                best[1] = Math.min(best[1], (double) (get - put) / count);
+                best[2] = Math.min(best[2], (double) (shuffledGet - get) / count);
+                best[3] = Math.min(best[3], (double) (miss - shuffledGet) / count);
+                best[4] = Math.min(best[4], (double) (remove - miss) / count);
+            }
+            System.out.printf("  %-18s put %5.1f, get in order %5.1f, get shuffled %5.1f, missing %5.1f, "
+                    + "remove %5.1f (checksum %d)%n", labels.get(i), best[0], best[1], best[2], best[3], best[4],
+                    found);
+        }
+
+        int airports = 200000;
+        for (int i = 0; i < 2; i++) {
+            double bestMillis = Double.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                fillNetwork(i == 0 ? new DijkstraGraph<>(new PlaceholderMap<>())
+                        : new DijkstraGraph<>(new OpenAddressingMap<>()), airports, 8, 42);
+                bestMillis = Math.min(bestMillis, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("  building a %d airport network on %s: %.0f ms%n", airports, labels.get(i),
+                    bestMillis);
+        }
+    }
+
+    /**
+     * Compares the time to look up airport codes in each node map, and the time of getEdge()
+     * calls and the rate of shortest path queries on a network built on each of them
+     */
+    public static void benchmarkAirportCodes() {
+        int count = 200000;
+        String[] names = airportNames(count);
+        int[][] routes = syntheticRoutes(count, 8, 42);
+        int[] order = new int[routes.length];
+        Random random = new Random(3);
+        for (int i = 0; i < order.length; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        String[][] queries = randomQueries(count, 100, 7);
+        List<String> labels = List.of("PlaceholderMap", "OpenAddressingMap", "AirportCodeMap");
+
+        System.out.println("Airport code benchmark: " + count + " airports, " + routes.length
+                + " routes looked up in random order, best of 3 runs");
+        for (int i = 0; i < labels.size(); i++) {
+            DijkstraGraph<String, Integer> graph = fillNetwork(i == 0 ? new DijkstraGraph<>(new PlaceholderMap<>())
+                    : i == 1 ? new DijkstraGraph<>(new OpenAddressingMap<>())
+                    : new DijkstraGraph<>(new AirportCodeMap<>()), count, 8, 42);
+            double lookupNanos = Double.MAX_VALUE;
+            double edgeNanos = Double.MAX_VALUE;
+            long found = 0;
+            for (int run = 0; run < 3; run++) {
+                // codes copied into new Strings, as if they had just been read from a request,
+                // so that no hash codes are cached yet
+                String[] from = new String[order.length];
+                String[] to = new String[order.length];
+                for (int j = 0; j < order.length; j++) {
+                    from[j] = new String(names[routes[order[j]][0]].toCharArray());
+                    to[j] = new String(names[routes[order[j]][1]].toCharArray());
+                }
+                long start = System.nanoTime();
+                for (String name : from)
+                    if (graph.containsNode(name))
+                        found++;
+                lookupNanos = Math.min(lookupNanos, (double) (System.nanoTime() - start) / order.length);
+                start = System.nanoTime();
+                for (int j = 0; j < order.length; j++)
+                    found += graph.getEdge(from[j], to[j]);
+                edgeNanos = Math.min(edgeNanos, (double) (System.nanoTime() - start) / order.length);
+            }
+            System.out.printf("  %-18s containsNode %5.1f ns, getEdge %5.1f ns, %.1f queries/s (checksum %d)%n",
+                    labels.get(i), lookupNanos, edgeNanos, queriesPerSecond(graph, queries), found);
+        }
+    }
+
+    /**
+     * Measures bulk loading, updating and looking up the edges of a network where every
+     * airport has routes to and from a few hubs, so that each hub has thousands of edges
+     */
+    public static void benchmarkHubs() {
+        int count = 20000;
+        int hubs = 10;
+        String[] names = airportNames(count);
+        System.out.println("Hub benchmark: " + count + " airports with routes to and from each of " + hubs
+                + " hubs, plus the synthetic network's routes");
+        for (int run = 0; run < 3; run++) {
+            DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+            long start = System.nanoTime();
+            fillNetwork(graph, count, 8, 42);
+            for (int hub = 0; hub < hubs; hub++)
+                for (int i = hubs; i < count; i++) {
+                    graph.insertEdge(names[hub], names[i], 1000 + i);
+                    graph.insertEdge(names[i], names[hub], 1000 + i);
+                }
+            double loadMillis = (System.nanoTime() - start) / 1e6;
+            // update every hub edge with a new weight
+            start = System.nanoTime();
+            for (int hub = 0; hub < hubs; hub++)
+                for (int i = hubs; i < count; i++)
+                    graph.insertEdge(names[hub], names[i], 2000 + i);
+            double updateNanos = (double) (System.nanoTime() - start) / (hubs * (count - hubs));
+            // look up edges from hubs that are missing, since airports never link to themselves
+            start = System.nanoTime();
+            int found = 0;
+            for (int hub = 0; hub < hubs; hub++)
+                for (int i = 0; i < count; i++)
+                    if (graph.containsEdge(names[hub], names[hub]))
+                        found++;
+            double missNanos = (double) (System.nanoTime() - start) / (hubs * count);
+            System.out.printf("  run %d: load %.0f ms (%d edges), update %.0f ns/edge, missing containsEdge "
+                    + "%.0f ns (%d)%n", run + 1, loadMillis, graph.getEdgeCount(), updateNanos, missNanos, found);
+        }
+    }
+
+    /**
+     * Returns the heap in use after asking the JVM to collect garbage several times
+     */
+    private static long usedHeapAfterGC() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Compares the build time and retained heap of a network of about a million edges built by
+     * inserting each route into a DijkstraGraph, and by adding them to a GraphBuilder
+     */
+    public static void benchmarkBuilder() {
+        int count = 143000;
+        String[] names = airportNames(count);
+        int[][] routes = syntheticRoutes(count, 8, 42);
+        System.out.println("Builder benchmark: " + count + " airports, " + 2 * routes.length + " edges");
+        for (int run = 0; run < 3; run++) {
+            long before = usedHeapAfterGC();
+            long start = System.nanoTime();
+            DijkstraGraph<String, Integer> inserted = new DijkstraGraph<>(new PlaceholderMap<>());
+            for (String name : names)
+                inserted.insertNode(name);
+            for (int[] route : routes) {
+                inserted.insertEdge(names[route[0]], names[route[1]], route[2]);
+                inserted.insertEdge(names[route[1]], names[route[0]], route[2]);
+            }
+            double insertMillis = (System.nanoTime() - start) / 1e6;
+            long insertedBytes = usedHeapAfterGC() - before;
+            int insertedEdges = inserted.getEdgeCount();
+            inserted = null;
+
+            before = usedHeapAfterGC();
+            start = System.nanoTime();
+            GraphBuilder<String, Integer> builder = new GraphBuilder<>(count, 2 * routes.length);
+            builder.addNodes(names);
+            for (int[] route : routes)
+                builder.addUndirectedEdge(names[route[0]], names[route[1]], route[2]);
+            CSRGraph<String, Integer> built = builder.build();
+            double buildMillis = (System.nanoTime() - start) / 1e6;
+            builder = null;
+            long builtBytes = usedHeapAfterGC() - before;
+            System.out.printf("  run %d: insertEdge %.0f ms, %d MB retained; GraphBuilder %.0f ms, %d MB retained "
+                    + "(%d and %d edges)%n", run + 1, insertMillis, insertedBytes >> 20, buildMillis,
+                    builtBytes >> 20, insertedEdges, built.getEdgeCount());
+        }
+    }
+
+    /**
+     * Compares the retained heap, insertion time and query rate of a directed DijkstraGraph
+     * with both directions of each route inserted, and an undirected one with each route
+     * inserted once
+     */
+    public static void benchmarkUndirected() {
+        int count = 200000;
+        String[] names = airportNames(count);
+        int[][] routes = syntheticRoutes(count, 8, 42);
+        String[][] queries = randomQueries(count, 100, 7);
+        System.out.println("Undirected graph benchmark: " + count + " airports, " + routes.length + " routes");
+        for (boolean undirected : new boolean[] {false, true}) {
+            long before = usedHeapAfterGC();
+            long start = System.nanoTime();
+            DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>(), DaryHeap::new,
+                    undirected);
+            for (String name : names)
+                graph.insertNode(name);
+            for (int[] route : routes) {
+                graph.insertEdge(names[route[0]], names[route[1]], route[2]);
+                if (!undirected)
+                    graph.insertEdge(names[route[1]], names[route[0]], route[2]);
+            }
+            double insertMillis = (System.nanoTime() - start) / 1e6;
+            long bytes = usedHeapAfterGC() - before;
+            System.out.printf("  %-10s %d MB retained, inserted in %.0f ms, %d edges, %.1f queries/s%n",
+                    undirected ? "undirected" : "directed", bytes >> 20, insertMillis, graph.getEdgeCount(),
+                    queriesPerSecond(graph, queries));
+        }
+    }
+
+    /**
+     * Compares closing the busiest airports of a large network one removeNode() at a time with
+     * closing them in one closeNodes() batch, and times reopening them and compacting the graph
+     */
+    public static void benchmarkClosures() {
+        int count = 200000;
+        int closures = 100;
+        System.out.println("Closure benchmark: " + count + " airports, closing the " + closures + " busiest");
+        for (int run = 0; run < 3; run++) {
+            DijkstraGraph<String, Integer> removed = syntheticNetwork(count, 8, 42);
+            DijkstraGraph<String, Integer> closed = syntheticNetwork(count, 8, 42);
+            List<BaseGraph<String, Integer>.Node> byDegree = new ArrayList<>(closed.nodeSet);
+            byDegree.sort((a, b) -> (b.edgesLeaving.size() + b.edgesEntering.size())
+                    - (a.edgesLeaving.size() + a.edgesEntering.size()));
+            List<String> hubs = new ArrayList<>();
+            for (int i = 0; i < closures; i++)
+                hubs.add(byDegree.get(i).data);
+            byDegree = null;
+
+            long start = System.nanoTime();
+            for (String hub : hubs)
+                removed.removeNode(hub);
+            double removeMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            closed.closeNodes(hubs);
+            double closeMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            closed.reopenNodes(hubs);
+            double reopenMillis = (System.nanoTime() - start) / 1e6;
+            closed.closeNodes(hubs);
+            start = System.nanoTime();
+            closed.compact();
+            double compactMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("  run %d: removeNode %.2f ms, closeNodes %.3f ms, reopenNodes %.3f ms, "
+                    + "compact %.0f ms%n", run + 1, removeMillis, closeMillis, reopenMillis, compactMillis);
+        }
+    }
+
+    /**
+     * Times publishing small batches of route changes to a large VersionedGraph, and compares
+     * its query rate with and without a writer publishing versions on another thread
+     */
+    public static void benchmarkVersions() {
+        int count = 200000;
+        String[] names = airportNames(count);
+        String[][] queries = randomQueries(count, 100, 7);
+        VersionedGraph<String, Integer> graph = fillNetwork(new VersionedGraph<>(), count, 8, 42);
+        graph.publish();
+        DijkstraGraph<String, Integer> dijkstra = syntheticNetwork(count, 8, 42);
+        System.out.println("Versioned graph benchmark: " + count + " airports, " + graph.getEdgeCount() + " edges");
+        System.out.printf("  DijkstraGraph %.1f queries/s, VersionedGraph %.1f queries/s%n",
+                queriesPerSecond(dijkstra, queries), queriesPerSecond(graph, queries));
+        dijkstra = null;
+
+        // each batch reroutes a few flights, so queries always have a path
+        Random random = new Random(3);
+        int batches = 2000;
+        long start = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            for (int j = 0; j < 10; j++)
+                graph.insertEdge(names[random.nextInt(count)], names[random.nextInt(count)],
+                        500 + random.nextInt(500));
+            graph.publish();
+        }
+        System.out.printf("  %.1f us to change 10 edges and publish, over %d versions%n",
+                (System.nanoTime() - start) / 1e3 / batches, batches);
+
+        // queriesPerSecond() cannot be used here, as answers change between versions
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger published = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            Random writes = new Random(4);
+            while (!stop.get()) {
+                for (int j = 0; j < 10; j++)
+                    graph.insertEdge(names[writes.nextInt(count)], names[writes.nextInt(count)],
+                            500 + writes.nextInt(500));
+                graph.publish();
+                published.incrementAndGet();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        writer.start();
+        double checksum = 0;
+        start = System.nanoTime();
+        for (String[] query : queries)
+            checksum += graph.shortestPathCost(query[0], query[1]);
+        double rate = queries.length / ((System.nanoTime() - start) / 1e9);
+        stop.set(true);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.printf("  %.1f queries/s while another thread published %d versions (checksum %.0f)%n",
+                rate, published.get(), checksum);
+    }
+
+    /**
+     * Compares answering a batch of route queries one at a time with Backend.getShortestRoute
+     * against Backend.getShortestRoutes, which runs one search per start airport
+     */
+    public static void benchmarkBatch() {
+        int count = 20000;
+        String[] names = airportNames(count);
+        Backend backend = new Backend(new DijkstraGraph<>(new PlaceholderMap<>()));
+        try {
+            File file = File.createTempFile("synthetic", ".dot");
+            file.deleteOnExit();
+            writeDotFile(file.getPath(), count, 8, 42);
+            backend.readDataFromFile(file.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("Batch route benchmark: " + count + " airports, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+        for (int origins : new int[] {10, 100, 1000}) {
+            // pricing jobs ask for many destinations from each of a limited set of origins
+            Random random = new Random(origins);
+            List<String[]> pairs = new ArrayList<>();
+            for (int i = 0; i < 2000; i++)
+                pairs.add(new String[] {names[random.nextInt(origins)], names[random.nextInt(count)]});
+            long oneAtATime = 0;
+            long batched = 0;
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                long start = System.nanoTime();
+                for (String[] pair : pairs)
+                    backend.getShortestRoute(pair[0], pair[1]);
+                oneAtATime = System.nanoTime() - start;
+                start = System.nanoTime();
+                backend.getShortestRoutes(pairs);
+                batched = System.nanoTime() - start;
+            }
+            System.out.printf("  %d pairs from %d origins: one at a time %.0f routes/s, batched %.0f routes/s%n",
+                    pairs.size(), origins, pairs.size() / (oneAtATime / 1e9), pairs.size() / (batched / 1e9));
+        }
+    }
+
+    /**
+     * Compares Backend.getShortestRoute with and without a route cache, on queries where a few
+     * popular city pairs make up most of the traffic, with the pair of rank r asked about in
+     * proportion to 1/r
+     */
+    public static void benchmarkCache() {
+        int count = 20000;
+        int pairCount = 5000;
+        String[][] pairs = randomQueries(count, pairCount, 21);
+        double[] cumulative = new double[pairCount];
+        double total = 0;
+        for (int rank = 0; rank < pairCount; rank++)
+            cumulative[rank] = total += 1.0 / (rank + 1);
+        Random random = new Random(22);
+        String[][] queries = new String[20000][];
+        for (int i = 0; i < queries.length; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            queries[i] = pairs[rank < 0 ? -rank - 1 : rank];
+        }
+        File file;
+        try {
+            file = File.createTempFile("synthetic", ".dot");
+            file.deleteOnExit();
+            writeDotFile(file.getPath(), count, 8, 42);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("Route cache benchmark: " + count + " airports, " + queries.length
+                + " queries over " + pairCount + " pairs");
+        for (int capacity : new int[] {0, 100, 1000}) {
+            RouteCache cache = capacity == 0 ? null : new RouteCache(capacity, 64L << 20);
+            Backend backend = cache == null ? new Backend(new DijkstraGraph<>(new PlaceholderMap<>()))
+                    : new Backend(new DijkstraGraph<>(new PlaceholderMap<>()), cache);
+            try {
+                backend.readDataFromFile(file.getPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            long start = System.nanoTime();
+            for (String[] query : queries)
+                backend.getShortestRoute(query[0], query[1]);
+            double rate = queries.length / ((System.nanoTime() - start) / 1e9);
+            if (cache == null)
+                System.out.printf("  no cache: %.0f queries/s%n", rate);
+            else
+                System.out.printf("  %d routes: %.0f queries/s, %s%n", capacity, rate, cache);
+        }
+    }
+
+    /**
+     * Compares fresh searches with searches resumed from paused ones, on sessions of several
+     * queries in a row from the same start airport
+     */
+    public static void benchmarkResume() {
+        int count = 20000;
+        String[] names = airportNames(count);
+        DijkstraGraph<String, Integer> fresh = syntheticNetwork(count, 8, 42);
+        DijkstraGraph<String, Integer> resumed = syntheticNetwork(count, 8, 42);
+        resumed.setRetainedSearches(8, 64L << 20);
+        System.out.println("Resumed search benchmark: " + count + " airports");
+        for (int session : new int[] {1, 5, 20}) {
+            Random random = new Random(session);
+            String[][] queries = new String[1000][];
+            for (int i = 0; i < queries.length; i += session) {
+                String start = names[random.nextInt(count)];
+                for (int j = i; j < Math.min(i + session, queries.length); j++)
+                    queries[j] = new String[] {start, names[random.nextInt(count)]};
+            }
+            double freshRate = queriesPerSecond(fresh, queries);
+            long settled = 0;
+            for (String[] query : queries) {
+                resumed.shortestPathCost(query[0], query[1]);
+                settled += resumed.getLastSettledCount();
+            }
+            System.out.printf("  %d queries per start: fresh %.0f queries/s (%.0f settled), "
+                    + "resumed %.0f queries/s (%.0f settled)%n", session, freshRate,
+                    averageSettled(fresh, queries), queriesPerSecond(resumed, queries),
+                    (double) settled / queries.length);
+        }
+    }
+
+    /**
+     * Compares finding the airports within a budget of an origin with one bounded search
+     * against calling shortestPathCost once per airport
+     */
+    public static void benchmarkBounded() {
+        int count = 5000;
+        String[] names = airportNames(count);
+        DijkstraGraph<String, Integer> graph = syntheticNetwork(count, 8, 42);
+        System.out.println("Bounded search benchmark: " + count + " airports");
+        for (int budget : new int[] {500, 1500, 3000}) {
+            long start = System.nanoTime();
+            int perAirport = 0;
+            for (String name : names) {
+                if (graph.shortestPathCost(names[0], name) <= budget)
+                    perAirport++;
+            }
+            long perAirportTime = System.nanoTime() - start;
+            int rounds = 100;
+            int bounded = 0;
+            start = System.nanoTime();
+            for (int round = 0; round < rounds; round++)
+                bounded = graph.reachableFrom(names[0], budget).settleAll().getCount();
+            long boundedTime = (System.nanoTime() - start) / rounds;
+            if (bounded != perAirport)
+                throw new IllegalStateException("bounded search found " + bounded + " airports, not " + perAirport);
+            System.out.printf("  within %d miles: %d airports, per-airport searches %.0f ms, "
+                    + "bounded search %.3f ms%n", budget, bounded, perAirportTime / 1e6, boundedTime / 1e6);
+        }
+    }
+
+    /**
+     * Times taking the nearest destinations of an origin from destinationsFrom, against a
+     * search that settles every airport
+     */
+    public static void benchmarkDestinations() {
+        int count = 200000;
+        String[] names = airportNames(count);
+        DijkstraGraph<String, Integer> graph = syntheticNetwork(count, 8, 42);
+        System.out.println("Destinations benchmark: " + count + " airports");
+        Random random = new Random(27);
+        String[] origins = new String[20];
+        for (int i = 0; i < origins.length; i++)
+            origins[i] = names[random.nextInt(count)];
+        for (int limit : new int[] {20, 1000, count - 1}) {
+            double checksum = 0;
+            long start = 0;
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                checksum = 0;
+                start = System.nanoTime();
+                for (String origin : origins)
+                    checksum += graph.destinationsFrom(origin).limit(limit)
+                            .mapToDouble(DijkstraGraph.Destination::getCost).sum();
+            }
+            System.out.printf("  nearest %d destinations: %.2f ms per origin (checksum %.0f)%n", limit,
+                    (System.nanoTime() - start) / 1e6 / origins.length, checksum);
+        }
+    }
+}
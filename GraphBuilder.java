@@ -0,0 +1,257 @@
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * This class collects batches of nodes and edges and builds them into an
+ * immutable CSRGraph in O(V+E) time, instead of inserting them one at a time
+ * into a BaseGraph. Nodes are numbered as they are added, and edges are kept
+ * in flat arrays until build() groups them by their predecessor with a
+ * counting sort, drops duplicate edges, and copies them into CSR arrays that
+ * are allocated once at their exact size.
+ *
+ * Duplicate edges follow the rules of BaseGraph.insertEdge(): the graph has
+ * one edge for each pair of nodes, holding the weight that was added last,
+ * and the edges leaving each node are in the order they were first added.
+ */
+public class GraphBuilder<NodeType, EdgeType extends Number> {
+
+    // The id of each node's data, and the data of each id
+    private OpenAddressingMap<NodeType, Integer> ids;
+    private Object[] nodeData;
+    private int nodeCount = 0;
+    // The predecessor id, successor id and weight of each edge added, in the
+    // order they were added
+    private int[] from;
+    private int[] to;
+    private Object[] weights;
+    private int edgeCount = 0;
+
+    /**
+     * Creates an empty builder.
+     */
+    public GraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * Creates an empty builder with room for the given numbers of nodes and
+     * edges, so that nothing is resized while they are added.
+     *
+     * @param expectedNodes the number of nodes that will be added
+     * @param expectedEdges the number of edges that will be added, counting
+     *                      each direction of an undirected edge
+     */
+    public GraphBuilder(int expectedNodes, int expectedEdges) {
+        ids = new OpenAddressingMap<>(expectedNodes);
+        nodeData = new Object[Math.max(1, expectedNodes)];
+        from = new int[Math.max(1, expectedEdges)];
+        to = new int[from.length];
+        weights = new Object[from.length];
+    }
+
+    /**
+     * Adds a node, unless a node with the same data has already been added.
+     *
+     * @param data the data item stored in the node
+     * @return the id of the node, which is its index in the order nodes were
+     *         first added
+     * @throws NullPointerException if data is null
+     */
+    public int addNode(NodeType data) {
+        if (ids.containsKey(data))
+            return ids.get(data); // throws NPE when data's null
+        if (nodeCount == nodeData.length)
+            nodeData = Arrays.copyOf(nodeData, nodeCount * 2);
+        nodeData[nodeCount] = data;
+        ids.put(data, nodeCount);
+        return nodeCount++;
+    }
+
+    /**
+     * Adds a batch of nodes.
+     *
+     * @param data the data items stored in the nodes
+     * @return this builder
+     */
+    public GraphBuilder<NodeType, EdgeType> addNodes(NodeType[] data) {
+        ids.ensureCapacity(nodeCount + data.length);
+        for (NodeType item : data)
+            addNode(item);
+        return this;
+    }
+
+    /**
+     * Adds a stream of nodes.
+     *
+     * @param data the data items stored in the nodes
+     * @return this builder
+     */
+    public GraphBuilder<NodeType, EdgeType> addNodes(Stream<NodeType> data) {
+        data.forEachOrdered(this::addNode);
+        return this;
+    }
+
+    /**
+     * Adds a directed edge, adding its nodes first if they have not been
+     * added yet. Adding an edge between the same nodes again replaces its
+     * weight.
+     *
+     * @param pred   the data item contained in the edge's predecessor node
+     * @param succ   the data item contained in the edge's successor node
+     * @param weight the non-negative weight of the edge
+     * @return this builder
+     * @throws NullPointerException if pred, succ or weight is null
+     */
+    public GraphBuilder<NodeType, EdgeType> addEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        addEdge(addNode(pred), addNode(succ), weight);
+        return this;
+    }
+
+    /**
+     * Adds an edge in each direction between two nodes, both with the same
+     * weight, adding the nodes first if they have not been added yet.
+     *
+     * @param first  the data item contained in one of the nodes
+     * @param second the data item contained in the other node
+     * @param weight the non-negative weight of both edges
+     * @return this builder
+     * @throws NullPointerException if first, second or weight is null
+     */
+    public GraphBuilder<NodeType, EdgeType> addUndirectedEdge(NodeType first, NodeType second,
+            EdgeType weight) {
+        int firstId = addNode(first);
+        int secondId = addNode(second);
+        addEdge(firstId, secondId, weight);
+        addEdge(secondId, firstId, weight);
+        return this;
+    }
+
+    /**
+     * Adds a batch of directed edges, given as parallel arrays.
+     *
+     * @param preds   the predecessor of each edge
+     * @param succs   the successor of each edge
+     * @param weights the weight of each edge
+     * @return this builder
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public GraphBuilder<NodeType, EdgeType> addEdges(NodeType[] preds, NodeType[] succs, EdgeType[] weights) {
+        if (preds.length != succs.length || preds.length != weights.length)
+            throw new IllegalArgumentException("edge arrays have different lengths");
+        ensureEdgeCapacity(edgeCount + preds.length);
+        for (int i = 0; i < preds.length; i++)
+            addEdge(preds[i], succs[i], weights[i]);
+        return this;
+    }
+
+    /**
+     * Adds a stream of directed edges, each described by one item of the
+     * stream.
+     *
+     * @param items  the items describing the edges
+     * @param pred   gets the predecessor of an item's edge
+     * @param succ   gets the successor of an item's edge
+     * @param weight gets the weight of an item's edge
+     * @return this builder
+     */
+    public <T> GraphBuilder<NodeType, EdgeType> addEdges(Stream<T> items, Function<T, NodeType> pred,
+            Function<T, NodeType> succ, Function<T, EdgeType> weight) {
+        items.forEachOrdered(item -> addEdge(pred.apply(item), succ.apply(item), weight.apply(item)));
+        return this;
+    }
+
+    private void addEdge(int predId, int succId, EdgeType weight) {
+        if (weight == null)
+            throw new NullPointerException("null edge weights not allowed");
+        ensureEdgeCapacity(edgeCount + 1);
+        from[edgeCount] = predId;
+        to[edgeCount] = succId;
+        weights[edgeCount] = weight;
+        edgeCount++;
+    }
+
+    private void ensureEdgeCapacity(int capacity) {
+        if (capacity <= from.length)
+            return;
+        int length = Math.max(capacity, from.length * 2);
+        from = Arrays.copyOf(from, length);
+        to = Arrays.copyOf(to, length);
+        weights = Arrays.copyOf(weights, length);
+    }
+
+    /**
+     * @return the number of distinct nodes added so far
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of edges added so far, including duplicates
+     */
+    public int getAddedEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Builds an immutable graph of the nodes and edges added so far. The
+     * builder can still be used afterwards, and later additions do not change
+     * graphs that have already been built.
+     *
+     * @return the graph
+     */
+    @SuppressWarnings("unchecked")
+    public CSRGraph<NodeType, EdgeType> build() {
+        int n = nodeCount;
+        // counting sort of the edges by predecessor, keeping the order they
+        // were added within each predecessor's row
+        int[] rowStart = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++)
+            rowStart[from[e] + 1]++;
+        for (int i = 0; i < n; i++)
+            rowStart[i + 1] += rowStart[i];
+        int[] sorted = new int[edgeCount];
+        int[] next = Arrays.copyOf(rowStart, n);
+        for (int e = 0; e < edgeCount; e++)
+            sorted[next[from[e]]++] = e;
+
+        // count each row's distinct successors, marking the successors seen in
+        // the current row with the row's id plus one
+        int[] mark = next;
+        Arrays.fill(mark, 0);
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int distinct = 0;
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                int succ = to[sorted[k]];
+                if (mark[succ] != i + 1) {
+                    mark[succ] = i + 1;
+                    distinct++;
+                }
+            }
+            offsets[i + 1] = offsets[i] + distinct;
+        }
+
+        // copy each row's edges, letting later duplicates replace the weight
+        // of the first one; position remembers where each successor went
+        int[] targets = new int[offsets[n]];
+        EdgeType[] edgeData = (EdgeType[]) new Number[offsets[n]];
+        int[] position = new int[n];
+        Arrays.fill(mark, 0);
+        for (int i = 0; i < n; i++) {
+            int out = offsets[i];
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                int e = sorted[k];
+                int succ = to[e];
+                if (mark[succ] != i + 1) {
+                    mark[succ] = i + 1;
+                    position[succ] = out;
+                    targets[out++] = succ;
+                }
+                edgeData[position[succ]] = (EdgeType) weights[e];
+            }
+        }
+        return new CSRGraph<>((NodeType[]) Arrays.copyOf(nodeData, n), offsets, targets, edgeData);
+    }
+}
@@ -0,0 +1,1370 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * This class contains tests for the alternative GraphADT implementations and
+ * search engines, checked against the results of DijkstraGraph.
+ */
+public class GraphDeveloperTests {
+
+    /**
+     * Builds the small A-F graph used by the DijkstraGraph tests
+     * @return a DijkstraGraph containing nodes A-F and six weighted edges
+     */
+    private static DijkstraGraph<String, Integer> sampleGraph() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        //Inserts A-F Nodes
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        graph.insertNode("D");
+        graph.insertNode("E");
+        graph.insertNode("F");
+
+        //Connects nodes with edges of different weights
+        graph.insertEdge("A", "B", 1);
+        graph.insertEdge("A", "C", 2);
+        graph.insertEdge("B", "F", 3);
+        graph.insertEdge("C", "D", 2);
+        graph.insertEdge("D", "E", 2);
+        graph.insertEdge("E", "F", 2);
+        return graph;
+    }
+
+    /**
+     * Checks that the given graph returns the same answers as the DijkstraGraph tests expect
+     * on the A-F sample graph
+     * @param graph a graph with the same nodes and edges as sampleGraph()
+     */
+    private static void checkSampleQueries(GraphADT<String, Integer> graph) {
+        Assertions.assertEquals(4, graph.shortestPathCost("A", "F"));
+        Assertions.assertEquals("[A, B, F]", graph.shortestPathData("A", "F").toString());
+        Assertions.assertEquals(6, graph.shortestPathCost("A", "E"));
+        Assertions.assertEquals("[A, C, D, E]", graph.shortestPathData("A", "E").toString());
+        Assertions.assertEquals(0, graph.shortestPathCost("A", "A"));
+        //No path from B back to A
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("B", "A"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathData("B", "A"));
+        //Unknown nodes
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathData("A", "Z"));
+    }
+
+    /**
+     * Tests that a CSRGraph copied from a DijkstraGraph answers the same queries, and
+     * keeps the node and edge counts and edge weights of the original
+     */
+    @Test
+    public void testCSRGraph() {
+        DijkstraGraph<String, Integer> original = sampleGraph();
+        CSRGraph<String, Integer> graph = new CSRGraph<>(original);
+        checkSampleQueries(graph);
+
+        Assertions.assertEquals(original.getNodeCount(), graph.getNodeCount());
+        Assertions.assertEquals(original.getEdgeCount(), graph.getEdgeCount());
+        Assertions.assertEquals(3, graph.getEdge("B", "F"));
+        Assertions.assertTrue(graph.containsEdge("C", "D"));
+        Assertions.assertFalse(graph.containsEdge("D", "C"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdge("D", "C"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> graph.insertNode("G"));
+    }
+
+    /**
+     * Tests that CSRGraph finds the same shortest path costs as DijkstraGraph on a larger
+     * synthetic route network
+     */
+    @Test
+    public void testCSRGraphMatchesDijkstra() {
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 4, 1);
+        CSRGraph<String, Integer> graph = new CSRGraph<>(original);
+        String[] airports = GraphBenchmark.airportNames(500);
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            String start = airports[random.nextInt(airports.length)];
+            String end = airports[random.nextInt(airports.length)];
+            Assertions.assertEquals(original.shortestPathCost(start, end),
+                    graph.shortestPathCost(start, end));
+        }
+    }
+
+    /**
+     * Tests that DijkstraGraph returns the same shortest paths with every kind of priority
+     * queue, and that each queue removes items in priority order
+     */
+    @Test
+    public void testPriorityQueues() {
+        List<Supplier<IndexedPriorityQueue>> factories =
+                List.of(DaryHeap::new, () -> new DaryHeap(2), PairingHeap::new, RadixHeap::new);
+        for (Supplier<IndexedPriorityQueue> factory : factories) {
+            IndexedPriorityQueue queue = factory.get();
+            queue.reset(5);
+            queue.insertOrDecrease(0, 9);
+            queue.insertOrDecrease(1, 4);
+            queue.insertOrDecrease(2, 7);
+            queue.insertOrDecrease(3, 5);
+            queue.insertOrDecrease(0, 3); //decrease-key instead of a duplicate entry
+            Assertions.assertEquals(4, queue.size());
+            Assertions.assertEquals(3.0, queue.minPriority());
+            Assertions.assertEquals(0, queue.pollMin());
+            Assertions.assertEquals(1, queue.pollMin());
+            Assertions.assertEquals(3, queue.pollMin());
+            Assertions.assertFalse(queue.contains(3));
+            Assertions.assertTrue(queue.contains(2));
+            Assertions.assertEquals(2, queue.pollMin());
+            Assertions.assertTrue(queue.isEmpty());
+            Assertions.assertThrows(NoSuchElementException.class, () -> queue.pollMin());
+
+            DijkstraGraph<String, Integer> graph = GraphBenchmark.syntheticNetwork(300, 6, 3);
+            DijkstraGraph<String, Integer> other = new DijkstraGraph<>(new PlaceholderMap<>(), factory);
+            String[] airports = GraphBenchmark.airportNames(300);
+            for (String airport : airports)
+                other.insertNode(airport);
+            for (int[] route : GraphBenchmark.syntheticRoutes(300, 6, 3)) {
+                other.insertEdge(airports[route[0]], airports[route[1]], route[2]);
+                other.insertEdge(airports[route[1]], airports[route[0]], route[2]);
+            }
+            Random random = new Random(4);
+            for (int i = 0; i < 100; i++) {
+                String start = airports[random.nextInt(airports.length)];
+                String end = airports[random.nextInt(airports.length)];
+                Assertions.assertEquals(graph.shortestPathCost(start, end),
+                        other.shortestPathCost(start, end));
+            }
+        }
+        //A radix heap only accepts integer priorities that are not below the last one removed
+        RadixHeap radixHeap = new RadixHeap();
+        radixHeap.reset(3);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> radixHeap.insertOrDecrease(0, 1.5));
+        radixHeap.insertOrDecrease(0, 10);
+        radixHeap.pollMin();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> radixHeap.insertOrDecrease(1, 9));
+    }
+
+    /**
+     * Tests that consecutive searches on the same thread, which reuse one workspace, do not see
+     * each other's results, including after the graph grows past the workspace's size
+     */
+    @Test
+    public void testWorkspaceReuse() {
+        DijkstraGraph<String, Integer> graph = sampleGraph();
+        Assertions.assertEquals("[A, C, D, E]", graph.shortestPathData("A", "E").toString());
+        //A failed search leaves stale entries behind that the next search must ignore
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathData("F", "A"));
+        Assertions.assertEquals("[B, F]", graph.shortestPathData("B", "F").toString());
+        Assertions.assertEquals(0, graph.shortestPathCost("D", "D"));
+
+        //New nodes get ids beyond the arrays the workspace already has
+        for (int i = 0; i < 20; i++)
+            graph.insertNode("G" + i);
+        graph.insertEdge("F", "G0", 1);
+        for (int i = 1; i < 20; i++)
+            graph.insertEdge("G" + (i - 1), "G" + i, 1);
+        Assertions.assertEquals(24, graph.shortestPathCost("A", "G19"));
+        Assertions.assertEquals(22, graph.shortestPathData("B", "G19").size());
+        Assertions.assertEquals(4, graph.shortestPathCost("A", "F"));
+    }
+
+    /**
+     * Tests that shortestPath returns the nodes, edge weights and cost of the shortest path
+     * from one search, for DijkstraGraph, CSRGraph and the default GraphADT implementation
+     */
+    @Test
+    public void testShortestPathResult() {
+        DijkstraGraph<String, Integer> dijkstra = sampleGraph();
+        List<GraphADT<String, Integer>> graphs = List.of(dijkstra, new CSRGraph<>(dijkstra),
+                new ForwardingGraph<>(dijkstra));
+        for (GraphADT<String, Integer> graph : graphs) {
+            GraphPath<String, Integer> path = graph.shortestPath("A", "E");
+            Assertions.assertEquals("[A, C, D, E]", path.getNodes().toString());
+            Assertions.assertEquals("[2, 2, 2]", path.getEdges().toString());
+            Assertions.assertEquals(6, path.getCost());
+
+            path = graph.shortestPath("C", "C");
+            Assertions.assertEquals("[C]", path.getNodes().toString());
+            Assertions.assertTrue(path.getEdges().isEmpty());
+            Assertions.assertEquals(0, path.getCost());
+            Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPath("F", "A"));
+        }
+    }
+
+    /**
+     * A GraphADT that forwards every method to another graph, without overriding any default
+     * methods, so that the default implementations can be tested
+     */
+    private static class ForwardingGraph<N, E extends Number> implements GraphADT<N, E> {
+        private final GraphADT<N, E> graph;
+
+        private ForwardingGraph(GraphADT<N, E> graph) {
+            this.graph = graph;
+        }
+
+        public boolean insertNode(N data) { return graph.insertNode(data); }
+        public boolean removeNode(N data) { return graph.removeNode(data); }
+        public boolean containsNode(N data) { return graph.containsNode(data); }
+        public int getNodeCount() { return graph.getNodeCount(); }
+        public boolean insertEdge(N pred, N succ, E weight) { return graph.insertEdge(pred, succ, weight); }
+        public boolean removeEdge(N pred, N succ) { return graph.removeEdge(pred, succ); }
+        public boolean containsEdge(N pred, N succ) { return graph.containsEdge(pred, succ); }
+        public E getEdge(N pred, N succ) { return graph.getEdge(pred, succ); }
+        public int getEdgeCount() { return graph.getEdgeCount(); }
+        public List<N> shortestPathData(N start, N end) { return graph.shortestPathData(start, end); }
+        public double shortestPathCost(N start, N end) { return graph.shortestPathCost(start, end); }
+    }
+
+    /**
+     * Copies the nodes and edges of a graph into another, empty graph
+     * @param from the graph to copy
+     * @param to   the graph to copy into
+     * @return the graph copied into
+     */
+    private static <G extends GraphADT<String, Integer>> G copyGraph(BaseGraph<String, Integer> from, G to) {
+        for (BaseGraph<String, Integer>.Node node : from.nodeSet)
+            to.insertNode(node.data);
+        for (BaseGraph<String, Integer>.Node node : from.nodeSet)
+            for (BaseGraph<String, Integer>.Edge edge : node.edgesLeaving)
+                to.insertEdge(node.data, edge.successor.data, edge.data);
+        return to;
+    }
+
+    /**
+     * Checks that a graph finds shortest paths with the same costs as DijkstraGraph for random
+     * queries on a graph copied from the original, and that each returned path is a real path
+     * with the returned cost
+     * @param original the DijkstraGraph to compare with
+     * @param graph    the graph to check, containing the same nodes and edges
+     * @param airports the node data to pick queries from
+     */
+    private static void checkRandomQueries(DijkstraGraph<String, Integer> original,
+            GraphADT<String, Integer> graph, String[] airports) {
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            String start = airports[random.nextInt(airports.length)];
+            String end = airports[random.nextInt(airports.length)];
+            GraphPath<String, Integer> path = graph.shortestPath(start, end);
+            Assertions.assertEquals(original.shortestPathCost(start, end), path.getCost());
+            Assertions.assertEquals(original.shortestPathCost(start, end), graph.shortestPathCost(start, end));
+            List<String> nodes = graph.shortestPathData(start, end);
+            Assertions.assertEquals(start, nodes.get(0));
+            Assertions.assertEquals(end, nodes.get(nodes.size() - 1));
+            double cost = 0;
+            for (int j = 0; j < nodes.size() - 1; j++)
+                cost += original.getEdge(nodes.get(j), nodes.get(j + 1));
+            Assertions.assertEquals(path.getCost(), cost);
+        }
+    }
+
+    /**
+     * Tests that BidirectionalDijkstraGraph finds the same shortest paths as DijkstraGraph
+     */
+    @Test
+    public void testBidirectionalDijkstra() {
+        checkSampleQueries(copyGraph(sampleGraph(), new BidirectionalDijkstraGraph<>(new PlaceholderMap<>())));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 6);
+        BidirectionalDijkstraGraph<String, Integer> graph =
+                copyGraph(original, new BidirectionalDijkstraGraph<>(new PlaceholderMap<>()));
+        checkRandomQueries(original, graph, GraphBenchmark.airportNames(500));
+    }
+
+    /**
+     * Tests that AStarGraph finds the same shortest paths as DijkstraGraph, both before all
+     * airports have coordinates (when it falls back to Dijkstra) and after
+     */
+    @Test
+    public void testAStar() {
+        checkSampleQueries(copyGraph(sampleGraph(), new AStarGraph<>(new PlaceholderMap<>())));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 6);
+        AStarGraph<String, Integer> graph = copyGraph(original, new AStarGraph<>(new PlaceholderMap<>()));
+        String[] airports = GraphBenchmark.airportNames(500);
+        double[][] coordinates = GraphBenchmark.airportCoordinates(500, 6);
+        for (int i = 0; i < 499; i++)
+            graph.setCoordinates(airports[i], coordinates[i][0], coordinates[i][1]);
+        Assertions.assertFalse(graph.hasAllCoordinates());
+        checkRandomQueries(original, graph, airports);
+
+        graph.setCoordinates(airports[499], coordinates[499][0], coordinates[499][1]);
+        Assertions.assertTrue(graph.hasAllCoordinates());
+        checkRandomQueries(original, graph, airports);
+        //Searching towards the destination settles fewer nodes than searching in all directions
+        original.shortestPathCost(airports[0], airports[499]);
+        graph.shortestPathCost(airports[0], airports[499]);
+        Assertions.assertTrue(graph.getLastSettledCount() < original.getLastSettledCount());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> graph.setCoordinates("AAA", 91, 0));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.setCoordinates("ZZZ", 0, 0));
+    }
+
+    /**
+     * Tests that AStarGraph still finds shortest paths when short edges are rounded down to whole
+     * miles below the great-circle distance between their airports, whether the coordinates are
+     * set before or after the edges
+     */
+    @Test
+    public void testAStarRoundedMiles() {
+        String[] airports = { "S", "P", "M", "N", "X", "T" };
+        //positions along the equator in miles, so that P->M, M->N and N->X are 10.99 miles each
+        double[] miles = { 0, 1, 11.99, 22.98, 33.97, 133.97 };
+        String[][] edges = { { "S", "P" }, { "P", "M" }, { "M", "N" }, { "N", "X" }, { "S", "X" }, { "X", "T" } };
+        int[] weights = { 3, 10, 10, 10, 34, 100 };
+        for (boolean coordinatesFirst : new boolean[] { true, false }) {
+            AStarGraph<String, Integer> graph = new AStarGraph<>(new PlaceholderMap<>());
+            for (String airport : airports)
+                graph.insertNode(airport);
+            for (int i = 0; i < airports.length && coordinatesFirst; i++)
+                graph.setCoordinates(airports[i], 0, Math.toDegrees(miles[i] / AStarGraph.EARTH_RADIUS_MILES));
+            for (int i = 0; i < edges.length; i++)
+                graph.insertEdge(edges[i][0], edges[i][1], weights[i]);
+            for (int i = 0; i < airports.length && !coordinatesFirst; i++)
+                graph.setCoordinates(airports[i], 0, Math.toDegrees(miles[i] / AStarGraph.EARTH_RADIUS_MILES));
+            Assertions.assertTrue(graph.hasAllCoordinates());
+            Assertions.assertEquals(133, graph.shortestPathCost("S", "T"));
+            Assertions.assertEquals(List.of("S", "P", "M", "N", "X", "T"), graph.shortestPathData("S", "T"));
+        }
+    }
+
+    /**
+     * Tests that LandmarkGraph finds the same shortest paths as DijkstraGraph, and that its
+     * landmarks are recomputed after the graph changes
+     */
+    @Test
+    public void testLandmarks() {
+        checkSampleQueries(copyGraph(sampleGraph(), new LandmarkGraph<>(new PlaceholderMap<>(), 2)));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 6);
+        LandmarkGraph<String, Integer> graph = copyGraph(original, new LandmarkGraph<>(new PlaceholderMap<>(), 4));
+        String[] airports = GraphBenchmark.airportNames(500);
+        checkRandomQueries(original, graph, airports);
+        Assertions.assertEquals(4, graph.getLandmarks().size());
+        original.shortestPathCost(airports[3], airports[480]);
+        graph.shortestPathCost(airports[3], airports[480]);
+        Assertions.assertTrue(graph.getLastSettledCount() < original.getLastSettledCount());
+
+        //A new shortcut makes the old landmark distances too high, so they must be recomputed
+        original.insertEdge(airports[3], airports[480], 1);
+        graph.insertEdge(airports[3], airports[480], 1);
+        original.insertEdge(airports[480], airports[3], 1);
+        graph.insertEdge(airports[480], airports[3], 1);
+        checkRandomQueries(original, graph, airports);
+        Assertions.assertEquals(1, graph.shortestPathCost(airports[3], airports[480]));
+        original.removeNode(airports[480]);
+        graph.removeNode(airports[480]);
+        Assertions.assertEquals(original.shortestPathCost(airports[3], airports[479]),
+                graph.shortestPathCost(airports[3], airports[479]));
+    }
+
+    /**
+     * Tests that ContractionHierarchyGraph finds the same shortest paths as DijkstraGraph, with
+     * shortcuts unpacked into real airport sequences, and rebuilds the hierarchy after changes
+     */
+    @Test
+    public void testContractionHierarchy() {
+        checkSampleQueries(copyGraph(sampleGraph(), new ContractionHierarchyGraph<>(new PlaceholderMap<>())));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 6);
+        ContractionHierarchyGraph<String, Integer> graph =
+                copyGraph(original, new ContractionHierarchyGraph<>(new PlaceholderMap<>()));
+        String[] airports = GraphBenchmark.airportNames(500);
+        checkRandomQueries(original, graph, airports);
+        Assertions.assertTrue(graph.getShortcutCount() > 0);
+        original.shortestPathCost(airports[3], airports[480]);
+        graph.shortestPathCost(airports[3], airports[480]);
+        Assertions.assertTrue(graph.getLastSettledCount() < original.getLastSettledCount());
+
+        //Changes to the graph must be reflected in the rebuilt hierarchy
+        original.insertEdge(airports[3], airports[480], 1);
+        graph.insertEdge(airports[3], airports[480], 1);
+        checkRandomQueries(original, graph, airports);
+        Assertions.assertEquals(1, graph.shortestPathCost(airports[3], airports[480]));
+        original.removeNode(airports[480]);
+        graph.removeNode(airports[480]);
+        Assertions.assertEquals(original.shortestPathCost(airports[3], airports[479]),
+                graph.shortestPathCost(airports[3], airports[479]));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost(airports[3], airports[480]));
+    }
+
+    /**
+     * Tests that AllPairsGraph tables computed by either algorithm give the same shortest paths
+     * as DijkstraGraph
+     */
+    @Test
+    public void testAllPairs() {
+        checkSampleQueries(new AllPairsGraph<>(sampleGraph(), true));
+        checkSampleQueries(new AllPairsGraph<>(sampleGraph(), false));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(300, 6, 6);
+        String[] airports = GraphBenchmark.airportNames(300);
+        AllPairsGraph<String, Integer> floydWarshall = new AllPairsGraph<>(original, true);
+        AllPairsGraph<String, Integer> dijkstra = new AllPairsGraph<>(original, false);
+        checkRandomQueries(original, floydWarshall, airports);
+        checkRandomQueries(original, dijkstra, airports);
+        for (int i = 0; i < airports.length; i += 13)
+            for (int j = 0; j < airports.length; j += 7)
+                Assertions.assertEquals(dijkstra.shortestPathCost(airports[i], airports[j]),
+                        floydWarshall.shortestPathCost(airports[i], airports[j]));
+        Assertions.assertEquals(12L * 300 * 300, AllPairsGraph.tableBytes(300));
+    }
+
+    /**
+     * Tests that OpenAddressingMap behaves like PlaceholderMap through random puts and removes,
+     * including keys whose hash codes collide, and that it works as a DijkstraGraph's node map
+     */
+    @Test
+    public void testOpenAddressingMap() {
+        OpenAddressingMap<String, Integer> map = new OpenAddressingMap<>(4, 0.5);
+        Assertions.assertEquals(16, map.getCapacity());
+        //"Aa" and "BB" have the same hash code, so these keys all collide
+        String[] colliding = {"AaAa", "AaBB", "BBAa", "BBBB"};
+        for (int i = 0; i < colliding.length; i++)
+            map.put(colliding[i], i);
+        map.remove("AaBB");
+        Assertions.assertEquals(2, map.get("BBAa"));
+        Assertions.assertEquals(3, map.get("BBBB"));
+        Assertions.assertFalse(map.containsKey("AaBB"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put("AaAa", 9));
+        Assertions.assertThrows(NoSuchElementException.class, () -> map.get("AaBB"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> map.remove("AaBB"));
+        Assertions.assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        map.clear();
+        Assertions.assertEquals(0, map.getSize());
+
+        //Random puts and removes must agree with a HashMap, and the table must grow
+        HashMap<String, Integer> expected = new HashMap<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 20000; i++) {
+            String key = "K" + random.nextInt(3000);
+            if (expected.containsKey(key)) {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+            Assertions.assertEquals(expected.size(), map.getSize());
+        }
+        for (int i = 0; i < 3000; i++) {
+            String key = "K" + i;
+            Assertions.assertEquals(expected.containsKey(key), map.containsKey(key));
+            if (expected.containsKey(key))
+                Assertions.assertEquals(expected.get(key), map.get(key));
+        }
+        Assertions.assertTrue(map.getCapacity() >= 2 * map.getSize());
+        int capacity = map.getCapacity();
+        map.ensureCapacity(10000);
+        Assertions.assertTrue(map.getCapacity() > capacity);
+        Assertions.assertEquals(expected.size(), map.getSize());
+
+        //Drop-in replacement for PlaceholderMap
+        checkSampleQueries(copyGraph(sampleGraph(), new DijkstraGraph<>(new OpenAddressingMap<>())));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 8);
+        String[] airports = GraphBenchmark.airportNames(500);
+        checkRandomQueries(original, copyGraph(original, new DijkstraGraph<>(new OpenAddressingMap<>())),
+                airports);
+    }
+
+    /**
+     * Tests that AirportCodes gives dense ids to packed codes and to other names, and that
+     * AirportCodeMap works as a DijkstraGraph's node map
+     */
+    @Test
+    public void testAirportCodes() {
+        AirportCodes codes = new AirportCodes();
+        String[] names = {"ORD", "KORD", "A", "ZZZZZ", "K1G4", "ord", "Chicago O'Hare", "ABCDEF", ""};
+        for (int i = 0; i < names.length; i++)
+            Assertions.assertEquals(i, codes.intern(names[i]));
+        for (int i = 0; i < names.length; i++) {
+            Assertions.assertEquals(i, codes.intern(names[i]));
+            Assertions.assertEquals(i, codes.idOf(names[i]));
+            Assertions.assertEquals(names[i], codes.nameOf(i));
+        }
+        Assertions.assertEquals(-1, codes.idOf("MDW"));
+        Assertions.assertEquals(-1, codes.idOf("Midway"));
+        Assertions.assertEquals(0, AirportCodes.pack("ord"));
+        Assertions.assertTrue(AirportCodes.pack("A") != AirportCodes.pack("AA"));
+        Assertions.assertTrue(AirportCodes.pack("99999") > 0);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> codes.nameOf(names.length));
+
+        //Every code of a large network gets its own id
+        String[] airports = GraphBenchmark.airportNames(20000);
+        AirportCodes many = new AirportCodes();
+        for (String airport : airports)
+            many.intern(airport);
+        Assertions.assertEquals(airports.length, many.size());
+        for (int i = 0; i < airports.length; i++)
+            Assertions.assertEquals(i, many.idOf(airports[i]));
+
+        AirportCodeMap<Integer> map = new AirportCodeMap<>();
+        map.put("ORD", 1);
+        map.put("Chicago Midway", 2);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put("ORD", 3));
+        Assertions.assertEquals(1, map.remove("ORD"));
+        Assertions.assertFalse(map.containsKey("ORD"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> map.get("ORD"));
+        map.put("ORD", 3);
+        Assertions.assertEquals(3, map.get("ORD"));
+        Assertions.assertEquals(2, map.get("Chicago Midway"));
+        Assertions.assertEquals(2, map.getSize());
+
+        //Drop-in replacement for PlaceholderMap
+        checkSampleQueries(copyGraph(sampleGraph(), new DijkstraGraph<>(new AirportCodeMap<>())));
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 9);
+        DijkstraGraph<String, Integer> graph = copyGraph(original, new DijkstraGraph<>(new AirportCodeMap<>()));
+        checkRandomQueries(original, graph, GraphBenchmark.airportNames(500));
+        Assertions.assertTrue(graph.removeNode("AAB"));
+        Assertions.assertFalse(graph.containsEdge("AAA", "AAB"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("AAA", "AAB"));
+    }
+
+    /**
+     * Tests inserting, updating, finding and removing the edges of hub nodes with enough
+     * routes to use a successor index, checked against a HashMap of the expected edges
+     */
+    @Test
+    public void testSuccessorIndex() throws InterruptedException {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>());
+        String[] airports = GraphBenchmark.airportNames(300);
+        for (String airport : airports)
+            graph.insertNode(airport);
+        HashMap<String, Integer> expected = new HashMap<>();
+        Random random = new Random(21);
+        for (int i = 0; i < 20000; i++) {
+            //most edges leave the first three airports, so those become hubs
+            String from = airports[random.nextInt(4) == 0 ? random.nextInt(300) : random.nextInt(3)];
+            String to = airports[random.nextInt(300)];
+            String key = from + "-" + to;
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                Assertions.assertTrue(graph.insertEdge(from, to, i));
+                expected.put(key, i);
+            } else if (operation < 8) {
+                Assertions.assertEquals(expected.remove(key) != null, graph.removeEdge(from, to));
+            } else {
+                Assertions.assertEquals(expected.containsKey(key), graph.containsEdge(from, to));
+                if (expected.containsKey(key))
+                    Assertions.assertEquals(expected.get(key), graph.getEdge(from, to));
+                else
+                    Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdge(from, to));
+            }
+        }
+        Assertions.assertEquals(expected.size(), graph.getEdgeCount());
+
+        //Removing a node must remove its entering edges from the hubs' indexes
+        graph.removeNode(airports[150]);
+        for (int hub = 0; hub < 3; hub++) {
+            Assertions.assertFalse(graph.containsEdge(airports[hub], airports[150]));
+            Assertions.assertEquals(expected.containsKey(airports[hub] + "-" + airports[151]),
+                    graph.containsEdge(airports[hub], airports[151]));
+        }
+        Assertions.assertFalse(graph.containsEdge(airports[0], "Nowhere"));
+        Assertions.assertFalse(graph.removeEdge("Nowhere", airports[0]));
+
+        expected.keySet().removeIf(key -> key.startsWith(airports[150] + "-") || key.endsWith("-" + airports[150]));
+
+        //Exactly the nodes with too many edges to scan have an index, kept up to date by changes
+        for (BaseGraph<String, Integer>.Node node : graph.nodeSet)
+            Assertions.assertEquals(node.edgesLeaving.size() > 8, node.successorIndex != null);
+
+        //Lookups only read the indexes, so hubs whose edges were just removed can be read from
+        //many threads at once
+        for (int i = 0; i < 40; i++)
+            if (graph.removeEdge(airports[i % 3], airports[160 + i]))
+                expected.remove(airports[i % 3] + "-" + airports[160 + i]);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    for (int hub = 0; hub < 3; hub++)
+                        for (String to : airports)
+                            Assertions.assertEquals(expected.containsKey(airports[hub] + "-" + to),
+                                    graph.containsEdge(airports[hub], to));
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread reader : readers)
+            reader.start();
+        for (Thread reader : readers)
+            reader.join();
+        Assertions.assertTrue(failures.isEmpty(), failures.toString());
+
+        //The hub of an undirected graph keeps its index through removals and compacting
+        DijkstraGraph<String, Integer> undirected = new DijkstraGraph<>(new PlaceholderMap<>(), DaryHeap::new, true);
+        for (String airport : airports)
+            undirected.insertNode(airport);
+        for (int i = 1; i < 40; i++)
+            undirected.insertEdge(airports[i], airports[0], i);
+        undirected.removeEdge(airports[0], airports[5]);
+        undirected.removeNode(airports[6]);
+        undirected.closeNodes(List.of(airports[7], airports[8]));
+        undirected.compact();
+        for (int i = 1; i < 40; i++) {
+            boolean kept = i < 5 || i > 8;
+            Assertions.assertEquals(kept, undirected.containsEdge(airports[0], airports[i]));
+            Assertions.assertEquals(kept, undirected.containsEdge(airports[i], airports[0]));
+        }
+        Assertions.assertNotNull(undirected.nodes.get(airports[0]).successorIndex);
+    }
+
+    /**
+     * Tests that GraphBuilder builds graphs with the same nodes, edges and shortest paths as
+     * inserting them into a DijkstraGraph, including when edges are added more than once
+     */
+    @Test
+    public void testGraphBuilder() {
+        GraphBuilder<String, Integer> builder = new GraphBuilder<>();
+        builder.addNodes(new String[] {"A", "B", "C", "D", "E", "F"});
+        builder.addEdge("A", "B", 7);
+        builder.addEdges(new String[] {"A", "B", "C", "D", "E"}, new String[] {"C", "F", "D", "E", "F"},
+                new Integer[] {2, 3, 2, 2, 2});
+        //The last weight added for an edge replaces the earlier ones
+        builder.addEdge("A", "B", 1);
+        CSRGraph<String, Integer> graph = builder.build();
+        checkSampleQueries(graph);
+        Assertions.assertEquals(6, graph.getNodeCount());
+        Assertions.assertEquals(6, graph.getEdgeCount());
+        Assertions.assertEquals(1, graph.getEdge("A", "B"));
+        Assertions.assertEquals(7, builder.getAddedEdgeCount());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> builder.addEdges(new String[] {"A"}, new String[0], new Integer[0]));
+
+        //Later additions do not change graphs already built
+        builder.addEdge("F", "G", 1);
+        Assertions.assertFalse(graph.containsNode("G"));
+        Assertions.assertTrue(builder.build().containsEdge("F", "G"));
+
+        //Routes added as a stream match the same routes inserted into a DijkstraGraph
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 10);
+        String[] airports = GraphBenchmark.airportNames(500);
+        int[][] routes = GraphBenchmark.syntheticRoutes(500, 6, 10);
+        GraphBuilder<String, Integer> routeBuilder = new GraphBuilder<>(500, 4 * routes.length);
+        routeBuilder.addNodes(Arrays.stream(airports));
+        routeBuilder.addEdges(Arrays.stream(routes), route -> airports[route[0]], route -> airports[route[1]],
+                route -> route[2]);
+        routeBuilder.addEdges(Arrays.stream(routes), route -> airports[route[1]], route -> airports[route[0]],
+                route -> route[2]);
+        CSRGraph<String, Integer> built = routeBuilder.build();
+        Assertions.assertEquals(original.getNodeCount(), built.getNodeCount());
+        Assertions.assertEquals(original.getEdgeCount(), built.getEdgeCount());
+        for (BaseGraph<String, Integer>.Node node : original.nodeSet)
+            for (BaseGraph<String, Integer>.Edge edge : node.edgesLeaving)
+                Assertions.assertEquals(edge.data, built.getEdge(node.data, edge.successor.data));
+        checkRandomQueries(original, built, airports);
+    }
+
+    /**
+     * Tests that an undirected DijkstraGraph, with each route inserted once, finds the same
+     * shortest paths and counts the same edges as a directed one with both directions inserted
+     */
+    @Test
+    public void testUndirectedGraph() {
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 11);
+        String[] airports = GraphBenchmark.airportNames(500);
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>(new PlaceholderMap<>(), DaryHeap::new, true);
+        for (String airport : airports)
+            graph.insertNode(airport);
+        for (int[] route : GraphBenchmark.syntheticRoutes(500, 6, 11))
+            graph.insertEdge(airports[route[0]], airports[route[1]], route[2]);
+        Assertions.assertTrue(graph.isUndirected());
+        Assertions.assertEquals(original.getEdgeCount(), graph.getEdgeCount());
+        checkRandomQueries(original, graph, airports);
+        checkRandomQueries(original, new CSRGraph<>(graph), airports);
+        for (BaseGraph<String, Integer>.Node node : graph.nodeSet)
+            Assertions.assertTrue(node.edgesEntering.isEmpty());
+
+        //Each route is one edge, so changing one direction changes the other
+        String from = airports[0];
+        String to = graph.nodes.get(from).edgesLeaving.get(0).successor.data;
+        graph.insertEdge(to, from, 1);
+        Assertions.assertEquals(1, graph.getEdge(from, to));
+        Assertions.assertEquals(original.getEdgeCount(), graph.getEdgeCount());
+        Assertions.assertEquals("[" + to + ", " + from + "]", graph.shortestPathData(to, from).toString());
+        Assertions.assertEquals("[" + from + ", " + to + "]", graph.shortestPath(from, to).getNodes().toString());
+        Assertions.assertTrue(graph.removeEdge(to, from));
+        Assertions.assertFalse(graph.containsEdge(from, to));
+        Assertions.assertFalse(graph.removeEdge(from, to));
+        Assertions.assertEquals(original.getEdgeCount() - 2, graph.getEdgeCount());
+
+        //Removing a node removes its routes from its neighbors
+        graph.removeNode(airports[7]);
+        for (BaseGraph<String, Integer>.Node node : graph.nodeSet)
+            for (BaseGraph<String, Integer>.Edge edge : node.edgesLeaving)
+                Assertions.assertTrue(edge.predecessor.data != airports[7] && edge.successor.data != airports[7]);
+
+        //A loop is a single edge
+        graph.insertEdge(airports[1], airports[1], 5);
+        Assertions.assertEquals(original.getEdgeCount() - 1, graph.getEdgeCount());
+        Assertions.assertEquals(0, graph.shortestPathCost(airports[1], airports[1]));
+    }
+
+    /**
+     * Tests that closed airports and flights are skipped by searches just as if they had been
+     * removed, that reopening them restores the original paths, and that compacting the graph
+     * removes them for good
+     */
+    @Test
+    public void testClosures() {
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 12);
+        String[] airports = GraphBenchmark.airportNames(500);
+        List<String> hubs = new ArrayList<>();
+        List<String> open = new ArrayList<>();
+        for (int i = 0; i < airports.length; i++)
+            (i % 50 == 0 ? hubs : open).add(airports[i]);
+        String[] openAirports = open.toArray(new String[0]);
+        DijkstraGraph<String, Integer> removed = copyGraph(original, new DijkstraGraph<>(new PlaceholderMap<>()));
+        for (String hub : hubs)
+            removed.removeNode(hub);
+
+        //Closed airports are skipped, but stay in the graph
+        DijkstraGraph<String, Integer> graph = copyGraph(original, new DijkstraGraph<>(new PlaceholderMap<>()));
+        Assertions.assertEquals(hubs.size(), graph.closeNodes(hubs));
+        Assertions.assertEquals(0, graph.closeNodes(hubs));
+        Assertions.assertEquals(0, graph.closeNodes(List.of("not an airport")));
+        Assertions.assertEquals(hubs.size(), graph.getClosedNodeCount());
+        Assertions.assertEquals(original.getNodeCount(), graph.getNodeCount());
+        Assertions.assertTrue(graph.containsNode(hubs.get(0)));
+        checkRandomQueries(removed, graph, openAirports);
+        checkRandomQueries(removed, new CSRGraph<>(graph), openAirports);
+        Assertions.assertEquals(removed.getNodeCount(), new CSRGraph<>(graph).getNodeCount());
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost(hubs.get(1), openAirports[0]));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost(openAirports[0], hubs.get(1)));
+
+        //Reopening them restores the original paths
+        Assertions.assertEquals(hubs.size(), graph.reopenNodes(hubs));
+        Assertions.assertEquals(0, graph.getClosedNodeCount());
+        checkRandomQueries(original, graph, airports);
+
+        //Closing flights skips them like removing them does
+        String[] preds = new String[20];
+        String[] succs = new String[20];
+        for (int i = 0; i < preds.length; i++) {
+            preds[i] = openAirports[i * 7];
+            succs[i] = removed.nodes.get(preds[i]).edgesLeaving.get(0).successor.data;
+            removed.removeEdge(preds[i], succs[i]);
+        }
+        Assertions.assertEquals(preds.length, graph.closeEdges(preds, succs));
+        Assertions.assertEquals(0, graph.closeEdges(preds, succs));
+        Assertions.assertEquals(preds.length, graph.getClosedEdgeCount());
+        Assertions.assertTrue(graph.containsEdge(preds[0], succs[0]));
+        graph.closeNodes(hubs);
+        checkRandomQueries(removed, graph, openAirports);
+
+        //Compacting removes the closed airports and flights for good
+        Assertions.assertEquals(hubs.size(), graph.compact());
+        Assertions.assertEquals(0, graph.getClosedNodeCount());
+        Assertions.assertEquals(0, graph.getClosedEdgeCount());
+        Assertions.assertEquals(removed.getNodeCount(), graph.getNodeCount());
+        int edgeCount = 0;
+        for (BaseGraph<String, Integer>.Node node : removed.nodeSet)
+            edgeCount += node.edgesLeaving.size();
+        Assertions.assertEquals(edgeCount, graph.getEdgeCount());
+        Assertions.assertFalse(graph.containsNode(hubs.get(0)));
+        Assertions.assertFalse(graph.containsEdge(preds[0], succs[0]));
+        Assertions.assertEquals(0, graph.reopenNodes(hubs));
+        checkRandomQueries(removed, graph, openAirports);
+
+        //The other search engines skip closed airports too
+        List<DijkstraGraph<String, Integer>> engines = List.of(
+                copyGraph(original, new AStarGraph<>(new PlaceholderMap<>())),
+                copyGraph(original, new BidirectionalDijkstraGraph<>(new PlaceholderMap<>())),
+                copyGraph(original, new ContractionHierarchyGraph<>(new PlaceholderMap<>())));
+        DijkstraGraph<String, Integer> removedHubs = copyGraph(original, new DijkstraGraph<>(new PlaceholderMap<>()));
+        for (String hub : hubs)
+            removedHubs.removeNode(hub);
+        for (DijkstraGraph<String, Integer> engine : engines) {
+            checkRandomQueries(original, engine, airports);
+            engine.closeNodes(hubs);
+            checkRandomQueries(removedHubs, engine, openAirports);
+            engine.reopenNodes(hubs);
+            checkRandomQueries(original, engine, airports);
+        }
+
+        //A* keeps using coordinates after closed airports are compacted away
+        AStarGraph<String, Integer> astar = copyGraph(original, new AStarGraph<>(new PlaceholderMap<>()));
+        double[][] coordinates = GraphBenchmark.airportCoordinates(airports.length, 12);
+        for (int i = 0; i < airports.length; i++)
+            astar.setCoordinates(airports[i], coordinates[i][0], coordinates[i][1]);
+        Assertions.assertTrue(astar.hasAllCoordinates());
+        astar.closeNodes(hubs);
+        Assertions.assertEquals(hubs.size(), astar.compact());
+        Assertions.assertTrue(astar.hasAllCoordinates());
+        checkRandomQueries(removedHubs, astar, openAirports);
+        //a new airport without coordinates turns A* off rather than reading a stale id
+        astar.insertNode("ZZZZ");
+        astar.insertEdge(openAirports[0], "ZZZZ", 1);
+        Assertions.assertFalse(astar.hasAllCoordinates());
+        Assertions.assertEquals(1, astar.shortestPathCost(openAirports[0], "ZZZZ"));
+    }
+
+    /**
+     * Tests that VersionedGraph only shows changes once they are published, and that a version
+     * keeps giving the same answers after later versions are published
+     */
+    @Test
+    public void testVersionedGraph() {
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 13);
+        String[] airports = GraphBenchmark.airportNames(500);
+        VersionedGraph<String, Integer> graph = copyGraph(original, new VersionedGraph<>());
+        Assertions.assertEquals(0, graph.getNodeCount());
+        VersionedGraph<String, Integer>.Version first = graph.publish();
+        Assertions.assertEquals(1, first.getVersion());
+        Assertions.assertSame(first, graph.publish());
+        Assertions.assertEquals(original.getNodeCount(), graph.getNodeCount());
+        Assertions.assertEquals(original.getEdgeCount(), graph.getEdgeCount());
+        checkRandomQueries(original, graph, airports);
+        checkSampleQueries(copyGraph(sampleGraph(), new VersionedGraph<>()).publish());
+
+        //Changes only show up once they are published, and earlier versions keep their answers
+        DijkstraGraph<String, Integer> changed = copyGraph(original, new DijkstraGraph<>(new PlaceholderMap<>()));
+        for (int i = 0; i < 20; i++) {
+            String pred = airports[i * 11];
+            String succ = changed.nodes.get(pred).edgesLeaving.get(0).successor.data;
+            Assertions.assertTrue(graph.removeEdge(pred, succ));
+            changed.removeEdge(pred, succ);
+        }
+        graph.insertEdge(airports[3], airports[480], 1);
+        changed.insertEdge(airports[3], airports[480], 1);
+        Assertions.assertTrue(graph.removeNode(airports[9]));
+        changed.removeNode(airports[9]);
+        Assertions.assertFalse(graph.insertEdge(airports[9], airports[3], 1));
+        Assertions.assertTrue(graph.containsNode(airports[9]));
+        checkRandomQueries(original, graph, airports);
+        VersionedGraph<String, Integer>.Version second = graph.publish();
+        Assertions.assertEquals(2, second.getVersion());
+        Assertions.assertFalse(graph.containsNode(airports[9]));
+        Assertions.assertEquals(1, graph.shortestPathCost(airports[3], airports[480]));
+        int edgeCount = 0;
+        for (BaseGraph<String, Integer>.Node node : changed.nodeSet)
+            edgeCount += node.edgesLeaving.size();
+        Assertions.assertEquals(edgeCount, graph.getEdgeCount());
+        Assertions.assertEquals(original.getEdgeCount(), first.getEdgeCount());
+        checkRandomQueries(original, first, airports);
+        String[] remaining = Arrays.stream(airports).filter(a -> !a.equals(airports[9])).toArray(String[]::new);
+        checkRandomQueries(changed, graph, remaining);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.insertNode("XYZ"));
+
+        //A node inserted again keeps its id, without its old edges
+        Assertions.assertTrue(graph.insertNode(airports[9]));
+        graph.publish();
+        Assertions.assertTrue(graph.containsNode(airports[9]));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost(airports[9], airports[3]));
+        Assertions.assertFalse(second.containsNode(airports[9]));
+    }
+
+    /**
+     * Runs queries on several threads while another thread keeps changing and publishing a
+     * VersionedGraph, then replays the changes one version at a time into a DijkstraGraph and
+     * checks every query's answer against that version
+     */
+    @Test
+    public void testVersionedGraphConcurrentUpdates() throws InterruptedException {
+        int count = 300;
+        int versions = 200;
+        String[] airports = GraphBenchmark.airportNames(count);
+        DijkstraGraph<String, Integer> initial = GraphBenchmark.syntheticNetwork(count, 4, 14);
+        VersionedGraph<String, Integer> graph = copyGraph(initial, new VersionedGraph<>());
+        graph.publish();
+
+        //The writer applies random changes, recording the changes published in each version;
+        //a batch that changes nothing publishes no new version
+        HashMap<Long, List<Object[]>> changes = new HashMap<>();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(15);
+            for (int v = 2; v < versions; v++) {
+                List<Object[]> batch = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    String a = airports[random.nextInt(count)];
+                    String b = airports[random.nextInt(count)];
+                    int kind = random.nextInt(10);
+                    if (kind < 5) {
+                        int weight = 1 + random.nextInt(1000);
+                        graph.insertEdge(a, b, weight);
+                        batch.add(new Object[] {"insertEdge", a, b, weight});
+                    } else if (kind < 8) {
+                        graph.removeEdge(a, b);
+                        batch.add(new Object[] {"removeEdge", a, b});
+                    } else if (kind < 9) {
+                        graph.removeNode(a);
+                        batch.add(new Object[] {"removeNode", a});
+                    } else {
+                        graph.insertNode(a);
+                        batch.add(new Object[] {"insertNode", a});
+                    }
+                }
+                long published = graph.publish().getVersion();
+                synchronized (changes) {
+                    changes.computeIfAbsent(published, p -> new ArrayList<>()).addAll(batch);
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        //Each reader records the version, query and answer of every query it runs
+        List<Object[]> answers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Random random = new Random(16 + r);
+            readers.add(new Thread(() -> {
+                try {
+                    while (writer.isAlive()) {
+                        VersionedGraph<String, Integer>.Version version = graph.current();
+                        String start = airports[random.nextInt(count)];
+                        String end = airports[random.nextInt(count)];
+                        Object[] answer;
+                        try {
+                            answer = new Object[] {version.getVersion(), start, end,
+                                version.shortestPathCost(start, end), version.shortestPathData(start, end)};
+                        } catch (NoSuchElementException e) {
+                            answer = new Object[] {version.getVersion(), start, end, Double.NaN, null};
+                        }
+                        synchronized (answers) {
+                            answers.add(answer);
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        writer.start();
+        for (Thread reader : readers)
+            reader.start();
+        writer.join();
+        for (Thread reader : readers)
+            reader.join();
+        Assertions.assertTrue(failures.isEmpty(), failures.toString());
+        long latest = graph.current().getVersion();
+
+        //Replay the changes one version at a time, checking each version's answers
+        HashMap<Long, List<Object[]>> byVersion = new HashMap<>();
+        for (Object[] answer : answers)
+            byVersion.computeIfAbsent((Long) answer[0], v -> new ArrayList<>()).add(answer);
+        Assertions.assertTrue(byVersion.size() > 10, "queries only saw " + byVersion.size() + " versions");
+        DijkstraGraph<String, Integer> oracle = copyGraph(initial, new DijkstraGraph<>(new PlaceholderMap<>()));
+        for (long v = 1; v <= latest; v++) {
+            for (Object[] change : changes.getOrDefault(v, List.of())) {
+                String a = (String) change[1];
+                switch ((String) change[0]) {
+                    case "insertEdge" -> {
+                        if (oracle.containsNode(a) && oracle.containsNode((String) change[2]))
+                            oracle.insertEdge(a, (String) change[2], (Integer) change[3]);
+                    }
+                    case "removeEdge" -> oracle.removeEdge(a, (String) change[2]);
+                    case "removeNode" -> oracle.removeNode(a);
+                    default -> oracle.insertNode(a);
+                }
+            }
+            for (Object[] answer : byVersion.getOrDefault(v, List.of())) {
+                String start = (String) answer[1];
+                String end = (String) answer[2];
+                double expected;
+                try {
+                    expected = oracle.shortestPathCost(start, end);
+                } catch (NoSuchElementException e) {
+                    expected = Double.NaN;
+                }
+                Assertions.assertEquals(expected, (double) answer[3], "version " + v + ": " + start + " to " + end);
+                if (answer[4] == null)
+                    continue;
+                @SuppressWarnings("unchecked")
+                List<String> path = (List<String>) answer[4];
+                Assertions.assertEquals(start, path.get(0));
+                Assertions.assertEquals(end, path.get(path.size() - 1));
+                double cost = 0;
+                for (int i = 0; i < path.size() - 1; i++)
+                    cost += oracle.getEdge(path.get(i), path.get(i + 1));
+                Assertions.assertEquals(expected, cost);
+            }
+        }
+    }
+
+    /**
+     * Changes a ContractionHierarchyGraph and a LandmarkGraph directly, and then queries each of
+     * them from several threads at once, so that the threads all find their preprocessing stale
+     * together, and checks every answer against DijkstraGraph
+     */
+    @Test
+    public void testConcurrentPreprocessing() throws InterruptedException {
+        int count = 400;
+        String[] airports = GraphBenchmark.airportNames(count);
+        DijkstraGraph<String, Integer> oracle = GraphBenchmark.syntheticNetwork(count, 6, 27);
+        ContractionHierarchyGraph<String, Integer> hierarchy =
+                copyGraph(oracle, new ContractionHierarchyGraph<>(new PlaceholderMap<>()));
+        LandmarkGraph<String, Integer> landmarks = copyGraph(oracle, new LandmarkGraph<>(new PlaceholderMap<>(), 4));
+        List<DijkstraGraph<String, Integer>> graphs = List.of(oracle, hierarchy, landmarks);
+        Random random = new Random(28);
+        for (int round = 0; round < 6; round++) {
+            String pred = airports[random.nextInt(count)];
+            String succ = airports[random.nextInt(count)];
+            int weight = 1 + random.nextInt(50);
+            List<String> closed = List.of(airports[random.nextInt(count)]);
+            for (DijkstraGraph<String, Integer> graph : graphs) {
+                graph.insertEdge(pred, succ, weight);
+                if (round % 2 == 0)
+                    graph.closeNodes(closed);
+                else
+                    graph.reopenNodes(closed);
+            }
+            String[][] queries = new String[200][];
+            double[] expected = new double[queries.length];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = new String[] {airports[random.nextInt(count)], airports[random.nextInt(count)]};
+                try {
+                    expected[i] = oracle.shortestPathCost(queries[i][0], queries[i][1]);
+                } catch (NoSuchElementException e) {
+                    expected[i] = Double.NaN;
+                }
+            }
+            List<Throwable> failures = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (DijkstraGraph<String, Integer> graph : List.of(hierarchy, landmarks)) {
+                for (int t = 0; t < 4; t++) {
+                    int first = t;
+                    threads.add(new Thread(() -> {
+                        try {
+                            for (int i = first; i < queries.length; i += 4) {
+                                double cost;
+                                try {
+                                    cost = graph.shortestPathCost(queries[i][0], queries[i][1]);
+                                } catch (NoSuchElementException e) {
+                                    cost = Double.NaN;
+                                }
+                                Assertions.assertEquals(expected[i], cost, queries[i][0] + " to " + queries[i][1]);
+                            }
+                        } catch (Throwable e) {
+                            synchronized (failures) {
+                                failures.add(e);
+                            }
+                        }
+                    }));
+                }
+            }
+            for (Thread thread : threads)
+                thread.start();
+            for (Thread thread : threads)
+                thread.join();
+            Assertions.assertTrue(failures.isEmpty(), failures.toString());
+        }
+    }
+
+    /**
+     * Tests that shortestPathsFrom finds the same paths with one search as separate searches do,
+     * for directed and undirected graphs, with null for end nodes that cannot be reached
+     */
+    @Test
+    public void testShortestPathsFrom() {
+        DijkstraGraph<String, Integer> original = GraphBenchmark.syntheticNetwork(500, 6, 17);
+        String[] airports = GraphBenchmark.airportNames(500);
+        DijkstraGraph<String, Integer> undirected = new DijkstraGraph<>(new PlaceholderMap<>(), DaryHeap::new, true);
+        for (String airport : airports)
+            undirected.insertNode(airport);
+        for (int[] route : GraphBenchmark.syntheticRoutes(500, 6, 17))
+            undirected.insertEdge(airports[route[0]], airports[route[1]], route[2]);
+        Random random = new Random(18);
+        for (DijkstraGraph<String, Integer> graph : List.of(original, undirected)) {
+            for (int i = 0; i < 20; i++) {
+                String start = airports[random.nextInt(airports.length)];
+                List<String> ends = new ArrayList<>();
+                for (int j = 0; j < 30; j++)
+                    ends.add(airports[random.nextInt(airports.length)]);
+                ends.add(start);
+                ends.add(ends.get(0));
+                List<GraphPath<String, Integer>> paths = graph.shortestPathsFrom(start, ends);
+                Assertions.assertEquals(ends.size(), paths.size());
+                for (int j = 0; j < ends.size(); j++) {
+                    GraphPath<String, Integer> expected = original.shortestPath(start, ends.get(j));
+                    Assertions.assertEquals(expected.getCost(), paths.get(j).getCost());
+                    Assertions.assertEquals(start, paths.get(j).getNodes().get(0));
+                    Assertions.assertEquals(ends.get(j), paths.get(j).getNodes().get(paths.get(j).getNodes().size() - 1));
+                    double cost = 0;
+                    for (int k = 0; k < paths.get(j).getEdges().size(); k++)
+                        cost += paths.get(j).getEdges().get(k);
+                    Assertions.assertEquals(expected.getCost(), cost);
+                }
+            }
+        }
+
+        //Missing, closed and unreachable end nodes have no path
+        original.insertNode("ZZZ");
+        original.closeNodes(List.of(airports[5]));
+        List<GraphPath<String, Integer>> paths =
+                original.shortestPathsFrom(airports[0], List.of("ZZZ", "YYY", airports[5], airports[6]));
+        Assertions.assertNull(paths.get(0));
+        Assertions.assertNull(paths.get(1));
+        Assertions.assertNull(paths.get(2));
+        Assertions.assertEquals(original.shortestPathCost(airports[0], airports[6]), paths.get(3).getCost());
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> original.shortestPathsFrom(airports[5], List.of(airports[6])));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> original.shortestPathsFrom("YYY", List.of(airports[6])));
+    }
+
+    /**
+     * Tests that the version of a graph grows with every change to it, and only then
+     */
+    @Test
+    public void testGraphVersion() {
+        DijkstraGraph<String, Integer> graph = sampleGraph();
+        long version = graph.getVersion();
+        Assertions.assertTrue(version > 0);
+        //Queries and failed changes leave the version alone
+        graph.shortestPath("A", "F");
+        Assertions.assertFalse(graph.insertNode("A"));
+        Assertions.assertFalse(graph.removeEdge("B", "A"));
+        Assertions.assertEquals(0, graph.closeNodes(List.of("Z")));
+        Assertions.assertEquals(0, graph.compact());
+        Assertions.assertEquals(version, graph.getVersion());
+
+        List<Runnable> changes = List.of(
+                () -> graph.insertNode("G"),
+                () -> graph.insertEdge("F", "G", 1),
+                () -> graph.insertEdge("F", "G", 5),
+                () -> graph.removeEdge("F", "G"),
+                () -> graph.closeNodes(List.of("B")),
+                () -> graph.reopenNodes(List.of("B")),
+                () -> graph.closeEdges(new String[] {"A"}, new String[] {"C"}),
+                () -> graph.compact(),
+                () -> graph.removeNode("G"));
+        for (Runnable change : changes) {
+            change.run();
+            Assertions.assertTrue(graph.getVersion() > version);
+            version = graph.getVersion();
+        }
+    }
+
+    /**
+     * Tests that searches resumed from paused searches find the same costs as fresh ones,
+     * settle no more nodes for destinations already settled, are dropped when the graph
+     * changes, and are not kept when they do not fit in their memory cap
+     */
+    @Test
+    public void testRetainedSearches() {
+        String[] airports = GraphBenchmark.airportNames(1000);
+        DijkstraGraph<String, Integer> fresh = GraphBenchmark.syntheticNetwork(1000, 6, 23);
+        DijkstraGraph<String, Integer> resumed = GraphBenchmark.syntheticNetwork(1000, 6, 23);
+        resumed.setRetainedSearches(4, 1 << 20);
+        Random random = new Random(24);
+        for (int i = 0; i < 300; i++) {
+            //a few start airports, so that paused searches are both resumed and evicted
+            String start = airports[random.nextInt(6)];
+            String end = airports[random.nextInt(airports.length)];
+            Assertions.assertEquals(fresh.shortestPathCost(start, end), resumed.shortestPathCost(start, end));
+            List<String> path = resumed.shortestPathData(start, end);
+            Assertions.assertEquals(0, resumed.getLastSettledCount());
+            Assertions.assertEquals(start, path.get(0));
+            Assertions.assertEquals(end, path.get(path.size() - 1));
+            double cost = 0;
+            for (int j = 0; j < path.size() - 1; j++)
+                cost += resumed.getEdge(path.get(j), path.get(j + 1));
+            Assertions.assertEquals(fresh.shortestPathCost(start, end), cost);
+        }
+
+        //the settled count of a resumed search only counts the nodes it settled itself
+        resumed.shortestPathCost(airports[10], airports[999]);
+        int settled = resumed.getLastSettledCount();
+        resumed.shortestPathCost(airports[10], airports[500]);
+        fresh.shortestPathCost(airports[10], airports[500]);
+        Assertions.assertTrue(resumed.getLastSettledCount() <= Math.max(0, fresh.getLastSettledCount() - settled));
+
+        //a shortcut added after the search was paused is found
+        resumed.insertEdge(airports[10], airports[999], 1);
+        Assertions.assertEquals(1, resumed.shortestPathCost(airports[10], airports[999]));
+        resumed.closeNodes(List.of(airports[999]));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> resumed.shortestPathCost(airports[10], airports[999]));
+        resumed.reopenNodes(List.of(airports[999]));
+
+        //searches too large to keep start over every time
+        resumed.setRetainedSearches(4, 100);
+        resumed.shortestPathCost(airports[20], airports[999]);
+        resumed.shortestPathCost(airports[20], airports[999]);
+        Assertions.assertTrue(resumed.getLastSettledCount() > 0);
+
+        //an unreachable node is not found by a paused search either
+        resumed.setRetainedSearches(4, 1 << 20);
+        resumed.insertNode("ZZZ");
+        Assertions.assertThrows(NoSuchElementException.class, () -> resumed.shortestPathCost(airports[0], "ZZZ"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> resumed.shortestPathCost(airports[0], "ZZZ"));
+        Assertions.assertEquals(0, resumed.getLastSettledCount());
+
+        //searches guided by landmarks keep their bounds by starting over every time
+        LandmarkGraph<String, Integer> landmarks = copyGraph(fresh, new LandmarkGraph<>(new PlaceholderMap<>(), 4));
+        landmarks.setRetainedSearches(4, 1 << 20);
+        landmarks.shortestPathCost(airports[30], airports[999]);
+        int guided = landmarks.getLastSettledCount();
+        Assertions.assertEquals(fresh.shortestPathCost(airports[30], airports[999]),
+                landmarks.shortestPathCost(airports[30], airports[999]));
+        Assertions.assertEquals(guided, landmarks.getLastSettledCount());
+        Assertions.assertTrue(guided > 0);
+    }
+
+    /**
+     * Tests that bounded searches forwards and backwards find exactly the nodes within their
+     * budget, in increasing order of cost, with the same costs and valid paths as separate
+     * searches, and only settle the nodes that are taken from them
+     */
+    @Test
+    public void testBoundedSearches() {
+        //one-way routes, so that reaching a node and being reached from it differ
+        String[] airports = GraphBenchmark.airportNames(400);
+        DijkstraGraph<String, Integer> directed = new DijkstraGraph<>(new PlaceholderMap<>());
+        DijkstraGraph<String, Integer> undirected = new DijkstraGraph<>(new PlaceholderMap<>(), DaryHeap::new, true);
+        for (String airport : airports) {
+            directed.insertNode(airport);
+            undirected.insertNode(airport);
+        }
+        Random random = new Random(25);
+        for (int i = 0; i < 1600; i++) {
+            int from = random.nextInt(airports.length);
+            int to = random.nextInt(airports.length);
+            int miles = 100 + random.nextInt(900);
+            directed.insertEdge(airports[from], airports[to], miles);
+            undirected.insertEdge(airports[from], airports[to], miles);
+        }
+        directed.closeNodes(List.of(airports[7]));
+
+        for (DijkstraGraph<String, Integer> graph : List.of(directed, undirected)) {
+            for (int q = 0; q < 10; q++) {
+                String origin = airports[q * 13];
+                double budget = 500 + random.nextInt(2500);
+                for (boolean reverse : new boolean[] {false, true}) {
+                    DijkstraGraph<String, Integer>.BoundedSearch search =
+                            reverse ? graph.reachableTo(origin, budget) : graph.reachableFrom(origin, budget);
+                    search.settleAll();
+                    HashMap<String, Integer> index = new HashMap<>();
+                    for (int i = 0; i < search.getCount(); i++) {
+                        index.put(search.getNode(i), i);
+                        Assertions.assertTrue(search.getCost(i) <= budget);
+                        Assertions.assertTrue(i == 0 || search.getCost(i) >= search.getCost(i - 1));
+                        Assertions.assertTrue(search.getParent(i) < i);
+                        //the path's edges add up to the node's cost
+                        List<String> path = search.getPath(i);
+                        double cost = 0;
+                        for (int j = 0; j < path.size() - 1; j++)
+                            cost += graph.getEdge(path.get(j), path.get(j + 1));
+                        Assertions.assertEquals(search.getCost(i), cost);
+                        Assertions.assertEquals(origin, reverse ? path.get(path.size() - 1) : path.get(0));
+                    }
+                    Assertions.assertEquals(origin, search.getNode(0));
+                    for (String airport : airports) {
+                        double expected;
+                        try {
+                            expected = reverse ? graph.shortestPathCost(airport, origin)
+                                    : graph.shortestPathCost(origin, airport);
+                        } catch (NoSuchElementException e) {
+                            expected = Double.POSITIVE_INFINITY;
+                        }
+                        if (expected <= budget)
+                            Assertions.assertEquals(expected, search.getCost(index.get(airport)));
+                        else
+                            Assertions.assertNull(index.get(airport));
+                    }
+                }
+            }
+        }
+
+        //a stream that is cut short only settles what it took
+        DijkstraGraph<String, Integer>.BoundedSearch search = directed.reachableFrom(airports[0], 1e9);
+        Assertions.assertEquals(5, search.stream().limit(5).count());
+        Assertions.assertEquals(5, search.getCount());
+        Assertions.assertTrue(search.hasNext());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> search.getCost(5));
+        Assertions.assertFalse(directed.reachableFrom(airports[0], -1).hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, () -> directed.reachableFrom(airports[7], 1000));
+        Assertions.assertThrows(NoSuchElementException.class, () -> directed.reachableTo("XYZ", 1000));
+    }
+
+    /**
+     * Miles that count how many times searches read them, to measure how much of a graph a
+     * search explored
+     */
+    private static class CountedMiles extends Number {
+        private static final long serialVersionUID = 1L;
+        static int reads = 0;
+        private final int miles;
+
+        CountedMiles(int miles) {
+            this.miles = miles;
+        }
+
+        public double doubleValue() {
+            reads++;
+            return miles;
+        }
+
+        public int intValue() {
+            return miles;
+        }
+
+        public long longValue() {
+            return miles;
+        }
+
+        public float floatValue() {
+            return miles;
+        }
+    }
+
+    /**
+     * Tests that destinationsFrom lists every reachable destination once, in increasing order
+     * of cost, with the same costs and paths as separate searches, and that taking only the
+     * first few destinations only explores the nodes around the origin
+     */
+    @Test
+    public void testDestinationsFrom() {
+        String[] airports = GraphBenchmark.airportNames(2000);
+        DijkstraGraph<String, Integer> graph = GraphBenchmark.syntheticNetwork(2000, 6, 26);
+        graph.insertNode("ZZZ");
+        List<DijkstraGraph<String, Integer>.Destination> destinations =
+                graph.destinationsFrom(airports[0]).collect(java.util.stream.Collectors.toList());
+        Assertions.assertEquals(airports.length - 1, destinations.size());
+        for (int i = 0; i < destinations.size(); i++) {
+            DijkstraGraph<String, Integer>.Destination destination = destinations.get(i);
+            Assertions.assertEquals(i + 1, destination.getRank());
+            Assertions.assertNotEquals(airports[0], destination.getNode());
+            Assertions.assertEquals(graph.shortestPathCost(airports[0], destination.getNode()), destination.getCost());
+            Assertions.assertTrue(i == 0 || destination.getCost() >= destinations.get(i - 1).getCost());
+            if (i % 50 == 0) {
+                List<String> path = destination.getPath();
+                Assertions.assertEquals(airports[0], path.get(0));
+                Assertions.assertEquals(destination.getNode(), path.get(path.size() - 1));
+                double cost = 0;
+                for (int j = 0; j < path.size() - 1; j++)
+                    cost += graph.getEdge(path.get(j), path.get(j + 1));
+                Assertions.assertEquals(destination.getCost(), cost);
+            }
+        }
+
+        //the nearest 20 destinations read about as many edges as 20 nodes have
+        DijkstraGraph<String, CountedMiles> counted = new DijkstraGraph<>(new PlaceholderMap<>());
+        for (String airport : airports)
+            counted.insertNode(airport);
+        for (int[] route : GraphBenchmark.syntheticRoutes(2000, 6, 26)) {
+            counted.insertEdge(airports[route[0]], airports[route[1]], new CountedMiles(route[2]));
+            counted.insertEdge(airports[route[1]], airports[route[0]], new CountedMiles(route[2]));
+        }
+        CountedMiles.reads = 0;
+        Iterator<DijkstraGraph<String, CountedMiles>.Destination> nearest = counted.destinationsFrom(airports[0]).iterator();
+        for (int i = 0; i < 20; i++)
+            Assertions.assertEquals(destinations.get(i).getCost(), nearest.next().getCost());
+        Assertions.assertTrue(CountedMiles.reads < 21 * 40, CountedMiles.reads + " edges read");
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.destinationsFrom("XYZ"));
+        Assertions.assertEquals(0, graph.destinationsFrom("ZZZ").count());
+    }
+}
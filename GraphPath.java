@@ -0,0 +1,48 @@
+import java.util.List;
+
+/**
+ * A path through a graph that was found by a single shortest path search: the
+ * data of each node along it, the data of each edge between those nodes, and
+ * the total cost of those edges.
+ */
+public class GraphPath<NodeType, EdgeType extends Number> {
+
+    private List<NodeType> nodes;
+    private List<EdgeType> edges;
+    private double cost;
+
+    /**
+     * Constructor for a path
+     *
+     * @param nodes the data of each node along the path, from start to end
+     * @param edges the data of each edge along the path, so that edges.get(i)
+     *              connects nodes.get(i) to nodes.get(i+1)
+     * @param cost  the sum of the edge weights
+     */
+    public GraphPath(List<NodeType> nodes, List<EdgeType> edges, double cost) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.cost = cost;
+    }
+
+    /**
+     * @return the data of each node along the path, from start to end
+     */
+    public List<NodeType> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the data of each edge along the path, one fewer than the nodes
+     */
+    public List<EdgeType> getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return the total cost of the path
+     */
+    public double getCost() {
+        return cost;
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This class stores a graph of airports and flights read from a DOT file in a
+ * binary snapshot file, which can be loaded again much faster than the DOT
+ * file can be parsed. A snapshot holds each airport name once, the edges
+ * leaving each airport as indexes into those names with their miles, the
+ * airports' coordinates if the graph had them, and the miles of all flights
+ * in the DOT file.
+ *
+ * Snapshots start with a header holding a magic number, the format version,
+ * the length and modification time of the DOT file they were made from, and
+ * a CRC32 checksum of the rest of the file. read() returns null for a
+ * snapshot that is missing, of another version, corrupt, or made from a DOT
+ * file that has changed since, so that callers can fall back to the DOT file.
+ */
+public class GraphSnapshot {
+
+    // "FLTS", at the start of every snapshot
+    public static final int MAGIC = 0x464C5453;
+    // Changed whenever the format changes, so that old snapshots are ignored
+    public static final int VERSION = 1;
+    // magic, version, source length, source modification time, checksum and
+    // body length
+    protected static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8;
+
+    // The name of each airport, in the graph's node order
+    public String[] names;
+    // The edges leaving airport i are at offsets[i] until offsets[i+1]
+    public int[] offsets;
+    // The index of the airport each edge leads to
+    public int[] targets;
+    // The miles of each edge
+    public int[] miles;
+    // The latitude and longitude of each airport in degrees, NaN for airports
+    // without coordinates, or null if the graph had no coordinates
+    public double[] latitudes;
+    public double[] longitudes;
+    // The miles of all flights in the DOT file, counting each flight once
+    public long fileMiles;
+
+    /**
+     * Writes a snapshot of a graph. The snapshot is written to a temporary
+     * file first, which then replaces any existing snapshot, so readers never
+     * see a partly written one.
+     *
+     * @param snapshotPath the path of the snapshot file
+     * @param graph        the graph to store, whose edge weights must be
+     *                     whole numbers
+     * @param fileMiles    the miles of all flights in the DOT file
+     * @param source       the DOT file that the graph was read from
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(String snapshotPath, BaseGraph<String, ? extends Number> graph, long fileMiles,
+            File source) throws IOException {
+        Path target = Paths.get(snapshotPath).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            // the header is written last, once the checksum is known
+            channel.position(HEADER_BYTES);
+            CRC32 checksum = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), checksum));
+            writeBody(out, graph, fileMiles);
+            out.flush();
+            long bodyBytes = channel.position() - HEADER_BYTES;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(source.length()).putLong(source.lastModified())
+                    .putLong(checksum.getValue()).putLong(bodyBytes);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static <E extends Number> void writeBody(DataOutputStream out, BaseGraph<String, E> graph,
+            long fileMiles) throws IOException {
+        out.writeLong(fileMiles);
+        // node names, numbering the nodes in the graph's order
+        int[] indexById = new int[graph.nextNodeId];
+        out.writeInt(graph.nodeSet.size());
+        int index = 0;
+        for (BaseGraph<String, E>.Node node : graph.nodeSet) {
+            byte[] name = node.data.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            indexById[node.id] = index++;
+        }
+        // coordinates, if the graph has them
+        AStarGraph<String, E> aStar = graph instanceof AStarGraph
+                ? (AStarGraph<String, E>) graph : null;
+        out.writeBoolean(aStar != null);
+        if (aStar != null)
+            for (BaseGraph<String, E>.Node node : graph.nodeSet) {
+                boolean known = node.id < aStar.latitudes.length && !Double.isNaN(aStar.latitudes[node.id]);
+                out.writeDouble(known ? Math.toDegrees(aStar.latitudes[node.id]) : Double.NaN);
+                out.writeDouble(known ? Math.toDegrees(aStar.longitudes[node.id]) : Double.NaN);
+            }
+        // the edges leaving each node, in the order they were inserted
+        int edgeCount = 0;
+        for (BaseGraph<String, E>.Node node : graph.nodeSet)
+            edgeCount += node.edgesLeaving.size();
+        out.writeInt(edgeCount);
+        for (BaseGraph<String, E>.Node node : graph.nodeSet)
+            out.writeInt(node.edgesLeaving.size());
+        for (BaseGraph<String, E>.Node node : graph.nodeSet)
+            for (BaseGraph<String, E>.Edge edge : node.edgesLeaving) {
+                out.writeInt(indexById[graph.otherEnd(edge, node).id]);
+                out.writeInt(edge.data.intValue());
+            }
+    }
+
+    /**
+     * Reads a snapshot by mapping it into memory.
+     *
+     * @param snapshotPath the path of the snapshot file
+     * @param source       the DOT file that the snapshot should have been
+     *                     made from
+     * @return the snapshot's contents, or null if the snapshot does not exist,
+     *         has another format version, is corrupt, or was made from a
+     *         different version of the DOT file
+     * @throws IOException if the snapshot exists but cannot be read
+     */
+    public static GraphSnapshot read(String snapshotPath, File source) throws IOException {
+        Path path = Paths.get(snapshotPath);
+        if (!Files.isRegularFile(path))
+            return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+                return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                return null;
+            if (buffer.getLong() != source.length() || buffer.getLong() != source.lastModified())
+                return null; // the DOT file has changed
+            long expectedChecksum = buffer.getLong();
+            if (buffer.getLong() != size - HEADER_BYTES)
+                return null;
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice());
+            if (checksum.getValue() != expectedChecksum)
+                return null;
+            return readBody(buffer);
+        }
+    }
+
+    // parses the body, returning null if it is inconsistent
+    private static GraphSnapshot readBody(ByteBuffer buffer) {
+        try {
+            GraphSnapshot snapshot = new GraphSnapshot();
+            snapshot.fileMiles = buffer.getLong();
+            int nodeCount = buffer.getInt();
+            if (nodeCount < 0 || nodeCount > buffer.remaining() / 4)
+                return null;
+            snapshot.names = new String[nodeCount];
+            byte[] name = new byte[64];
+            for (int i = 0; i < nodeCount; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining())
+                    return null;
+                if (length > name.length)
+                    name = new byte[length];
+                buffer.get(name, 0, length);
+                snapshot.names[i] = new String(name, 0, length, StandardCharsets.UTF_8);
+            }
+            if (buffer.get() != 0) {
+                snapshot.latitudes = new double[nodeCount];
+                snapshot.longitudes = new double[nodeCount];
+                for (int i = 0; i < nodeCount; i++) {
+                    snapshot.latitudes[i] = buffer.getDouble();
+                    snapshot.longitudes[i] = buffer.getDouble();
+                }
+            }
+            int edgeCount = buffer.getInt();
+            if (edgeCount < 0 || edgeCount > buffer.remaining() / 8)
+                return null;
+            snapshot.offsets = new int[nodeCount + 1];
+            for (int i = 0; i < nodeCount; i++) {
+                int degree = buffer.getInt();
+                if (degree < 0 || degree > edgeCount - snapshot.offsets[i])
+                    return null;
+                snapshot.offsets[i + 1] = snapshot.offsets[i] + degree;
+            }
+            if (snapshot.offsets[nodeCount] != edgeCount)
+                return null;
+            snapshot.targets = new int[edgeCount];
+            snapshot.miles = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                snapshot.targets[i] = buffer.getInt();
+                snapshot.miles[i] = buffer.getInt();
+                if (snapshot.targets[i] < 0 || snapshot.targets[i] >= nodeCount)
+                    return null;
+            }
+            return buffer.hasRemaining() ? null : snapshot;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.NoSuchElementException;
+
+/**
+ * This abstract data type represents a priority queue of int items, in which
+ * each item appears at most once and the item with the lowest priority is
+ * removed first. Items are small non-negative ints (such as node ids), which
+ * lets implementations find an item's entry directly and lower its priority
+ * in place instead of adding a duplicate entry.
+ */
+public interface IndexedPriorityQueue {
+
+    /**
+     * Removes all items from this queue, and prepares it to hold items from
+     * 0 up to (but not including) capacity.
+     * @param capacity one more than the largest item that will be added
+     */
+    public void reset(int capacity);
+
+    /**
+     * Checks whether this queue is empty.
+     * @return true if no items are in this queue
+     */
+    public boolean isEmpty();
+
+    /**
+     * Retrieves the number of items in this queue.
+     * @return the number of items in this queue
+     */
+    public int size();
+
+    /**
+     * Checks whether an item is currently in this queue.
+     * @param item the item to check
+     * @return true if the item has been added and not yet removed
+     */
+    public boolean contains(int item);
+
+    /**
+     * Adds an item with the given priority, or if the item is already in
+     * this queue, lowers its priority to the given one.
+     * @param item the item to add
+     * @param priority the priority of the item
+     * @throws IllegalArgumentException if the item is already in this queue
+     *         with a lower priority, or the priority is not supported by
+     *         this queue
+     */
+    public void insertOrDecrease(int item, double priority);
+
+    /**
+     * Retrieves the lowest priority of any item in this queue.
+     * @return the priority of the item that pollMin() would remove
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public double minPriority() throws NoSuchElementException;
+
+    /**
+     * Removes the item with the lowest priority from this queue.
+     * @return the removed item
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public int pollMin() throws NoSuchElementException;
+
+}
@@ -0,0 +1,269 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class extends DijkstraGraph with A* searches guided by landmarks (the
+ * ALT algorithm). A few landmark nodes are chosen, far apart from each other,
+ * and the costs of the shortest paths from every landmark to every node and
+ * from every node to every landmark are computed ahead of time. By the
+ * triangle inequality, for any landmark L the cost from a node v to the end
+ * node t is at least d(L,t) - d(L,v) and at least d(v,L) - d(t,L), and the
+ * largest of these bounds steers searches towards the end node. Unlike
+ * AStarGraph, this needs nothing but the edge weights.
+ *
+ * The landmark distances are computed the first time a path is searched for,
+ * and again after any change to the graph's nodes or edges, since a change can
+ * make them wrong.
+ */
+public class LandmarkGraph<NodeType, EdgeType extends Number>
+        extends DijkstraGraph<NodeType, EdgeType> {
+
+    /**
+     * The chosen landmarks and their distances. Each time they are recomputed
+     * a new one is built and published in a single assignment, so searches
+     * running on other threads never see them half done.
+     */
+    protected class LandmarkTables {
+        // The chosen landmark nodes
+        public final List<Node> landmarks;
+        // fromLandmark[i][id] is the cost from landmark i to the node with that
+        // id, and toLandmark[i][id] the cost from that node to landmark i
+        public final double[][] fromLandmark;
+        public final double[][] toLandmark;
+
+        public LandmarkTables(List<Node> landmarks, double[][] fromLandmark, double[][] toLandmark) {
+            this.landmarks = landmarks;
+            this.fromLandmark = fromLandmark;
+            this.toLandmark = toLandmark;
+        }
+    }
+
+    // The number of landmarks to choose
+    protected int landmarkCount;
+    // The landmarks that searches use
+    protected volatile LandmarkTables tables = new LandmarkTables(new ArrayList<>(), new double[0][], new double[0][]);
+    // Whether the graph has changed since the landmark distances were computed
+    protected volatile boolean stale = true;
+    // Time taken by the last preprocessing, in nanoseconds
+    protected long preprocessingNanos = 0;
+
+    /**
+     * Constructor that sets the map that the graph uses, and how many
+     * landmarks to choose.
+     * @param map the map that the graph uses to map a data object to the node
+     *        object it is stored in
+     * @param landmarkCount the number of landmarks; more landmarks give better
+     *        bounds, but take more time and memory to compute and check
+     * @throws IllegalArgumentException if landmarkCount is negative
+     */
+    public LandmarkGraph(MapADT<NodeType, Node> map, int landmarkCount) {
+        super(map);
+        if (landmarkCount < 0)
+            throw new IllegalArgumentException("landmark count cannot be negative");
+        this.landmarkCount = landmarkCount;
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        boolean inserted = super.insertNode(data);
+        stale |= inserted;
+        return inserted;
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        boolean removed = super.removeNode(data);
+        stale |= removed;
+        return removed;
+    }
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        boolean inserted = super.insertEdge(pred, succ, weight);
+        stale |= inserted;
+        return inserted;
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        boolean removed = super.removeEdge(pred, succ);
+        stale |= removed;
+        return removed;
+    }
+
+    /**
+     * Chooses the landmarks and computes the distances between them and every
+     * node, if the graph has changed since this was last done. Each landmark
+     * after the first is the node farthest from the landmarks chosen so far.
+     * When several threads search a changed graph at once, one of them does
+     * this while the others wait for it.
+     */
+    public void preprocess() {
+        if (stale)
+            rebuild();
+    }
+
+    // recomputes the landmarks, unless another thread did while this one
+    // waited for the lock
+    private synchronized void rebuild() {
+        if (!stale)
+            return;
+        long start = System.nanoTime();
+        Node[] byId = newNodeArray(nextNodeId);
+        for (Node node : nodeSet)
+            byId[node.id] = node;
+        int count = Math.min(landmarkCount, nodeSet.size());
+        List<Node> landmarks = new ArrayList<>();
+        double[][] fromLandmark = new double[count][];
+        double[][] toLandmark = new double[count][];
+
+        // the round-trip cost between each node and its nearest landmark so far
+        double[] nearest = new double[nextNodeId];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        Node candidate = nodeSet.isEmpty() ? null : nodeSet.iterator().next();
+        if (candidate != null) {
+            // the first landmark is the node farthest from an arbitrary node
+            double[] distances = distancesFrom(candidate, byId, true);
+            candidate = farthest(distances, byId, landmarks);
+        }
+        for (int i = 0; i < count; i++) {
+            landmarks.add(candidate);
+            fromLandmark[i] = distancesFrom(candidate, byId, true);
+            toLandmark[i] = distancesFrom(candidate, byId, false);
+            for (int id = 0; id < nearest.length; id++)
+                nearest[id] = Math.min(nearest[id], fromLandmark[i][id] + toLandmark[i][id]);
+            candidate = farthest(nearest, byId, landmarks);
+        }
+        preprocessingNanos = System.nanoTime() - start;
+        tables = new LandmarkTables(landmarks, fromLandmark, toLandmark);
+        stale = false;
+    }
+
+    // returns the node with the largest distance that is not already a
+    // landmark, preferring finite distances
+    private Node farthest(double[] distances, Node[] byId, List<Node> landmarks) {
+        Node farthest = null;
+        for (int id = 0; id < distances.length; id++) {
+            if (byId[id] == null || landmarks.contains(byId[id]))
+                continue;
+            if (farthest == null || distances[farthest.id] == Double.POSITIVE_INFINITY
+                    || (distances[id] != Double.POSITIVE_INFINITY && distances[id] > distances[farthest.id]))
+                farthest = byId[id];
+        }
+        return farthest;
+    }
+
+    /**
+     * Computes the cost of the shortest path between a node and every other
+     * node, by running Dijkstra's algorithm until every reachable node is
+     * settled.
+     *
+     * @param source  the node to compute distances from or to
+     * @param byId    every node in the graph, indexed by id
+     * @param forward true for the costs of paths from the source, following
+     *                edgesLeaving, or false for the costs of paths to it,
+     *                following edgesEntering
+     * @return the cost of each path indexed by node id, or infinity for nodes
+     *         that are not connected to the source
+     */
+    protected double[] distancesFrom(Node source, Node[] byId, boolean forward) {
+        double[] dist = new double[byId.length];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[byId.length];
+        IndexedPriorityQueue queue = queueFactory.get();
+        queue.reset(byId.length);
+        dist[source.id] = 0;
+        queue.insertOrDecrease(source.id, 0);
+        while (!queue.isEmpty()) {
+            int currentId = queue.pollMin();
+            settled[currentId] = true;
+            List<Edge> edges = forward ? byId[currentId].edgesLeaving : byId[currentId].edgesEntering;
+            for (int i = 0; i < edges.size(); i++) {
+                Edge edge = edges.get(i);
+                Node neighbor = forward ? edge.successor : edge.predecessor;
+                double cost = dist[currentId] + edge.data.doubleValue();
+                if (!settled[neighbor.id] && cost < dist[neighbor.id]) {
+                    dist[neighbor.id] = cost;
+                    queue.insertOrDecrease(neighbor.id, cost);
+                }
+            }
+        }
+        return dist;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newNodeArray(int length) {
+        return (Node[]) new BaseGraph.Node[length];
+    }
+
+    /**
+     * Brings the landmark distances up to date before searching.
+     */
+    @Override
+    protected Node search(NodeType start, NodeType end, SearchWorkspace workspace) {
+        preprocess();
+        return super.search(start, end, workspace);
+    }
+
+    /**
+     * Returns the largest lower bound on the cost from a node to the end node
+     * that the triangle inequality gives for any landmark.
+     *
+     * @param node    the node to estimate the remaining cost from
+     * @param endNode the end node of the search
+     * @return a lower bound on the cost of a path from node to endNode
+     */
+    @Override
+    protected double estimate(Node node, Node endNode) {
+        LandmarkTables tables = this.tables;
+        double bound = 0;
+        for (int i = 0; i < tables.fromLandmark.length; i++) {
+            double[] from = tables.fromLandmark[i];
+            double[] to = tables.toLandmark[i];
+            // bounds involving a node that is not connected to the landmark
+            // say nothing, so they are skipped
+            if (from[node.id] != Double.POSITIVE_INFINITY && from[endNode.id] != Double.POSITIVE_INFINITY)
+                bound = Math.max(bound, from[endNode.id] - from[node.id]);
+            if (to[node.id] != Double.POSITIVE_INFINITY && to[endNode.id] != Double.POSITIVE_INFINITY)
+                bound = Math.max(bound, to[node.id] - to[endNode.id]);
+        }
+        return bound;
+    }
+
+    @Override
+    protected boolean usesEstimate() {
+        return landmarkCount > 0;
+    }
+
+    /**
+     * Returns the data of the chosen landmarks, computing them first if
+     * needed.
+     *
+     * @return the landmark nodes' data, in the order they were chosen
+     */
+    public List<NodeType> getLandmarks() {
+        preprocess();
+        List<NodeType> data = new ArrayList<>();
+        for (Node landmark : tables.landmarks)
+            data.add(landmark.data);
+        return data;
+    }
+
+    /**
+     * @return the time taken to choose the landmarks and compute their
+     *         distances the last time this was done, in milliseconds
+     */
+    public double getPreprocessingMillis() {
+        return preprocessingNanos / 1e6;
+    }
+
+    /**
+     * @return the memory used by the distance arrays of each landmark, in
+     *         bytes
+     */
+    public long getBytesPerLandmark() {
+        double[][] fromLandmark = tables.fromLandmark;
+        return fromLandmark.length == 0 ? 0 : 2L * Double.BYTES * fromLandmark[0].length;
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements MapADT with an open-addressing hash table using
+ * linear probing. Keys and values are stored in parallel arrays, together with
+ * each key's hash code, so probing compares cached hash codes before calling
+ * equals(), and growing the table never calls hashCode() again. Every
+ * operation finds its key with a single probe sequence, and removals shift
+ * later entries back instead of leaving tombstones, so lookups never slow down
+ * as keys are removed.
+ */
+public class OpenAddressingMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    // The default number of keys a new map can hold without growing
+    public static final int DEFAULT_EXPECTED_SIZE = 12;
+    // The default fraction of the table that can be in use before it grows
+    public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    // The keys, values and key hash codes in each slot; a null key means the
+    // slot is empty. The table length is always a power of two.
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    // The number of keys stored
+    private int size = 0;
+    // The number of keys the table can hold before it grows
+    private int threshold;
+    // The shift that turns a mixed hash code into a slot index
+    private int shift;
+    private final double loadFactor;
+
+    /**
+     * Creates an empty map with the default capacity and load factor.
+     */
+    public OpenAddressingMap() {
+        this(DEFAULT_EXPECTED_SIZE, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an empty map that can hold a number of keys without growing.
+     * @param expectedSize the number of keys the map will hold
+     * @throws IllegalArgumentException if expectedSize is negative
+     */
+    public OpenAddressingMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an empty map that can hold a number of keys without growing,
+     * and that grows whenever the given fraction of its table is in use.
+     * @param expectedSize the number of keys the map will hold
+     * @param loadFactor the fraction of the table that can be in use, which
+     *        trades memory for shorter probe sequences
+     * @throws IllegalArgumentException if expectedSize is negative, or
+     *         loadFactor is not between 0 and 1 (exclusive)
+     */
+    public OpenAddressingMap(int expectedSize, double loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expected size cannot be negative");
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("load factor must be between 0 and 1");
+        this.loadFactor = loadFactor;
+        allocate(tableLengthFor(expectedSize));
+    }
+
+    // the smallest power of two table that holds expectedSize keys
+    private int tableLengthFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / loadFactor) + 1;
+        if (needed > 1 << 30)
+            throw new IllegalArgumentException("too many keys for an OpenAddressingMap: " + expectedSize);
+        int length = 2;
+        while (length < needed)
+            length <<= 1;
+        return length;
+    }
+
+    private void allocate(int length) {
+        keys = new Object[length];
+        values = new Object[length];
+        hashes = new int[length];
+        threshold = Math.min(length - 1, (int) (length * loadFactor));
+        shift = 32 - Integer.numberOfTrailingZeros(length);
+    }
+
+    /**
+     * Grows the table, if needed, so that it can hold a number of keys without
+     * growing again. Calling this before adding many keys avoids growing the
+     * table several times while they are added.
+     * @param expectedSize the number of keys the map will hold
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize > threshold)
+            resize(tableLengthFor(expectedSize));
+    }
+
+    // the slot where a key with this hash code would be stored if there were
+    // no collisions; multiplying by the golden ratio spreads hash codes that
+    // differ only in their low or high bits over the whole table
+    private int home(int hash) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    // returns the slot holding key, or -1 if it is not in the map
+    private int find(Object key, int hash) {
+        int mask = keys.length - 1;
+        for (int slot = home(hash); keys[slot] != null; slot = (slot + 1) & mask)
+            if (hashes[slot] == hash && (keys[slot] == key || keys[slot].equals(key)))
+                return slot;
+        return -1;
+    }
+
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int hash = key.hashCode();
+        int mask = keys.length - 1;
+        int slot = home(hash);
+        // a single probe sequence both checks for the key and finds a free slot
+        for (; keys[slot] != null; slot = (slot + 1) & mask)
+            if (hashes[slot] == hash && (keys[slot] == key || keys[slot].equals(key)))
+                throw new IllegalArgumentException("key " + key.toString() + " already present in map");
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        if (++size > threshold)
+            resize(keys.length * 2);
+    }
+
+    private void resize(int length) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        allocate(length);
+        int mask = length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            int slot = home(oldHashes[i]);
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    @Override
+    public boolean containsKey(KeyType key) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return find(key, key.hashCode()) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int slot = find(key, key.hashCode());
+        if (slot < 0)
+            throw new NoSuchElementException("key " + key.toString() + " not in map");
+        return (ValueType) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int slot = find(key, key.hashCode());
+        if (slot < 0)
+            throw new NoSuchElementException("key " + key.toString() + " not in map");
+        ValueType value = (ValueType) values[slot];
+        // shift back each later entry of the probe run that would otherwise
+        // no longer be reachable from its home slot
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int distance = (next - home(hashes[next])) & mask;
+            if (distance >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                hashes[free] = hashes[next];
+                free = next;
+            }
+        }
+        keys[free] = null;
+        values[free] = null;
+        size--;
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the length of the table, which is the number of slots that
+     * keys can be stored in. The map grows when more than the load factor
+     * times this many keys are stored.
+     * @return the length of the table
+     */
+    @Override
+    public int getCapacity() {
+        return keys.length;
+    }
+}
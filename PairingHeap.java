@@ -0,0 +1,149 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements IndexedPriorityQueue as a pairing heap. The tree is stored in
+ * parallel arrays indexed by item, so adding items does not allocate, and
+ * lowering a priority cuts the item's subtree out and links it back in at the
+ * root in constant time.
+ */
+public class PairingHeap implements IndexedPriorityQueue {
+
+    // first child of each item, or -1
+    protected int[] child = new int[0];
+    // next sibling of each item, or -1
+    protected int[] sibling = new int[0];
+    // previous sibling of each item, or its parent when it is a first child,
+    // or -1 for the root
+    protected int[] previous = new int[0];
+    // each item is in the heap when its stamp equals epoch, so that reset()
+    // does not have to visit the items left in the heap
+    protected int[] stamp = new int[0];
+    protected int epoch = 0;
+    // priority of each item
+    protected double[] priority = new double[0];
+    // stack of subtrees used while merging the root's children
+    protected int[] pairs = new int[0];
+    protected int root = -1;
+    protected int size = 0;
+
+    @Override
+    public void reset(int capacity) {
+        if (stamp.length < capacity) {
+            child = new int[capacity];
+            sibling = new int[capacity];
+            previous = new int[capacity];
+            stamp = new int[capacity];
+            priority = new double[capacity];
+            pairs = new int[capacity];
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        root = -1;
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int item) {
+        return stamp[item] == epoch;
+    }
+
+    @Override
+    public void insertOrDecrease(int item, double newPriority) {
+        if (stamp[item] == epoch) {
+            if (newPriority > priority[item])
+                throw new IllegalArgumentException("priority of item " + item + " cannot increase");
+            priority[item] = newPriority;
+            if (item == root)
+                return;
+            // cut the item's subtree out of its parent's list of children
+            if (child[previous[item]] == item)
+                child[previous[item]] = sibling[item];
+            else
+                sibling[previous[item]] = sibling[item];
+            if (sibling[item] >= 0)
+                previous[sibling[item]] = previous[item];
+        } else {
+            stamp[item] = epoch;
+            priority[item] = newPriority;
+            child[item] = -1;
+            size++;
+        }
+        sibling[item] = -1;
+        previous[item] = -1;
+        root = link(root, item);
+    }
+
+    @Override
+    public double minPriority() throws NoSuchElementException {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        return priority[root];
+    }
+
+    @Override
+    public int pollMin() throws NoSuchElementException {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        int min = root;
+        stamp[min] = 0;
+        size--;
+        root = mergePairs(child[min]);
+        return min;
+    }
+
+    // links two detached trees, making the one with the higher priority root
+    // the first child of the other, and returns the new root
+    private int link(int a, int b) {
+        if (a < 0)
+            return b;
+        if (b < 0)
+            return a;
+        if (priority[b] < priority[a]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        sibling[b] = child[a];
+        if (child[a] >= 0)
+            previous[child[a]] = b;
+        previous[b] = a;
+        child[a] = b;
+        return a;
+    }
+
+    // merges a list of sibling trees using the standard two-pass method:
+    // link them in pairs from left to right, then combine from right to left
+    private int mergePairs(int first) {
+        int count = 0;
+        int current = first;
+        while (current >= 0) {
+            int a = current;
+            int b = sibling[a];
+            current = b >= 0 ? sibling[b] : -1;
+            sibling[a] = -1;
+            previous[a] = -1;
+            if (b >= 0) {
+                sibling[b] = -1;
+                previous[b] = -1;
+            }
+            pairs[count++] = link(a, b);
+        }
+        int result = -1;
+        while (count > 0)
+            result = link(pairs[--count], result);
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements IndexedPriorityQueue as a radix heap, a bucket queue for
+ * non-negative integer priorities that never go below the last priority
+ * removed. This fits Dijkstra's algorithm over graphs with integer edge
+ * weights, such as the miles loaded by Backend. Bucket i holds the items whose
+ * priority first differs from the last removed priority in bit i-1, so each
+ * item moves to a lower bucket at most 64 times, and no comparisons between
+ * items are needed.
+ */
+public class RadixHeap implements IndexedPriorityQueue {
+
+    // first item in each bucket, or -1
+    protected int[] head = new int[65];
+    // bucket that each item is in, or -1 when the item is not in the heap
+    protected int[] bucket = new int[0];
+    // next and previous items within the same bucket, or -1
+    protected int[] next = new int[0];
+    protected int[] previous = new int[0];
+    // priority of each item
+    protected long[] priority = new long[0];
+    // the last priority removed; no item can have a lower priority
+    protected long last = 0;
+    protected int size = 0;
+
+    /**
+     * Creates an empty radix heap.
+     */
+    public RadixHeap() {
+        Arrays.fill(head, -1);
+    }
+
+    @Override
+    public void reset(int capacity) {
+        if (bucket.length < capacity) {
+            bucket = new int[capacity];
+            next = new int[capacity];
+            previous = new int[capacity];
+            priority = new long[capacity];
+            Arrays.fill(bucket, -1);
+        } else {
+            // only the items still in the heap need to be cleared
+            for (int index = 0; index < head.length; index++)
+                for (int item = head[index]; item >= 0; item = next[item])
+                    bucket[item] = -1;
+        }
+        Arrays.fill(head, -1);
+        last = 0;
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int item) {
+        return bucket[item] >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the priority is not a non-negative
+     *         integer, or is lower than the last priority removed
+     */
+    @Override
+    public void insertOrDecrease(int item, double newPriority) {
+        long value = (long) newPriority;
+        if (value != newPriority || value < last)
+            throw new IllegalArgumentException("RadixHeap requires integer priorities of at least "
+                    + last + ", got " + newPriority);
+        if (bucket[item] >= 0) {
+            if (value > priority[item])
+                throw new IllegalArgumentException("priority of item " + item + " cannot increase");
+            unlink(item);
+        } else {
+            size++;
+        }
+        priority[item] = value;
+        link(item, bucketFor(value));
+    }
+
+    @Override
+    public double minPriority() throws NoSuchElementException {
+        refill();
+        return last;
+    }
+
+    @Override
+    public int pollMin() throws NoSuchElementException {
+        refill();
+        int min = head[0];
+        unlink(min);
+        bucket[min] = -1;
+        size--;
+        return min;
+    }
+
+    // makes sure bucket 0 holds the items with the lowest priority, by raising
+    // last to the lowest priority in the first non-empty bucket and spreading
+    // that bucket's items into lower buckets
+    private void refill() {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        if (head[0] >= 0)
+            return;
+        int index = 1;
+        while (head[index] < 0)
+            index++;
+        long min = Long.MAX_VALUE;
+        for (int item = head[index]; item >= 0; item = next[item])
+            min = Math.min(min, priority[item]);
+        last = min;
+        int item = head[index];
+        head[index] = -1;
+        while (item >= 0) {
+            int following = next[item];
+            link(item, bucketFor(priority[item]));
+            item = following;
+        }
+    }
+
+    // the bucket for a priority is one more than its highest bit that differs from last
+    private int bucketFor(long value) {
+        return value == last ? 0 : 64 - Long.numberOfLeadingZeros(value ^ last);
+    }
+
+    private void link(int item, int index) {
+        bucket[item] = index;
+        previous[item] = -1;
+        next[item] = head[index];
+        if (head[index] >= 0)
+            previous[head[index]] = item;
+        head[index] = item;
+    }
+
+    private void unlink(int item) {
+        if (previous[item] >= 0)
+            next[previous[item]] = next[item];
+        else
+            head[bucket[item]] = next[item];
+        if (next[item] >= 0)
+            previous[next[item]] = previous[item];
+    }
+}
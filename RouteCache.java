@@ -0,0 +1,301 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of shortest routes keyed by their start and destination
+ * airports, for the popular routes that are asked for again and again. It
+ * holds at most a given number of routes and a given estimated number of
+ * bytes, and evicts the least recently used routes to stay within both.
+ *
+ * Each lookup passes the version of the graph it searches, such as
+ * BaseGraph.getVersion(). When the version changes, every cached route is
+ * dropped at once, since any change to the graph could change any route.
+ *
+ * The cache is safe to use from many threads. When several threads miss on
+ * the same route at once, only the first one searches for it, and the others
+ * wait for and share its result.
+ */
+public class RouteCache {
+
+    // The start and destination airport of a cached route
+    private static class Key {
+        private final String start;
+        private final String destination;
+
+        private Key(String start, String destination) {
+            this.start = start;
+            this.destination = destination;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).start.equals(start)
+                    && ((Key) other).destination.equals(destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return start.hashCode() * 31 + destination.hashCode();
+        }
+    }
+
+    // A cached route, with its estimated size in bytes
+    private static class Entry {
+        private final ShortestPath route;
+        private final long bytes;
+
+        private Entry(ShortestPath route, long bytes) {
+            this.route = route;
+            this.bytes = bytes;
+        }
+    }
+
+    // Estimated bytes for the key, entry, route object and lists of a route,
+    // and for each airport on it with the miles of the leg that reaches it;
+    // airport names are shared with the graph, so are not counted
+    private static final long ENTRY_BYTES = 160;
+    private static final long AIRPORT_BYTES = 24;
+
+    private final int maxRoutes;
+    private final long maxBytes;
+    // cached routes from least to most recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // the searches currently running for routes that missed, which later
+    // misses on the same routes wait for
+    private final Map<Key, CompletableFuture<ShortestPath>> searches = new HashMap<>();
+    // the graph version that the cached routes and running searches are for
+    private long version = Long.MIN_VALUE;
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxRoutes the most routes the cache holds
+     * @param maxBytes  the most estimated bytes that the cached routes use
+     * @throws IllegalArgumentException if either bound is not positive
+     */
+    public RouteCache(int maxRoutes, long maxBytes) {
+        if (maxRoutes <= 0 || maxBytes <= 0)
+            throw new IllegalArgumentException("cache bounds must be positive");
+        this.maxRoutes = maxRoutes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached route from start to destination, or searches for it
+     * and caches it if it is not cached. If another thread is already
+     * searching for the same route in the same version of the graph, this
+     * waits for that search instead of running another one. Searches that
+     * throw, such as for airports that are not connected, are not cached.
+     *
+     * @param start       the start airport of the route
+     * @param destination the destination airport of the route
+     * @param version     the version of the graph that search runs on, which
+     *                    must not decrease between calls while the graph
+     *                    changes
+     * @param search      finds the route when it is not cached
+     * @return the route, whose lists cannot be modified since they are shared
+     *         by every caller that gets the route
+     * @throws RuntimeException whatever search throws, for this caller and
+     *                          every caller waiting for the same search
+     */
+    public ShortestPath get(String start, String destination, long version, Supplier<ShortestPath> search) {
+        Key key = new Key(start, destination);
+        CompletableFuture<ShortestPath> running = null;
+        boolean searching = false;
+        synchronized (this) {
+            if (version > this.version)
+                invalidate(version);
+            if (version == this.version) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    hits++;
+                    return entry.route;
+                }
+                running = searches.get(key);
+                if (running == null) {
+                    running = new CompletableFuture<>();
+                    searches.put(key, running);
+                    searching = true;
+                } else {
+                    coalesced++;
+                }
+            }
+            if (running == null || searching)
+                misses++;
+        }
+        if (running == null)
+            // a caller still on an older graph can neither use nor fill the cache
+            return freeze(search.get());
+        if (!searching)
+            return await(running);
+
+        ShortestPath route;
+        try {
+            route = freeze(search.get());
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                searches.remove(key, running);
+            }
+            running.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // a newer version of the graph may have dropped this search meanwhile
+            if (searches.remove(key, running))
+                add(key, route);
+        }
+        running.complete(route);
+        return route;
+    }
+
+    /**
+     * Waits for another thread's search, and returns its route or rethrows
+     * what it threw.
+     */
+    private static ShortestPath await(CompletableFuture<ShortestPath> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a route into unmodifiable lists, which are shared by every caller
+     * that gets it from the cache, and take less memory than linked lists.
+     */
+    private static ShortestPath freeze(ShortestPath route) {
+        return new ShortestPath(List.copyOf(route.getRoute()), List.copyOf(route.getMiles()),
+                route.getTotalMiles());
+    }
+
+    /**
+     * Caches a route, and evicts the least recently used routes until the
+     * cache is within its bounds again. A route too large for the cache on
+     * its own is not cached.
+     */
+    private void add(Key key, ShortestPath route) {
+        long routeBytes = ENTRY_BYTES + AIRPORT_BYTES * route.getRoute().size();
+        if (routeBytes > maxBytes)
+            return;
+        Entry previous = entries.put(key, new Entry(route, routeBytes));
+        if (previous != null)
+            bytes -= previous.bytes;
+        bytes += routeBytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxRoutes || bytes > maxBytes) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every cached route and running search for an older version of
+     * the graph. Threads already waiting on those searches still get their
+     * results, which are just not cached.
+     */
+    private void invalidate(long newVersion) {
+        if (!entries.isEmpty() || !searches.isEmpty())
+            invalidations++;
+        entries.clear();
+        searches.clear();
+        bytes = 0;
+        version = newVersion;
+    }
+
+    /**
+     * Drops every cached route, such as after the graph was replaced rather
+     * than changed, so that its version cannot be compared with the last one.
+     */
+    public synchronized void clear() {
+        invalidate(Long.MIN_VALUE);
+    }
+
+    /**
+     * @return the number of lookups that found their route cached
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that searched for their route
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return the number of lookups that missed, but shared the result of a
+     *         search that another thread was already running for their route
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * @return the fraction of lookups that found their route cached, or 0 if
+     *         there have been none
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses + coalesced;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return the number of routes evicted to keep the cache within its bounds
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of times the cached routes were dropped because the
+     *         graph changed
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * @return the number of routes cached
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated number of bytes that the cached routes use
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return a one-line summary of the cache's size and counters
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d routes, %d bytes, hit rate %.3f, %d hits, %d misses, %d coalesced, "
+                + "%d evictions, %d invalidations", entries.size(), bytes, getHitRate(), hits, misses,
+                coalesced, evictions, invalidations);
+    }
+}
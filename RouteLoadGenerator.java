@@ -0,0 +1,206 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class generates load against a RouteServer, sending route queries from
+ * an increasing number of client threads, and reports the throughput and the
+ * latency percentiles at each level of concurrency. Each client thread sends
+ * its next request as soon as its last one is answered, over a keep-alive
+ * connection.
+ *
+ * Run without arguments, it starts a RouteServer of its own on a synthetic
+ * network of airports; given the base URL of a running server and a DOT file
+ * to pick airports from, it sends the queries to that server instead.
+ */
+public class RouteLoadGenerator {
+
+    // The numbers of concurrent clients to measure
+    public static final int[] DEFAULT_CONCURRENCY = {1, 2, 4, 8, 16, 32, 64};
+
+    /**
+     * The throughput and latencies measured at one level of concurrency
+     */
+    public static class Result {
+        public int clients;
+        public int requests;
+        public int errors;
+        public double requestsPerSecond;
+        // latencies in milliseconds
+        public double p50;
+        public double p90;
+        public double p99;
+        public double max;
+
+        @Override
+        public String toString() {
+            return String.format("%3d clients: %8.1f requests/s, latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, "
+                    + "max %.2f ms, %d errors", clients, requestsPerSecond, p50, p90, p99, max, errors);
+        }
+    }
+
+    private final String baseUrl;
+    private final String[] airports;
+
+    /**
+     * Creates a load generator for a server.
+     *
+     * @param baseUrl  the server's base URL, such as http://localhost:8080
+     * @param airports the airports to pick the start and end of each route
+     *                 query from
+     */
+    public RouteLoadGenerator(String baseUrl, String[] airports) {
+        this.baseUrl = baseUrl;
+        this.airports = airports;
+    }
+
+    /**
+     * Sends a number of route queries from a number of concurrent clients.
+     * Queries that are answered with an error status, such as airports that
+     * are not connected, count toward the latencies as well as the errors.
+     *
+     * @param clients  the number of client threads
+     * @param requests the number of queries that each client sends
+     * @param seed     the seed that the queries are picked with
+     * @return the throughput and latencies measured
+     */
+    public Result run(int clients, int requests, long seed) {
+        long[][] latencies = new long[clients][requests];
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long[] clientLatencies = latencies[c];
+            Random random = new Random(seed + c);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < requests; i++) {
+                    String from = airports[random.nextInt(airports.length)];
+                    String to = airports[random.nextInt(airports.length)];
+                    long start = System.nanoTime();
+                    if (get("/route?from=" + URLEncoder.encode(from, StandardCharsets.UTF_8)
+                            + "&to=" + URLEncoder.encode(to, StandardCharsets.UTF_8)) != 200)
+                        errors.incrementAndGet();
+                    clientLatencies[i] = System.nanoTime() - start;
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for clients", e);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = new long[clients * requests];
+        for (int c = 0; c < clients; c++)
+            System.arraycopy(latencies[c], 0, all, c * requests, requests);
+        Arrays.sort(all);
+        Result result = new Result();
+        result.clients = clients;
+        result.requests = all.length;
+        result.errors = errors.get();
+        result.requestsPerSecond = all.length / (elapsed / 1e9);
+        result.p50 = percentile(all, 0.50);
+        result.p90 = percentile(all, 0.90);
+        result.p99 = percentile(all, 0.99);
+        result.max = all[all.length - 1] / 1e6;
+        return result;
+    }
+
+    // the latency in milliseconds that a fraction of the sorted latencies are within
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * Sends a GET request and reads the whole response, so that the
+     * connection can be kept alive for the next request.
+     *
+     * @param path the path and query of the request
+     * @return the response status
+     */
+    public int get(String path) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null)
+                try (InputStream in = body) {
+                    in.transferTo(new ByteArrayOutputStream());
+                }
+            return status;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Measures a server at each number of clients in DEFAULT_CONCURRENCY,
+     * after warming it up.
+     *
+     * @param args either nothing, to serve and query a synthetic network of
+     *             airports, or the base URL of a running server and the DOT
+     *             file that it serves, optionally followed by the number of
+     *             queries each client sends
+     * @throws IOException if the DOT file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        RouteServer server = null;
+        String baseUrl;
+        String[] airports;
+        if (args.length >= 2) {
+            baseUrl = args[0];
+            List<String> names = new ArrayList<>();
+            new DotReader(1).read(args[1], new DotReader.Listener() {
+                @Override
+                public void airport(String airport, String attributes) {
+                    names.add(airport);
+                }
+
+                @Override
+                public void flight(String from, String to, int miles) {
+                }
+            });
+            airports = names.toArray(new String[0]);
+        } else {
+            int count = 20000;
+            File file = File.createTempFile("load", ".dot");
+            file.deleteOnExit();
+            GraphBenchmark.writeDotFile(file.getPath(), count, 8, 42);
+            Backend backend = new Backend(new AStarGraph<>(new AirportCodeMap<>(), true));
+            backend.readDataFromFile(file.getPath());
+            server = new RouteServer(backend, 0);
+            server.start();
+            baseUrl = "http://localhost:" + server.getPort();
+            airports = GraphBenchmark.airportNames(count);
+            System.out.println("Serving a synthetic network of " + count + " airports on "
+                    + (server.usesVirtualThreads() ? "virtual" : "platform") + " threads");
+        }
+        RouteLoadGenerator generator = new RouteLoadGenerator(baseUrl, airports);
+        System.out.println("Route load test against " + baseUrl + ", " + requests + " queries per client, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        generator.run(4, requests, 1); // warm up
+        for (int clients : DEFAULT_CONCURRENCY)
+            System.out.println("  " + generator.run(clients, requests, clients * 1000L));
+        if (server != null)
+            server.stop();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * The result of one route query in a batch: either the shortest route that
+ * was found, or the reason that there is none, so that one failed query does
+ * not fail the whole batch.
+ */
+public class RouteResult {
+
+    private String start;
+    private String destination;
+    private ShortestPathInterface route;
+    private String error;
+
+    /**
+     * Constructor for a query that found a route
+     *
+     * @param start       the start airport of the query
+     * @param destination the destination airport of the query
+     * @param route       the shortest route from start to destination
+     */
+    public RouteResult(String start, String destination, ShortestPathInterface route) {
+        this.start = start;
+        this.destination = destination;
+        this.route = route;
+    }
+
+    /**
+     * Constructor for a query that found no route
+     *
+     * @param start       the start airport of the query
+     * @param destination the destination airport of the query
+     * @param error       why there is no route, such as an airport that
+     *                    does not exist
+     */
+    public RouteResult(String start, String destination, String error) {
+        this.start = start;
+        this.destination = destination;
+        this.error = error;
+    }
+
+    /**
+     * @return the start airport of the query
+     */
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * @return the destination airport of the query
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return true if a route was found, false if there is an error instead
+     */
+    public boolean hasRoute() {
+        return route != null;
+    }
+
+    /**
+     * @return the shortest route, or null if none was found
+     */
+    public ShortestPathInterface getRoute() {
+        return route;
+    }
+
+    /**
+     * @return why no route was found, or null if one was
+     */
+    public String getError() {
+        return error;
+    }
+}
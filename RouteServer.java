@@ -0,0 +1,269 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class serves the queries of a BackendInterface over HTTP, as an
+ * alternative to the interactive Frontend, using the HTTP server built into
+ * the JDK. Responses are JSON objects:
+ *
+ *   GET /route?from=AUS&amp;to=LGA
+ *       {"route":["AUS","BNA","LGA"],"miles":[753,764],"totalMiles":1517}
+ *   GET /statistics
+ *       {"statistics":"Number of airports: ..."}
+ *
+ * A route between airports that are missing or not connected is answered
+ * with 404, a request without both airports with 400, and any other path or
+ * method with 404 or 405, each with an {"error":"..."} body.
+ *
+ * Each request is handled on a thread of its own. On a JDK with virtual
+ * threads those are virtual threads, so thousands of slow clients cost
+ * little; on older JDKs they are platform threads from a cached pool. The
+ * backend must be safe to query from many threads, as Backend is.
+ */
+public class RouteServer {
+
+    static {
+        // the JDK server writes a response's headers and body separately, and
+        // with Nagle's algorithm the body then waits for the client's delayed
+        // ACK of the headers, adding about 40 ms to every keep-alive request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final BackendInterface backend;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a server for a backend, listening on the loopback address.
+     * The server does not accept requests until start() is called.
+     *
+     * @param backend the backend that answers the queries
+     * @param port    the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public RouteServer(BackendInterface backend, int port) throws IOException {
+        this(backend, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Creates a server for a backend, listening on the given address. The
+     * server does not accept requests until start() is called.
+     *
+     * @param backend the backend that answers the queries
+     * @param address the address and port to listen on
+     * @throws IOException if the address cannot be bound
+     */
+    public RouteServer(BackendInterface backend, InetSocketAddress address) throws IOException {
+        this.backend = backend;
+        this.server = HttpServer.create(address, 0);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "route-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/route", this::handleRoute);
+        server.createContext("/statistics", this::handleStatistics);
+        server.createContext("/", exchange -> send(exchange, 404, error("no such endpoint")));
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread, if
+     * this JDK has them. It is looked up by reflection, so that this class
+     * still compiles and runs on JDKs from before virtual threads.
+     *
+     * @return the executor, or null if this JDK has no virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // missing before Java 21, or a preview feature that is not enabled
+            return null;
+        }
+    }
+
+    /**
+     * Starts accepting requests, on a background thread.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the requests being
+     * handled to finish, and shuts the request threads down.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port the server listens on, which is the port chosen by
+     *         the system if the server was created with port 0
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return true if requests are handled on virtual threads, or false if
+     *         they are handled on platform threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private void handleRoute(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("only GET is supported"));
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String from = query.get("from");
+        String to = query.get("to");
+        if (from == null || to == null) {
+            send(exchange, 400, error("the from and to airports are required"));
+            return;
+        }
+        ShortestPathInterface path;
+        try {
+            path = backend.getShortestRoute(from, to);
+        } catch (NoSuchElementException e) {
+            send(exchange, 404, error("no route from " + from + " to " + to));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"route\":");
+        appendStrings(json, path.getRoute());
+        json.append(",\"miles\":").append(path.getMiles().toString().replace(" ", ""));
+        json.append(",\"totalMiles\":").append(path.getTotalMiles()).append('}');
+        send(exchange, 200, json.toString());
+    }
+
+    private void handleStatistics(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("only GET is supported"));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"statistics\":");
+        appendString(json, backend.getDatasetStatistics());
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    /**
+     * Splits the query string of a URI into its decoded parameters.
+     *
+     * @param rawQuery the query string, still URL encoded, or null
+     * @return each parameter's value, keeping the first of repeated ones
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null)
+            return parameters;
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0)
+                continue;
+            try {
+                parameters.putIfAbsent(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // a malformed escape leaves that parameter out
+            }
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    private static void appendStrings(StringBuilder json, List<String> strings) {
+        json.append('[');
+        for (int i = 0; i < strings.size(); i++) {
+            if (i > 0)
+                json.append(',');
+            appendString(json, strings.get(i));
+        }
+        json.append(']');
+    }
+
+    // appends a string as a JSON string literal
+    private static void appendString(StringBuilder json, String string) {
+        json.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        json.append(String.format("\\u%04x", (int) c));
+                    else
+                        json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads a DOT file and serves its routes until the process is stopped.
+     *
+     * @param args the DOT file, and optionally the port to listen on, which
+     *             is 8080 by default
+     * @throws IOException if the file cannot be read or the port bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: java RouteServer <file.dot> [port]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        //the same backend as the interactive Frontend
+        Backend backend = new Backend(new AStarGraph<>(new AirportCodeMap<>(), true), 256L * 1024 * 1024);
+        backend.readDataFromFile(args[0]);
+        RouteServer server = new RouteServer(backend, port);
+        server.start();
+        System.out.println("Serving routes on http://localhost:" + server.getPort() + "/route?from=...&to=..."
+                + (server.usesVirtualThreads() ? " with virtual threads" : " with platform threads"));
+    }
+}
@@ -0,0 +1,570 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements GraphADT as a series of immutable versions, so that
+ * shortest path queries can run on many threads while the graph is changed.
+ * Queries always run on the latest published version, and finish on the
+ * version they started on however many versions are published meanwhile.
+ * Changes are made to a draft of the next version, which only becomes visible
+ * to queries when publish() is called, so the methods that read the graph,
+ * like containsNode() and getEdgeCount(), do not see unpublished changes.
+ * Changes and publish() are serialized by a lock, so there is a single
+ * writer at a time.
+ *
+ * The draft shares everything it has not changed with the published version.
+ * Each node's edges are kept in a row, and rows are kept in fixed-size
+ * chunks: changing a node copies only its row, the chunk holding that row and
+ * the small array of chunks, once per draft. Publishing is then a single
+ * volatile write of the new version.
+ *
+ * Each node keeps the id it was first given when it is removed, so that it
+ * gets the same id if it is inserted again.
+ */
+public class VersionedGraph<NodeType, EdgeType extends Number> implements GraphADT<NodeType, EdgeType> {
+
+    // Rows are kept in chunks of 1 << CHUNK_BITS rows
+    protected static final int CHUNK_BITS = 10;
+    protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // A node's data and the edges leaving it, with the ids of the nodes that
+    // have edges to it, so that removing the node can find those edges. A
+    // row belonging to a published version is never changed again.
+    protected static class Row {
+        public final Object data;
+        public int size = 0;
+        public int[] targets;
+        public double[] weights;
+        public Object[] edgeData;
+        public int predecessorCount = 0;
+        public int[] predecessors;
+
+        public Row(Object data) {
+            this.data = data;
+            targets = new int[0];
+            weights = new double[0];
+            edgeData = new Object[0];
+            predecessors = new int[0];
+        }
+
+        // a copy of another row, which can be changed without changing it
+        public Row(Row row) {
+            data = row.data;
+            size = row.size;
+            targets = Arrays.copyOf(row.targets, size);
+            weights = Arrays.copyOf(row.weights, size);
+            edgeData = Arrays.copyOf(row.edgeData, size);
+            predecessorCount = row.predecessorCount;
+            predecessors = Arrays.copyOf(row.predecessors, predecessorCount);
+        }
+
+        // returns the index of the edge to a node, or -1 if there is none
+        public int indexOf(int target) {
+            for (int i = 0; i < size; i++)
+                if (targets[i] == target)
+                    return i;
+            return -1;
+        }
+
+        public void addEdge(int target, Object data) {
+            if (size == targets.length) {
+                int length = Math.max(4, size + size / 2);
+                targets = Arrays.copyOf(targets, length);
+                weights = Arrays.copyOf(weights, length);
+                edgeData = Arrays.copyOf(edgeData, length);
+            }
+            targets[size] = target;
+            weights[size] = ((Number) data).doubleValue();
+            edgeData[size] = data;
+            size++;
+        }
+
+        // removes the edge at an index, moving the last edge into its place
+        public void removeEdgeAt(int index) {
+            size--;
+            targets[index] = targets[size];
+            weights[index] = weights[size];
+            edgeData[index] = edgeData[size];
+            edgeData[size] = null;
+        }
+
+        public void addPredecessor(int id) {
+            if (predecessorCount == predecessors.length)
+                predecessors = Arrays.copyOf(predecessors, Math.max(4, predecessorCount + predecessorCount / 2));
+            predecessors[predecessorCount++] = id;
+        }
+
+        public void removePredecessor(int id) {
+            for (int i = 0; i < predecessorCount; i++)
+                if (predecessors[i] == id) {
+                    predecessors[i] = predecessors[--predecessorCount];
+                    return;
+                }
+        }
+    }
+
+    /**
+     * An immutable version of the graph, which queries can keep using while
+     * later versions are published. The methods that would change it throw
+     * UnsupportedOperationException.
+     */
+    public class Version implements GraphADT<NodeType, EdgeType> {
+        // The number of this version, counting from 0 for the empty graph
+        protected final long number;
+        // The row of each node id, or null where there is no node
+        protected final Row[][] chunks;
+        // One more than the largest id that this version may have a row for
+        protected final int idCount;
+        protected final int nodeCount;
+        protected final int edgeCount;
+
+        protected Version(long number, Row[][] chunks, int idCount, int nodeCount, int edgeCount) {
+            this.number = number;
+            this.chunks = chunks;
+            this.idCount = idCount;
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+        }
+
+        /**
+         * @return the number of this version, which is one more than the
+         *         number of the version published before it
+         */
+        public long getVersion() {
+            return number;
+        }
+
+        // returns the row of a node, or null if it is not in this version
+        protected Row row(NodeType data) {
+            Integer id = ids.get(data); // throws NPE when data is null
+            return id == null ? null : row(id);
+        }
+
+        protected Row row(int id) {
+            if (id >= idCount)
+                return null;
+            Row[] chunk = chunks[id >>> CHUNK_BITS];
+            return chunk == null ? null : chunk[id & (CHUNK_SIZE - 1)];
+        }
+
+        /**
+         * This version cannot be modified.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public boolean insertNode(NodeType data) {
+            throw new UnsupportedOperationException("published versions are immutable");
+        }
+
+        /**
+         * This version cannot be modified.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public boolean removeNode(NodeType data) {
+            throw new UnsupportedOperationException("published versions are immutable");
+        }
+
+        @Override
+        public boolean containsNode(NodeType data) {
+            return row(data) != null;
+        }
+
+        @Override
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * This version cannot be modified.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+            throw new UnsupportedOperationException("published versions are immutable");
+        }
+
+        /**
+         * This version cannot be modified.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public boolean removeEdge(NodeType pred, NodeType succ) {
+            throw new UnsupportedOperationException("published versions are immutable");
+        }
+
+        @Override
+        public boolean containsEdge(NodeType pred, NodeType succ) {
+            Row row = row(pred);
+            Integer to = ids.get(succ);
+            return row != null && to != null && row(to) != null && row.indexOf(to) >= 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public EdgeType getEdge(NodeType pred, NodeType succ) {
+            if (!containsEdge(pred, succ))
+                throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                        succ.toString());
+            Row row = row(pred);
+            return (EdgeType) row.edgeData[row.indexOf(ids.get(succ))];
+        }
+
+        @Override
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        /**
+         * Runs Dijkstra's algorithm on this version from start until end is
+         * settled, leaving the result in the calling thread's workspace.
+         *
+         * @return the id of the end node
+         * @throws NoSuchElementException when no path from start to end is
+         *                                found or when either start or end
+         *                                is not in this version
+         */
+        protected int search(NodeType start, NodeType end, Workspace workspace) {
+            if (!containsNode(start) || !containsNode(end))
+                throw new NoSuchElementException("There is no start or end node");
+            int from = ids.get(start);
+            int to = ids.get(end);
+            workspace.prepare(idCount);
+            workspace.reach(from, 0, -1);
+            IndexedPriorityQueue queue = workspace.queue;
+            while (!queue.isEmpty()) {
+                int current = queue.pollMin();
+                workspace.settled[current] = workspace.epoch;
+                if (current == to)
+                    return to;
+                Row row = row(current);
+                double dist = workspace.dist[current];
+                for (int i = 0; i < row.size; i++) {
+                    int neighbor = row.targets[i];
+                    double cost = dist + row.weights[i];
+                    if (workspace.settled[neighbor] != workspace.epoch && cost < workspace.distance(neighbor))
+                        workspace.reach(neighbor, cost, current);
+                }
+            }
+            throw new NoSuchElementException("No path from start to end node");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+            Workspace workspace = workspaces.get();
+            LinkedList<NodeType> path = new LinkedList<>();
+            for (int id = search(start, end, workspace); id != -1; id = workspace.pred[id])
+                path.addFirst((NodeType) row(id).data);
+            return path;
+        }
+
+        @Override
+        public double shortestPathCost(NodeType start, NodeType end) {
+            Workspace workspace = workspaces.get();
+            int to = search(start, end, workspace); // may replace workspace.dist
+            return workspace.dist[to];
+        }
+    }
+
+    // The arrays that searches on one thread reuse, with each node's
+    // entries only valid if they are stamped with the current search's epoch
+    protected static class Workspace {
+        public double[] dist = new double[0];
+        public int[] pred = new int[0];
+        public int[] reached = new int[0];
+        public int[] settled = new int[0];
+        public int epoch = 0;
+        public IndexedPriorityQueue queue = new DaryHeap();
+
+        public void prepare(int capacity) {
+            if (dist.length < capacity) {
+                int length = Math.max(capacity, dist.length + dist.length / 2);
+                dist = Arrays.copyOf(dist, length);
+                pred = Arrays.copyOf(pred, length);
+                reached = Arrays.copyOf(reached, length);
+                settled = Arrays.copyOf(settled, length);
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                epoch = 1;
+            }
+            queue.reset(dist.length);
+        }
+
+        public double distance(int id) {
+            return reached[id] == epoch ? dist[id] : Double.POSITIVE_INFINITY;
+        }
+
+        public void reach(int id, double cost, int predecessor) {
+            reached[id] = epoch;
+            dist[id] = cost;
+            pred[id] = predecessor;
+            queue.insertOrDecrease(id, cost);
+        }
+    }
+
+    // The id of every node ever inserted; ids are never taken back, so
+    // readers of any version can use this map while the writer adds to it
+    protected final ConcurrentHashMap<NodeType, Integer> ids = new ConcurrentHashMap<>();
+    protected final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+    // The latest published version
+    protected volatile Version current;
+
+    // The draft of the next version. The draft owns (and may change in
+    // place) the chunk array when chunksOwned is set, and each chunk or row
+    // whose stamp is the draft's number; everything else is shared with
+    // published versions and is copied before it is changed.
+    private Row[][] draftChunks = new Row[1][];
+    private boolean chunksOwned = false;
+    private int[] chunkStamp = new int[1];
+    private int[] rowStamp = new int[CHUNK_SIZE];
+    private int draftIdCount = 0;
+    private int draftNodeCount = 0;
+    private int draftEdgeCount = 0;
+    private int draftNumber = 1;
+    private boolean changed = false;
+
+    /**
+     * Creates an empty graph, whose first version is published.
+     */
+    public VersionedGraph() {
+        current = new Version(0, draftChunks, 0, 0, 0);
+    }
+
+    /**
+     * Returns the latest published version, which stays the same however
+     * many versions are published after it. Running several queries on one
+     * version gives answers that are consistent with each other.
+     *
+     * @return the latest published version
+     */
+    public Version current() {
+        return current;
+    }
+
+    /**
+     * Publishes the changes made since the last call, so that queries
+     * started from now on see them. Queries that are already running finish
+     * on the version they started on.
+     *
+     * @return the new latest version, which is the same version as before if
+     *         nothing has changed
+     */
+    public synchronized Version publish() {
+        if (!changed)
+            return current;
+        current = new Version(draftNumber, draftChunks, draftIdCount, draftNodeCount, draftEdgeCount);
+        // the published arrays now belong to the new version; the stamps
+        // of the next draft's number do not match any of them
+        draftNumber++;
+        chunksOwned = false;
+        changed = false;
+        return current;
+    }
+
+    // returns the draft's row of a node, or null if the draft has no such node
+    private Row draftRow(int id) {
+        if (id >= draftIdCount)
+            return null;
+        Row[] chunk = draftChunks[id >>> CHUNK_BITS];
+        return chunk == null ? null : chunk[id & (CHUNK_SIZE - 1)];
+    }
+
+    private Row draftRow(NodeType data) {
+        Integer id = ids.get(data); // throws NPE when data is null
+        return id == null ? null : draftRow(id);
+    }
+
+    // returns the chunk holding an id's row, copying it first if it is shared
+    private Row[] writableChunk(int id) {
+        int chunk = id >>> CHUNK_BITS;
+        if (!chunksOwned || chunk >= draftChunks.length) {
+            draftChunks = Arrays.copyOf(draftChunks, Math.max(draftChunks.length, chunk + 1));
+            chunkStamp = Arrays.copyOf(chunkStamp, draftChunks.length);
+            chunksOwned = true;
+        }
+        if (chunkStamp[chunk] != draftNumber) {
+            draftChunks[chunk] = draftChunks[chunk] == null ? new Row[CHUNK_SIZE] : draftChunks[chunk].clone();
+            chunkStamp[chunk] = draftNumber;
+        }
+        return draftChunks[chunk];
+    }
+
+    // returns an id's row, copying it first if it is shared
+    private Row writableRow(int id) {
+        Row[] chunk = writableChunk(id);
+        if (rowStamp[id] != draftNumber) {
+            chunk[id & (CHUNK_SIZE - 1)] = new Row(chunk[id & (CHUNK_SIZE - 1)]);
+            rowStamp[id] = draftNumber;
+        }
+        return chunk[id & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Inserts a node into the next version.
+     *
+     * @param data the data item stored in the new node
+     * @return true if the data is unique and can be inserted into a new node,
+     *         or false if this data is already in the next version
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public synchronized boolean insertNode(NodeType data) {
+        if (draftRow(data) != null)
+            return false;
+        Integer id = ids.get(data);
+        if (id == null) {
+            id = ids.size();
+            if (id == rowStamp.length)
+                rowStamp = Arrays.copyOf(rowStamp, rowStamp.length * 2);
+            ids.put(data, id);
+        }
+        writableChunk(id)[id & (CHUNK_SIZE - 1)] = new Row(data);
+        rowStamp[id] = draftNumber;
+        draftIdCount = Math.max(draftIdCount, id + 1);
+        draftNodeCount++;
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Removes a node, and all edges adjacent to it, from the next version.
+     *
+     * @param data the data item stored in the node to be removed
+     * @return true if the node is found and removed, or false if it is not
+     *         in the next version
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public synchronized boolean removeNode(NodeType data) {
+        Row row = draftRow(data);
+        if (row == null)
+            return false;
+        int id = ids.get(data);
+        for (int i = 0; i < row.predecessorCount; i++) {
+            int pred = row.predecessors[i];
+            if (pred == id)
+                continue; // a loop is dropped with the row itself
+            Row predRow = writableRow(pred);
+            predRow.removeEdgeAt(predRow.indexOf(id));
+            draftEdgeCount--;
+        }
+        for (int i = 0; i < row.size; i++) {
+            if (row.targets[i] != id)
+                writableRow(row.targets[i]).removePredecessor(id);
+            draftEdgeCount--;
+        }
+        writableChunk(id)[id & (CHUNK_SIZE - 1)] = null;
+        draftNodeCount--;
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Inserts an edge into the next version, or replaces its weight if it is
+     * already there.
+     *
+     * @param pred   the data item contained in the edge's predecessor node
+     * @param succ   the data item contained in the edge's successor node
+     * @param weight the non-negative weight of the edge
+     * @return true if the edge could be inserted or updated, or false if pred
+     *         or succ is not in the next version
+     * @throws NullPointerException if pred, succ or weight is null
+     */
+    @Override
+    public synchronized boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        if (weight == null)
+            throw new NullPointerException("null edge weights not allowed");
+        if (draftRow(pred) == null || draftRow(succ) == null)
+            return false;
+        int from = ids.get(pred);
+        int to = ids.get(succ);
+        Row row = writableRow(from);
+        int index = row.indexOf(to);
+        if (index >= 0) {
+            row.weights[index] = weight.doubleValue();
+            row.edgeData[index] = weight;
+        } else {
+            row.addEdge(to, weight);
+            writableRow(to).addPredecessor(from);
+            draftEdgeCount++;
+        }
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Removes an edge from the next version.
+     *
+     * @param pred the data item contained in the edge's predecessor node
+     * @param succ the data item contained in the edge's successor node
+     * @return true if the edge could be removed, or false if it is not in the
+     *         next version
+     */
+    @Override
+    public synchronized boolean removeEdge(NodeType pred, NodeType succ) {
+        Row predRow = draftRow(pred);
+        if (predRow == null || draftRow(succ) == null)
+            return false;
+        int from = ids.get(pred);
+        int to = ids.get(succ);
+        if (predRow.indexOf(to) < 0)
+            return false;
+        Row row = writableRow(from);
+        row.removeEdgeAt(row.indexOf(to));
+        writableRow(to).removePredecessor(from);
+        draftEdgeCount--;
+        changed = true;
+        return true;
+    }
+
+    @Override
+    public boolean containsNode(NodeType data) {
+        return current.containsNode(data);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return current.getNodeCount();
+    }
+
+    @Override
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        return current.containsEdge(pred, succ);
+    }
+
+    @Override
+    public EdgeType getEdge(NodeType pred, NodeType succ) {
+        return current.getEdge(pred, succ);
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return current.getEdgeCount();
+    }
+
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        return current.shortestPathData(start, end);
+    }
+
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return current.shortestPathCost(start, end);
+    }
+
+    @Override
+    public GraphPath<NodeType, EdgeType> shortestPath(NodeType start, NodeType end) {
+        // the path's edges must come from the version its nodes came from
+        return current.shortestPath(start, end);
+    }
+}